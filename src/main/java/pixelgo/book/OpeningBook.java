@@ -0,0 +1,197 @@
+package pixelgo.book;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import pixelgo.game.Board;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.KoRule;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+
+/**
+ * A read-only opening book for one board size, memory-mapped from a file built
+ * by {@link OpeningBookBuilder}. Mapping the file means it is loaded lazily and
+ * shared between processes through the page cache.
+ *
+ * <p>
+ * The file starts with a header of 5 ints: the magic number, the format
+ * version, the board size, the depth (the number of moves covered) and the
+ * number of entries. Each entry is a long key, a short point and an unsigned
+ * short weight, and the entries are sorted by key so that a position is found
+ * by binary search. A position can have several entries, one per candidate
+ * move.
+ *
+ * <p>
+ * Keys are the Zobrist hash of the canonical orientation of the position,
+ * combined with {@link #WHITE_TO_MOVE} when white is to play, and points are in
+ * the coordinates of the canonical orientation.
+ *
+ * @author jacky
+ *
+ */
+@Component
+public class OpeningBook {
+	static final int MAGIC = 0x50474F42; // "PGOB"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 5 * Integer.BYTES;
+	static final int ENTRY_BYTES = Long.BYTES + 2 * Short.BYTES;
+
+	/**
+	 * Mixed into the key of a position when white is to play.
+	 */
+	static final long WHITE_TO_MOVE = 0x9E3779B97F4A7C15L;
+
+	private static final Logger logger = LoggerFactory.getLogger(OpeningBook.class);
+
+	private final ByteBuffer entries;
+	private final int boardSize;
+	private final int depth;
+	private final int count;
+
+	/**
+	 * Create a book that never has a move.
+	 */
+	public OpeningBook() {
+		entries = null;
+		boardSize = 0;
+		depth = 0;
+		count = 0;
+	}
+
+	@Autowired
+	public OpeningBook(@Value("${pixelgo.book.path:}") String path) throws IOException {
+		this(path.isBlank() ? null : Path.of(path));
+	}
+
+	/**
+	 * Map a book file.
+	 *
+	 * @param path the file, or null for a book that never has a move
+	 * @throws IOException if the file cannot be read or is not an opening book
+	 */
+	public OpeningBook(Path path) throws IOException {
+		if (path == null) {
+			entries = null;
+			boardSize = 0;
+			depth = 0;
+			count = 0;
+			return;
+		}
+
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			throw new IOException("Not an opening book: " + path);
+
+		boardSize = buffer.getInt(8);
+		depth = buffer.getInt(12);
+		count = buffer.getInt(16);
+		if (buffer.limit() != HEADER_BYTES + (long) count * ENTRY_BYTES)
+			throw new IOException("Opening book is truncated: " + path);
+
+		entries = buffer.position(HEADER_BYTES).slice();
+		logger.info("Loaded opening book {}: {} entries for {}x{} boards, {} moves deep", path, count, boardSize,
+				boardSize, depth);
+	}
+
+	/**
+	 * Pick a book move for a position, at random in proportion to the weights of
+	 * the candidates.
+	 *
+	 * @param player    the player to move
+	 * @param moves     the moves played so far
+	 * @param boardSize the board size
+	 * @return a move, or null if the position is not in the book
+	 */
+	public Move lookup(Player player, List<Move> moves, int boardSize) {
+		if (entries == null || boardSize != this.boardSize || moves.size() >= depth)
+			return null;
+
+		Board board = new Board(boardSize, KoRule.POSITIONAL, true);
+		BoardGeometry geometry = board.getGeometry();
+		for (Move move : moves) {
+			// The book only follows games without passes.
+			if (board.tryPlaceStone(move.player(), geometry.point(move.vertex())).isRejected())
+				return null;
+		}
+
+		int symmetry = board.getCanonicalSymmetry();
+		long key = key(board.getHash(symmetry), player);
+
+		int first = lowerBound(key);
+		int last = first;
+		int totalWeight = 0;
+		while (last < count && keyAt(last) == key) {
+			totalWeight += weightAt(last);
+			last++;
+		}
+		if (totalWeight == 0)
+			return null;
+
+		int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+		int i = first;
+		while ((pick -= weightAt(i)) >= 0) {
+			i++;
+		}
+
+		int point = geometry.transform(geometry.inverse(symmetry), pointAt(i));
+		if (board.tryPlaceStone(player, point).isRejected())
+			return null; // A hash collision with a different position.
+		return new Move(player, geometry.vertex(point));
+	}
+
+	/**
+	 * Find if a book file was loaded.
+	 *
+	 * @return true if the book can have moves
+	 */
+	public boolean isEnabled() {
+		return entries != null;
+	}
+
+	static long key(long hash, Player player) {
+		return player == Player.WHITE ? hash ^ WHITE_TO_MOVE : hash;
+	}
+
+	private int lowerBound(long key) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keyAt(mid) < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private long keyAt(int i) {
+		return entries.getLong(i * ENTRY_BYTES);
+	}
+
+	private int pointAt(int i) {
+		return entries.getShort(i * ENTRY_BYTES + Long.BYTES);
+	}
+
+	private int weightAt(int i) {
+		return Short.toUnsignedInt(entries.getShort(i * ENTRY_BYTES + Long.BYTES + Short.BYTES));
+	}
+}
@@ -0,0 +1,142 @@
+package pixelgo.book;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import pixelgo.game.Board;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.KoRule;
+import pixelgo.game.Move;
+
+/**
+ * Builds an {@link OpeningBook} from a directory of SGF files. Every move played
+ * in the first moves of a game becomes a candidate for the position it was
+ * played in, weighted by how many games played it.
+ *
+ * <pre>
+ * java -cp pixel-go.jar -Dloader.main=pixelgo.book.OpeningBookBuilder \
+ *     org.springframework.boot.loader.PropertiesLauncher \
+ *     &lt;sgf directory&gt; &lt;book file&gt; [board size=19] [depth=30] [min games=2]
+ * </pre>
+ *
+ * @author jacky
+ *
+ */
+public class OpeningBookBuilder {
+	private record Candidate(long key, int point) {
+	}
+
+	private final int boardSize;
+	private final int depth;
+	private final Map<Candidate, Integer> counts = new HashMap<>();
+	private int games;
+
+	/**
+	 * Create a builder.
+	 *
+	 * @param boardSize the board size of the book; games on other sizes are
+	 *                  skipped
+	 * @param depth     the number of moves of each game to add
+	 */
+	public OpeningBookBuilder(int boardSize, int depth) {
+		if (!BoardGeometry.isSupportedSize(boardSize))
+			throw new IllegalArgumentException("Unsupported board size: " + boardSize);
+
+		this.boardSize = boardSize;
+		this.depth = depth;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: OpeningBookBuilder <sgf directory> <book file> [board size] [depth] [min games]");
+			System.exit(2);
+		}
+
+		int boardSize = args.length > 2 ? Integer.parseInt(args[2]) : 19;
+		int depth = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+		int minGames = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+
+		OpeningBookBuilder builder = new OpeningBookBuilder(boardSize, depth);
+		try (Stream<Path> files = Files.walk(Path.of(args[0]))) {
+			for (Path file : (Iterable<Path>) files.filter(f -> f.toString().toLowerCase().endsWith(".sgf"))::iterator) {
+				try {
+					builder.addAll(SGFParser.parse(Files.readString(file, StandardCharsets.ISO_8859_1)));
+				} catch (IllegalArgumentException e) {
+					System.err.println("Skipping " + file + ": " + e.getMessage());
+				}
+			}
+		}
+
+		int entries = builder.write(Path.of(args[1]), minGames);
+		System.out.println("Wrote " + entries + " entries from " + builder.games + " games to " + args[1]);
+	}
+
+	/**
+	 * Add games to the book. Games on another board size or with setup stones are
+	 * skipped, and a game stops counting at its first pass or illegal move.
+	 *
+	 * @param games the games
+	 */
+	public void addAll(List<SGFParser.Game> games) {
+		for (SGFParser.Game game : games) {
+			if (game.boardSize() != boardSize || game.setup())
+				continue;
+			this.games++;
+
+			Board board = new Board(boardSize, KoRule.POSITIONAL, true);
+			BoardGeometry geometry = board.getGeometry();
+			for (Move move : game.moves().subList(0, Math.min(depth, game.moves().size()))) {
+				int point = geometry.point(move.vertex());
+				if (point < 0)
+					break;
+
+				int symmetry = board.getCanonicalSymmetry();
+				long key = OpeningBook.key(board.getHash(symmetry), move.player());
+				if (board.tryPlaceStone(move.player(), point).isRejected())
+					break;
+				counts.merge(new Candidate(key, geometry.transform(symmetry, point)), 1, Integer::sum);
+			}
+		}
+	}
+
+	/**
+	 * Write the book.
+	 *
+	 * @param path     the book file
+	 * @param minGames the number of games a move must be played in to be included
+	 * @return the number of entries written
+	 * @throws IOException if the file could not be written
+	 */
+	public int write(Path path, int minGames) throws IOException {
+		List<Map.Entry<Candidate, Integer>> entries = new ArrayList<>();
+		for (Map.Entry<Candidate, Integer> entry : counts.entrySet()) {
+			if (entry.getValue() >= minGames)
+				entries.add(entry);
+		}
+		entries.sort((a, b) -> Long.compare(a.getKey().key(), b.getKey().key()));
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(OpeningBook.MAGIC);
+			out.writeInt(OpeningBook.VERSION);
+			out.writeInt(boardSize);
+			out.writeInt(depth);
+			out.writeInt(entries.size());
+
+			for (Map.Entry<Candidate, Integer> entry : entries) {
+				out.writeLong(entry.getKey().key());
+				out.writeShort(entry.getKey().point());
+				out.writeShort(Math.min(entry.getValue(), 0xFFFF));
+			}
+		}
+		return entries.size();
+	}
+}
@@ -0,0 +1,166 @@
+package pixelgo.book;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+
+/**
+ * A minimal SGF reader that extracts the main line of each game in a file.
+ * Variations other than the first are skipped, and only the board size, the
+ * moves and the presence of setup stones are read.
+ *
+ * @author jacky
+ *
+ */
+public class SGFParser {
+	/**
+	 * The main line of a game.
+	 *
+	 * @param boardSize the board size
+	 * @param moves     the moves of the main line, with passes as
+	 *                  <code>pass</code>
+	 * @param setup     true if the game places stones before the first move, e.g.
+	 *                  handicap stones
+	 */
+	public record Game(int boardSize, List<Move> moves, boolean setup) {
+	}
+
+	private final String text;
+	private int pos;
+
+	private int boardSize;
+	private List<Move> moves;
+	private boolean setup;
+
+	private SGFParser(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Parse every game in an SGF collection.
+	 *
+	 * @param text the contents of an SGF file
+	 * @return the games
+	 * @throws IllegalArgumentException if the text is not valid SGF
+	 */
+	public static List<Game> parse(String text) {
+		SGFParser parser = new SGFParser(text);
+		List<Game> games = new ArrayList<>();
+
+		while (parser.skipWhitespace() && parser.peek() == '(') {
+			parser.boardSize = 19;
+			parser.moves = new ArrayList<>();
+			parser.setup = false;
+			parser.parseGameTree(true);
+			games.add(new Game(parser.boardSize, parser.moves, parser.setup));
+		}
+		return games;
+	}
+
+	private void parseGameTree(boolean mainLine) {
+		expect('(');
+		while (skipWhitespace() && peek() == ';') {
+			pos++;
+			parseNode(mainLine);
+		}
+
+		boolean first = true;
+		while (skipWhitespace() && peek() == '(') {
+			parseGameTree(mainLine && first);
+			first = false;
+		}
+		expect(')');
+	}
+
+	private void parseNode(boolean mainLine) {
+		while (skipWhitespace() && Character.isUpperCase(peek())) {
+			int start = pos;
+			while (pos < text.length() && Character.isUpperCase(text.charAt(pos))) {
+				pos++;
+			}
+			String identifier = text.substring(start, pos);
+
+			while (skipWhitespace() && peek() == '[') {
+				String value = parseValue();
+				if (mainLine)
+					property(identifier, value);
+			}
+		}
+	}
+
+	private void property(String identifier, String value) {
+		switch (identifier) {
+		case "SZ":
+			boardSize = Integer.parseInt(value.split(":")[0].trim());
+			break;
+		case "AB":
+		case "AW":
+			if (moves.isEmpty())
+				setup = true;
+			break;
+		case "B":
+			moves.add(new Move(Player.BLACK, vertex(value)));
+			break;
+		case "W":
+			moves.add(new Move(Player.WHITE, vertex(value)));
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Convert an SGF point, where <code>aa</code> is the top left corner, to a GTP
+	 * vertex.
+	 */
+	private String vertex(String value) {
+		if (value.isEmpty() || (value.equals("tt") && boardSize <= 19))
+			return "pass";
+		if (value.length() != 2 || !BoardGeometry.isSupportedSize(boardSize))
+			throw new IllegalArgumentException("Invalid SGF point: " + value);
+
+		int c = value.charAt(0) - 'a';
+		int r = boardSize - 1 - (value.charAt(1) - 'a');
+		if (c < 0 || c >= boardSize || r < 0 || r >= boardSize)
+			throw new IllegalArgumentException("SGF point is off the board: " + value);
+
+		BoardGeometry geometry = BoardGeometry.of(boardSize);
+		return geometry.vertex(r * boardSize + c);
+	}
+
+	private String parseValue() {
+		expect('[');
+		StringBuilder value = new StringBuilder();
+		while (pos < text.length() && text.charAt(pos) != ']') {
+			char c = text.charAt(pos++);
+			if (c == '\\' && pos < text.length())
+				c = text.charAt(pos++);
+			value.append(c);
+		}
+		expect(']');
+		return value.toString();
+	}
+
+	private void expect(char c) {
+		if (!skipWhitespace() || text.charAt(pos) != c)
+			throw new IllegalArgumentException("Expected '" + c + "' at offset " + pos + " of SGF.");
+		pos++;
+	}
+
+	private char peek() {
+		return text.charAt(pos);
+	}
+
+	/**
+	 * @return false if the end of the text was reached
+	 */
+	private boolean skipWhitespace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+		return pos < text.length();
+	}
+}
@@ -0,0 +1,13 @@
+package pixelgo.dtos;
+
+import java.util.List;
+
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+
+public record AnalysisRequest(Player player, List<Move> moves, int boardSize, boolean ownership) {
+	public AnalysisRequest {
+		if (boardSize == 0)
+			boardSize = 19;
+	}
+}
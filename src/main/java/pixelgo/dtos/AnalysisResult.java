@@ -0,0 +1,10 @@
+package pixelgo.dtos;
+
+import pixelgo.game.Move;
+
+/**
+ * The engine's best move for a position. The ownership of each point, indexed
+ * like the flattened board, is null unless it was requested.
+ */
+public record AnalysisResult(Move move, double winrate, double scoreLead, int visits, double[] ownership) {
+}
@@ -0,0 +1,4 @@
+package pixelgo.dtos;
+
+public record CacheStats(int size, long hits, long misses, long evictions) {
+}
@@ -0,0 +1,4 @@
+package pixelgo.dtos;
+
+public record ClockState(long blackRemaining, int blackPeriods, long whiteRemaining, int whitePeriods) {
+}
@@ -1,4 +1,6 @@
 package pixelgo.dtos;
 
-public record GameResult(int blackPoints, int whitePoints) {
+import pixelgo.game.Player;
+
+public record GameResult(int blackPoints, int whitePoints, Player forfeited) {
 }
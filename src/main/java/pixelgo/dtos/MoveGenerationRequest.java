@@ -5,5 +5,9 @@ import java.util.List;
 import pixelgo.game.Move;
 import pixelgo.game.Player;
 
-public record MoveGenerationRequest(Player player, List<Move> moves) {
+public record MoveGenerationRequest(Player player, List<Move> moves, int boardSize, long timeoutMillis) {
+	public MoveGenerationRequest {
+		if (boardSize == 0)
+			boardSize = 19; // Requests from older clients do not specify a size.
+	}
 }
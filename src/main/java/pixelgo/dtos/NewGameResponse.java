@@ -4,5 +4,5 @@ import java.util.UUID;
 
 import pixelgo.game.Player;
 
-public record NewGameResponse(UUID gameId, Player player) {
+public record NewGameResponse(UUID gameId, Player player, int boardSize, UUID reconnectToken) {
 }
@@ -0,0 +1,9 @@
+package pixelgo.dtos;
+
+/**
+ * An estimate of who owns each point at the end of the game, from 1 for black
+ * to -1 for white, indexed like the flattened board, and the expected area of
+ * each player.
+ */
+public record OwnershipEstimate(double[] ownership, double blackScore, double whiteScore, int playouts) {
+}
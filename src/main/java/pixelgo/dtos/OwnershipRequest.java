@@ -0,0 +1,13 @@
+package pixelgo.dtos;
+
+import java.util.List;
+
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+
+public record OwnershipRequest(Player player, List<Move> moves, int boardSize) {
+	public OwnershipRequest {
+		if (boardSize == 0)
+			boardSize = 19;
+	}
+}
@@ -0,0 +1,11 @@
+package pixelgo.dtos;
+
+import java.util.List;
+import java.util.UUID;
+
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+
+public record ResyncResponse(UUID gameId, int fromMoveNumber, List<Move> moves, int moveNumber,
+		Player currentPlayer, boolean running) {
+}
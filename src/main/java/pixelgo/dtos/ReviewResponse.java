@@ -0,0 +1,6 @@
+package pixelgo.dtos;
+
+import java.util.UUID;
+
+public record ReviewResponse(UUID gameId, int moveNumber, int totalMoves, char[][] board) {
+}
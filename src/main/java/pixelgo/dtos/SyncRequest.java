@@ -0,0 +1,4 @@
+package pixelgo.dtos;
+
+public record SyncRequest(int moveNumber) {
+}
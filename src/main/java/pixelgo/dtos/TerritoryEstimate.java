@@ -0,0 +1,8 @@
+package pixelgo.dtos;
+
+/**
+ * A rough estimate of the score while the game is running: the expected owner
+ * of each point, in the same layout as the board, and the area of each player.
+ */
+public record TerritoryEstimate(char[][] territory, int blackScore, int whiteScore) {
+}
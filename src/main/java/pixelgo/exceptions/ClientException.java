@@ -1,7 +1,9 @@
 package pixelgo.exceptions;
 
 /**
- * Exception thrown when the game client makes a bad request.
+ * Exception thrown when the game client makes a bad request. Client exceptions
+ * are only reported back to the client, so they do not fill in a stack trace
+ * unless asked to.
  * 
  * @author jacky
  *
@@ -10,15 +12,15 @@ public class ClientException extends Exception {
 	private static final long serialVersionUID = 1L;
 
 	public ClientException() {
-		super();
+		super(null, null, false, false);
 	}
 
 	public ClientException(String message) {
-		super(message);
+		super(message, null, false, false);
 	}
 
 	public ClientException(String message, Throwable cause) {
-		super(message, cause);
+		super(message, cause, false, false);
 	}
 
 	public ClientException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
@@ -26,7 +28,7 @@ public class ClientException extends Exception {
 	}
 
 	public ClientException(Throwable cause) {
-		super(cause);
+		super(cause == null ? null : cause.toString(), cause, false, false);
 	}
 
 }
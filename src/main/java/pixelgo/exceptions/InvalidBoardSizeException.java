@@ -0,0 +1,33 @@
+package pixelgo.exceptions;
+
+/**
+ * Exception thrown when the client requests a board size that is not supported.
+ * 
+ * @author jacky
+ *
+ */
+public class InvalidBoardSizeException extends ClientException {
+	private static final long serialVersionUID = 1L;
+
+	public InvalidBoardSizeException() {
+		super();
+	}
+
+	public InvalidBoardSizeException(String message) {
+		super(message);
+	}
+
+	public InvalidBoardSizeException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public InvalidBoardSizeException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
+	public InvalidBoardSizeException(Throwable cause) {
+		super(cause);
+	}
+
+}
@@ -0,0 +1,34 @@
+package pixelgo.exceptions;
+
+/**
+ * Exception thrown when the client requests a ko rule that does not
+ * exist.
+ * 
+ * @author jacky
+ *
+ */
+public class InvalidKoRuleException extends ClientException {
+	private static final long serialVersionUID = 1L;
+
+	public InvalidKoRuleException() {
+		super();
+	}
+
+	public InvalidKoRuleException(String message) {
+		super(message);
+	}
+
+	public InvalidKoRuleException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public InvalidKoRuleException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
+	public InvalidKoRuleException(Throwable cause) {
+		super(cause);
+	}
+
+}
@@ -0,0 +1,33 @@
+package pixelgo.exceptions;
+
+/**
+ * Exception thrown when the client asks for a move the game does not have.
+ * 
+ * @author jacky
+ *
+ */
+public class InvalidMoveNumberException extends ClientException {
+	private static final long serialVersionUID = 1L;
+
+	public InvalidMoveNumberException() {
+		super();
+	}
+
+	public InvalidMoveNumberException(String message) {
+		super(message);
+	}
+
+	public InvalidMoveNumberException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public InvalidMoveNumberException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
+	public InvalidMoveNumberException(Throwable cause) {
+		super(cause);
+	}
+
+}
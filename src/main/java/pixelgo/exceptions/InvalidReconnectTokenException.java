@@ -0,0 +1,34 @@
+package pixelgo.exceptions;
+
+/**
+ * Exception thrown when the client tries to resume a game with a reconnect
+ * token that does not belong to it.
+ * 
+ * @author jacky
+ *
+ */
+public class InvalidReconnectTokenException extends ClientException {
+	private static final long serialVersionUID = 1L;
+
+	public InvalidReconnectTokenException() {
+		super();
+	}
+
+	public InvalidReconnectTokenException(String message) {
+		super(message);
+	}
+
+	public InvalidReconnectTokenException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public InvalidReconnectTokenException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
+	public InvalidReconnectTokenException(Throwable cause) {
+		super(cause);
+	}
+
+}
@@ -0,0 +1,34 @@
+package pixelgo.exceptions;
+
+/**
+ * Exception thrown when the client sends a request body with missing or
+ * invalid fields.
+ * 
+ * @author jacky
+ *
+ */
+public class InvalidRequestException extends ClientException {
+	private static final long serialVersionUID = 1L;
+
+	public InvalidRequestException() {
+		super();
+	}
+
+	public InvalidRequestException(String message) {
+		super(message);
+	}
+
+	public InvalidRequestException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public InvalidRequestException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
+	public InvalidRequestException(Throwable cause) {
+		super(cause);
+	}
+
+}
@@ -0,0 +1,34 @@
+package pixelgo.exceptions;
+
+/**
+ * Exception thrown when the client requests time settings that cannot be
+ * parsed.
+ * 
+ * @author jacky
+ *
+ */
+public class InvalidTimeControlException extends ClientException {
+	private static final long serialVersionUID = 1L;
+
+	public InvalidTimeControlException() {
+		super();
+	}
+
+	public InvalidTimeControlException(String message) {
+		super(message);
+	}
+
+	public InvalidTimeControlException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public InvalidTimeControlException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
+	public InvalidTimeControlException(Throwable cause) {
+		super(cause);
+	}
+
+}
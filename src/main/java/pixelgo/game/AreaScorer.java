@@ -0,0 +1,88 @@
+package pixelgo.game;
+
+import java.util.Arrays;
+
+/**
+ * Computes area scores of {@link PackedPosition packed positions}, by the same
+ * rules as {@link Board#getAreaScore()}. A scorer owns its scratch space and
+ * allocates nothing per position, so it must not be shared between threads:
+ * give each worker its own.
+ *
+ * @author jacky
+ *
+ */
+public class AreaScorer {
+	private final int[] points = new int[BoardGeometry.MAX_SIZE * BoardGeometry.MAX_SIZE];
+	private final int[] stack = new int[BoardGeometry.MAX_SIZE * BoardGeometry.MAX_SIZE];
+
+	/**
+	 * The flood fill visited a point if its mark is the current stamp, which saves
+	 * clearing the marks between positions.
+	 */
+	private final int[] marks = new int[BoardGeometry.MAX_SIZE * BoardGeometry.MAX_SIZE];
+	private int stamp;
+
+	/**
+	 * Score a packed position.
+	 *
+	 * @param data   the buffer
+	 * @param offset the index of the size byte of the position in the buffer
+	 * @param score  receives black's score as first element, and white's score as
+	 *               the second
+	 * @throws IllegalArgumentException if the board size is not supported
+	 */
+	public void score(byte[] data, int offset, int[] score) {
+		int n = PackedPosition.size(data, offset);
+		if (!BoardGeometry.isSupportedSize(n))
+			throw new IllegalArgumentException("Unsupported board size: " + n);
+
+		BoardGeometry geometry = BoardGeometry.of(n);
+		int area = geometry.area();
+		for (int i = 0; i < area; i++) {
+			points[i] = PackedPosition.get(data, offset, i);
+		}
+
+		if (++stamp == 0) {
+			Arrays.fill(marks, 0);
+			stamp = 1;
+		}
+
+		int blackPoints = 0;
+		int whitePoints = 0;
+		for (int i = 0; i < area; i++) {
+			if (points[i] == PackedPosition.BLACK) {
+				blackPoints++;
+			} else if (points[i] == PackedPosition.WHITE) {
+				whitePoints++;
+			} else if (marks[i] != stamp) {
+				// Flood fill the empty region and note which colors border it.
+				int borders = 0;
+				int size = 0;
+				int top = 0;
+				stack[top++] = i;
+				marks[i] = stamp;
+				while (top > 0) {
+					int pt = stack[--top];
+					size++;
+					for (int nb : geometry.neighbours(pt)) {
+						if (points[nb] != PackedPosition.EMPTY) {
+							borders |= points[nb];
+						} else if (marks[nb] != stamp) {
+							stack[top++] = nb;
+							marks[nb] = stamp;
+						}
+					}
+				}
+
+				if (borders == PackedPosition.BLACK) {
+					blackPoints += size;
+				} else if (borders == PackedPosition.WHITE) {
+					whitePoints += size;
+				}
+			}
+		}
+
+		score[0] = blackPoints;
+		score[1] = whitePoints;
+	}
+}
@@ -1,16 +1,12 @@
 package pixelgo.game;
 
-import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Queue;
-import java.util.Set;
 
 import pixelgo.exceptions.InvalidMoveException;
 
 /**
  * A class for Go game boards.
- * 
+ *
  * @author jacky
  *
  */
@@ -20,109 +16,164 @@ public class Board {
 	public static final char WHITE = 'W';
 
 	private final int N;
-	private final Set<ZobristHash> positions;
+	private final BoardGeometry geometry;
+	private final KoRule koRule;
+
+	/**
+	 * The earlier positions, keyed by {@link #positionKey(Player)}, or null under
+	 * simple ko.
+	 */
+	private final LongHashSet positions;
+
+	/**
+	 * The point the player {@link #koPlayer} may not retake this move, or -1.
+	 */
+	private int koPoint = -1;
+	private Player koPlayer;
+
 	private ZobristHash hash;
 	private ZobristHash prevHash;
-	
-	private char[][] board;
-	private char[][] prevBoard;
-	
 	/**
-	 * Constructs an empty Go Board with dimensions n x n.
-	 * 
+	 * The hashes of all 8 orientations of the position, or null if the board does
+	 * not track them.
+	 */
+	private final SymmetricZobristHash symmetricHash;
+	private final SymmetricZobristHash prevSymmetricHash;
+
+	private char[] board;
+	private char[] prevBoard;
+
+	/**
+	 * Scratch space for flood fills, reused between moves.
+	 */
+	private final int[] queue;
+	private final boolean[] visited;
+
+	/**
+	 * The stones captured by the move being tried.
+	 */
+	private final int[] captured;
+	private int capturedCount;
+
+	private final InfluenceMap influence;
+
+	/**
+	 * A random bit string mixed into the position key when white is to move, so
+	 * situational superko tells the two apart.
+	 */
+	private static final long WHITE_TO_MOVE = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Constructs an empty Go Board with dimensions n x n and positional superko.
+	 *
 	 * @param n the size of the board
 	 */
 	public Board(int n) {
+		this(n, KoRule.POSITIONAL);
+	}
+
+	/**
+	 * Constructs an empty Go Board with dimensions n x n.
+	 *
+	 * @param n      the size of the board
+	 * @param koRule the rule against repeating positions
+	 */
+	public Board(int n, KoRule koRule) {
+		this(n, koRule, false);
+	}
+
+	/**
+	 * Constructs an empty Go Board with dimensions n x n. Tracking the hashes of
+	 * the rotated and reflected positions costs 8 more hash updates per stone, so
+	 * only boards that look positions up by their canonical form should ask for
+	 * it.
+	 *
+	 * @param n          the size of the board
+	 * @param koRule     the rule against repeating positions
+	 * @param symmetries true to track the hashes needed by
+	 *                   {@link #getHash(int)} and {@link #getCanonicalSymmetry()}
+	 */
+	public Board(int n, KoRule koRule, boolean symmetries) {
 		if (n < 1)
 			throw new IllegalArgumentException("Board size must be positive.");
 
 		N = n;
-		board = new char[n][n];
-		prevBoard = new char[n][n];
-		for (int i = 0; i < N; i++) {
-			Arrays.fill(board[i], EMPTY);
-			Arrays.fill(prevBoard[i], EMPTY);
-		}
-				
-		positions = new HashSet<>();
-		
-		hash = new ZobristHash();
+		geometry = BoardGeometry.of(n);
+		board = new char[geometry.area()];
+		prevBoard = new char[geometry.area()];
+		Arrays.fill(board, EMPTY);
+		Arrays.fill(prevBoard, EMPTY);
+
+		queue = new int[geometry.area()];
+		visited = new boolean[geometry.area()];
+		captured = new int[geometry.area()];
+		influence = new InfluenceMap(geometry);
+
+		hash = new ZobristHash(geometry);
 		prevHash = hash.copy();
+		symmetricHash = symmetries ? new SymmetricZobristHash(geometry) : null;
+		prevSymmetricHash = symmetries ? new SymmetricZobristHash(geometry) : null;
+
+		this.koRule = koRule;
+		if (koRule == KoRule.SIMPLE) {
+			positions = null;
+		} else {
+			positions = new LongHashSet(geometry.area() * 2);
+			positions.add(hash.getHash()); // The empty board, black to move.
+		}
 	}
 
 	/**
 	 * Calculates the area score of both players.
-	 * 
+	 *
 	 * @return an integer array with the black's score as first element, and white's
 	 *         score as the second
 	 */
 	public int[] getAreaScore() {
-		boolean[][] visited = new boolean[N][N];
-		Queue<int[]> queue = new ArrayDeque<>();
+		boolean[] visited = new boolean[geometry.area()];
+		int[] stack = new int[geometry.area()];
 
 		int blackPoints = 0;
 		int whitePoints = 0;
 
 		synchronized (this) {
-			for (int i = 0; i < N; i++) {
-				for (int j = 0; j < N; j++) {
-					if (board[i][j] == BLACK) {
-						blackPoints++;
-					} else if (board[i][j] == WHITE) {
-						whitePoints++;
-					} else if (!visited[i][j]) {
-						// Use breadth-first search to determine the size of the territory and check if
-						// it is neutral or controlled by black or white.
-						boolean surroundedByBlack = false;
-						boolean surroundedByWhite = false;
-
-						queue.add(new int[] { i, j });
-						visited[i][j] = true;
-
-						int territorySize = 0;
-
-						while (!queue.isEmpty()) {
-							int[] pt = queue.remove();
-							int r = pt[0];
-							int c = pt[1];
-
-							if (board[r][c] == EMPTY) {
-								territorySize++;
-
-								if (inBounds(r + 1) && !visited[r + 1][c]) {
-									queue.add(new int[] { r + 1, c });
-									visited[r + 1][c] = true;
-								}
-								if (inBounds(r - 1) && !visited[r - 1][c]) {
-									queue.add(new int[] { r - 1, c });
-									visited[r - 1][c] = true;
-								}
-								if (inBounds(c + 1) && !visited[r][c + 1]) {
-									queue.add(new int[] { r, c + 1 });
-									visited[r][c + 1] = true;
-								}
-								if (inBounds(c - 1) && !visited[r][c]) {
-									queue.add(new int[] { r, c - 1 });
-									visited[r][c - 1] = true;
-								}
-
-							} else {
-								visited[r][c] = false; // Same stone may need to be visited again by another territory.
-
-								if (board[r][c] == BLACK) {
-									surroundedByBlack = true;
-								}
-								if (board[r][c] == WHITE) {
-									surroundedByWhite = true;
-								}
+			for (int i = 0; i < board.length; i++) {
+				if (board[i] == BLACK) {
+					blackPoints++;
+				} else if (board[i] == WHITE) {
+					whitePoints++;
+				} else if (!visited[i]) {
+					// Use depth-first search to determine the size of the territory and check if
+					// it is neutral or controlled by black or white.
+					boolean surroundedByBlack = false;
+					boolean surroundedByWhite = false;
+
+					int top = 0;
+					stack[top++] = i;
+					visited[i] = true;
+
+					int territorySize = 0;
+
+					while (top > 0) {
+						int pt = stack[--top];
+						territorySize++;
+
+						for (int n : geometry.neighbours(pt)) {
+							if (board[n] == BLACK) {
+								surroundedByBlack = true;
+							} else if (board[n] == WHITE) {
+								surroundedByWhite = true;
+							} else if (!visited[n]) {
+								stack[top++] = n;
+								visited[n] = true;
 							}
 						}
+					}
 
-						if (surroundedByBlack && !surroundedByWhite) {
-							blackPoints += territorySize;
-						} else if (surroundedByWhite && !surroundedByBlack) {
-							whitePoints += territorySize;
-						}
+					if (surroundedByBlack && !surroundedByWhite) {
+						blackPoints += territorySize;
+					} else if (surroundedByWhite && !surroundedByBlack) {
+						whitePoints += territorySize;
 					}
 				}
 			}
@@ -131,183 +182,345 @@ public class Board {
 		return new int[] { blackPoints, whitePoints };
 	}
 
+	/**
+	 * Estimate the area score of both players from the influence of the stones on
+	 * the board, see {@link InfluenceMap}. Unlike {@link #getAreaScore()} it
+	 * gives a sensible answer before the game is over.
+	 *
+	 * @return an integer array with the black's score as first element, and white's
+	 *         score as the second
+	 */
+	public synchronized int[] getEstimatedScore() {
+		return influence.getScore();
+	}
+
+	/**
+	 * Get the expected owner of every point, see {@link InfluenceMap}.
+	 *
+	 * @return the owners, in the same layout as {@link #getBoard()}
+	 */
+	public synchronized char[][] getTerritory() {
+		return influence.getTerritory();
+	}
+
 	/**
 	 * Get the array representation of the board.
-	 * 
+	 *
 	 * @return a copy of the array backing the board
 	 */
 	public synchronized char[][] getBoard() {
-		return Arrays.copyOf(board, N);
+		char[][] copy = new char[N][];
+		for (int r = 0; r < N; r++) {
+			copy[r] = Arrays.copyOfRange(board, r * N, (r + 1) * N);
+		}
+		return copy;
+	}
+
+	/**
+	 * Get the stone on a point.
+	 *
+	 * @param point the flattened index
+	 * @return {@link #BLACK}, {@link #WHITE} or {@link #EMPTY}
+	 */
+	public synchronized char get(int point) {
+		return board[point];
+	}
+
+	/**
+	 * Find if an empty point is an eye of a color: all of its neighbours are the
+	 * color, and the opponent holds at most one diagonal, or none on the edge.
+	 * This is the same rule as {@link PlayoutBoard#isEye(char, int)}.
+	 *
+	 * @param color the color
+	 * @param point the flattened index
+	 * @return true if filling the point would be pointless
+	 */
+	public synchronized boolean isEye(char color, int point) {
+		for (int n : geometry.neighbours(point)) {
+			if (board[n] != color)
+				return false;
+		}
+
+		int opponent = 0;
+		boolean edge = false;
+		for (int d = 1; d < BoardGeometry.DIRECTIONS; d += 2) {
+			int diagonal = geometry.around(point, d);
+			if (diagonal < 0) {
+				edge = true;
+			} else if (board[diagonal] != color && board[diagonal] != EMPTY) {
+				opponent++;
+			}
+		}
+		return opponent + (edge ? 1 : 0) < 2;
+	}
+
+	/**
+	 * Get the Zobrist hash of the current position.
+	 *
+	 * @return the hash
+	 */
+	public synchronized long getHash() {
+		return hash.getHash();
+	}
+
+	/**
+	 * Get the Zobrist hash the current position would have after a rotation or
+	 * reflection of the board.
+	 *
+	 * @param symmetry the symmetry, see {@link BoardGeometry#transform(int, int)}
+	 * @return the hash of the transformed position
+	 * @throws IllegalStateException if the board does not track symmetries
+	 */
+	public synchronized long getHash(int symmetry) {
+		return symmetries().getHash(symmetry);
+	}
+
+	/**
+	 * Find the rotation or reflection that gives the current position its
+	 * canonical form, the one with the smallest hash. All 8 orientations of a
+	 * position have the same canonical form.
+	 *
+	 * @return the symmetry, see {@link BoardGeometry#transform(int, int)}
+	 * @throws IllegalStateException if the board does not track symmetries
+	 */
+	public synchronized int getCanonicalSymmetry() {
+		return symmetries().getCanonicalSymmetry();
+	}
+
+	/**
+	 * Get the hash shared by all 8 orientations of the current position.
+	 *
+	 * @return the canonical hash
+	 * @throws IllegalStateException if the board does not track symmetries
+	 */
+	public synchronized long getCanonicalHash() {
+		return symmetries().getCanonicalHash();
+	}
+
+	private SymmetricZobristHash symmetries() {
+		if (symmetricHash == null)
+			throw new IllegalStateException("Board was created without symmetric hashes.");
+		return symmetricHash;
+	}
+
+	/**
+	 * Get the shared lookup tables for the board size.
+	 *
+	 * @return the geometry of the board
+	 */
+	public BoardGeometry getGeometry() {
+		return geometry;
 	}
 
 	/**
 	 * Place a stone at the specified location.
-	 * 
+	 *
 	 * @param player the player placing the stone
 	 * @param location the location of the stone
 	 * @throws InvalidMoveException
 	 */
-	public synchronized void placeStone(Player player, int[] location) throws InvalidMoveException {
+	public void placeStone(Player player, int[] location) throws InvalidMoveException {
 		int r = location[0];
 		int c = location[1];
 
-		if (r >= N || c >= N) {
-			throw new IllegalArgumentException("Row/column indicies must be less than board size: " + N);
+		if (r < 0 || c < 0 || r >= N || c >= N) {
+			throw new IllegalArgumentException("Row/column indices must be between 0 and " + (N - 1) + ": " + r + ", " + c);
+		}
+
+		placeStone(player, r * N + c);
+	}
+
+	/**
+	 * Place a stone at the specified point.
+	 *
+	 * @param player the player placing the stone
+	 * @param point  the flattened index of the stone
+	 * @throws InvalidMoveException
+	 */
+	public void placeStone(Player player, int point) throws InvalidMoveException {
+		if (point < 0 || point >= board.length) {
+			throw new IllegalArgumentException("Point must be on the board: " + point);
 		}
 
-		deepCopy(board, prevBoard); // Store the current board state.
+		MoveResult result = tryPlaceStone(player, point);
+		if (result.isRejected())
+			throw new InvalidMoveException(result.getViolation());
+	}
+
+	/**
+	 * Try to place a stone at the specified point. The board is left unchanged if
+	 * the move is illegal.
+	 *
+	 * @param player the player placing the stone
+	 * @param point  the flattened index of the stone
+	 * @return {@link MoveResult#APPLIED} or the rule the move violates
+	 */
+	public synchronized MoveResult tryPlaceStone(Player player, int point) {
+		if (point < 0 || point >= board.length)
+			return MoveResult.rejected(Violation.ILLEGAL_ARGUMENT);
+
+		if (board[point] != EMPTY)
+			return MoveResult.rejected(Violation.OCCUPIED_POSITION);
+
+		if (point == koPoint && player == koPlayer)
+			return MoveResult.rejected(Violation.REPEATED_POSITION);
+
+		System.arraycopy(board, 0, prevBoard, 0, board.length); // Store the current board state.
 		prevHash.setHash(hash.getHash()); // Store the current Zobrist hash.
+		if (symmetricHash != null)
+			prevSymmetricHash.copyFrom(symmetricHash);
 
-		try {
-			if (board[r][c] != EMPTY)
-				throw new InvalidMoveException(Violation.OCCUPIED_POSITION);
-
-			char color = player == Player.BLACK ? BLACK : WHITE;
-			char opponentColor = player == Player.BLACK ? WHITE : BLACK;
-			
-			board[r][c] = color;
-			hash.toggleStone(color, r * N + c);
-			
-			// Try to capture opponent stones.
-			tryToCaptureAll(opponentColor, r, c);
-
-			// If player's own stones will be captured, throw an exception.
-			if (tryToCapture(board[r][c], r, c)) {
-				throw new InvalidMoveException(Violation.SUICIDE);
-			}
-			
-			if (positions.contains(hash)) {
-				throw new InvalidMoveException(Violation.REPEATED_POSITION);
-			}
-			
-			positions.add(hash.copy());
+		char color = player == Player.BLACK ? BLACK : WHITE;
+		char opponentColor = player == Player.BLACK ? WHITE : BLACK;
+
+		board[point] = color;
+		hash.toggleStone(color, point);
+		if (symmetricHash != null)
+			symmetricHash.toggleStone(color, point);
+		capturedCount = 0;
+
+		// Try to capture opponent stones.
+		for (int n : geometry.neighbours(point)) {
+			tryToCapture(opponentColor, n);
+		}
 
-		} catch (InvalidMoveException e) {
+		Violation violation = null;
+		if (tryToCapture(color, point)) {
+			// The player's own stones would be captured.
+			violation = Violation.SUICIDE;
+		} else if (capturedCount > 0 && positions != null && positions.contains(positionKey(player))) {
+			// A move that captures nothing adds a stone, so it cannot repeat a position.
+			violation = Violation.REPEATED_POSITION;
+		}
+
+		if (violation != null) {
 			// Revert changes.
-			char[][] temp = board;
+			char[] temp = board;
 			board = prevBoard;
 			prevBoard = temp;
-			
+
 			hash.setHash(prevHash.getHash());
-			throw e;
+			if (symmetricHash != null)
+				symmetricHash.copyFrom(prevSymmetricHash);
+			return MoveResult.rejected(violation);
+		}
+
+		if (positions != null)
+			positions.add(positionKey(player));
+		updateKo(player, color, point);
+		for (int i = 0; i < capturedCount; i++) {
+			influence.remove(captured[i]);
 		}
+		influence.add(color, point);
+		return MoveResult.APPLIED;
 	}
 
 	/**
-	 * Get the size of the board.
-	 * 
-	 * @return the size <code>N</code> of the <code>N</code> x <code>N</code> board
+	 * Record a pass, which lifts the ko. Under situational superko the position
+	 * with the opponent to move is remembered as well.
+	 *
+	 * @param player the player passing
 	 */
-	public int size() {
-		return N;
+	public synchronized void pass(Player player) {
+		koPoint = -1;
+		if (koRule == KoRule.SITUATIONAL)
+			positions.add(positionKey(player));
+	}
+
+	/**
+	 * Get the rule against repeating positions.
+	 *
+	 * @return the ko rule
+	 */
+	public KoRule getKoRule() {
+		return koRule;
 	}
 
 	/**
-	 * Find if an integer index is in bounds of the board.
-	 * 
-	 * @param i the index
-	 * @return true if the index is in bounds
+	 * Get the key of the current position in the position history after a player
+	 * moved.
 	 */
-	private boolean inBounds(int i) {
-		return i >= 0 && i < N;
+	private long positionKey(Player mover) {
+		if (koRule == KoRule.SITUATIONAL && mover == Player.BLACK)
+			return hash.getHash() ^ WHITE_TO_MOVE;
+		return hash.getHash();
 	}
 
 	/**
-	 * Call on an adjacent position to determine if it is connected.
-	 * 
-	 * @param r     the row index
-	 * @param c     the column index
-	 * @param color the color required to be connected
-	 * @return true if the position is connected
+	 * Set the ko point if the move captured a single stone with a lone stone that
+	 * is left with that point as its only liberty.
 	 */
-	private boolean isConnected(int r, int c, char color) {
-		return inBounds(r) && inBounds(c) && (board[r][c] == color || board[r][c] == EMPTY);
+	private void updateKo(Player player, char color, int point) {
+		koPoint = -1;
+		if (capturedCount != 1)
+			return;
+
+		int liberties = 0;
+		for (int n : geometry.neighbours(point)) {
+			if (board[n] == color)
+				return;
+			if (board[n] == EMPTY)
+				liberties++;
+		}
+		if (liberties == 1) {
+			koPoint = captured[0];
+			koPlayer = player.opponent;
+		}
+	}
+
+	/**
+	 * Get the size of the board.
+	 *
+	 * @return the size <code>N</code> of the <code>N</code> x <code>N</code> board
+	 */
+	public int size() {
+		return N;
 	}
 
 	/**
 	 * Check if a group has any liberties and clear it off the board if it does not.
-	 * 
+	 *
 	 * @param color the color to capture
-	 * @param r     the starting row index
-	 * @param c     the starting column index
+	 * @param point the flattened index of a stone in the group
 	 * @return true if a capture was made
 	 */
-	private boolean tryToCapture(char color, int r, int c) {
-		if (board[r][c] != color)
+	private boolean tryToCapture(char color, int point) {
+		if (board[point] != color)
 			return false;
 
-		// Breadth first search for a liberty.
+		// Breadth first search for a liberty. The queue ends up holding every stone of
+		// the group.
 
-		boolean[][] visited = new boolean[N][N];
+		Arrays.fill(visited, false);
 
-		Queue<int[]> queue = new ArrayDeque<>();
-		queue.add(new int[] { r, c });
-		visited[r][c] = true;
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = point;
+		visited[point] = true;
 
-		synchronized (this) {
-			while (!queue.isEmpty()) {
-				int[] pt = queue.remove();
-				r = pt[0];
-				c = pt[1];
+		while (head < tail) {
+			int pt = queue[head++];
 
-				if (board[r][c] == EMPTY)
+			for (int n : geometry.neighbours(pt)) {
+				if (board[n] == EMPTY)
 					return false;
 
-				if (isConnected(r - 1, c, color) && !visited[r - 1][c]) {
-					queue.add(new int[] { r - 1, c });
-					visited[r - 1][c] = true;
-				}
-				if (isConnected(r + 1, c, color) && !visited[r + 1][c]) {
-					queue.add(new int[] { r + 1, c });
-					visited[r + 1][c] = true;
-				}
-				if (isConnected(r, c - 1, color) && !visited[r][c - 1]) {
-					queue.add(new int[] { r, c - 1 });
-					visited[r][c - 1] = true;
-				}
-				if (isConnected(r, c + 1, color) && !visited[r][c + 1]) {
-					queue.add(new int[] { r, c + 1 });
-					visited[r][c + 1] = true;
+				if (board[n] == color && !visited[n]) {
+					queue[tail++] = n;
+					visited[n] = true;
 				}
 			}
+		}
 
-			// Clear the captured stones.
-			for (r = 0; r < N; r++) {
-				for (c = 0; c < N; c++) {
-					if (visited[r][c]) {
-						if (board[r][c] == color) {
-							hash.toggleStone(color, r * N + c);
-						}
-						board[r][c] = EMPTY;
-					}
-				}
-			}
+		// Clear the captured stones.
+		for (int i = 0; i < tail; i++) {
+			hash.toggleStone(color, queue[i]);
+			if (symmetricHash != null)
+				symmetricHash.toggleStone(color, queue[i]);
+			board[queue[i]] = EMPTY;
+			captured[capturedCount++] = queue[i];
 		}
 
 		return true;
 	}
-
-	/**
-	 * Convenience method to try to capture all adjacent groups to a location.
-	 * 
-	 * @param color the color to capture
-	 * @param r     the row index
-	 * @param c     the column index
-	 */
-	private void tryToCaptureAll(char color, int r, int c) {
-		if (inBounds(r + 1))
-			tryToCapture(color, r + 1, c);
-		if (inBounds(r - 1))
-			tryToCapture(color, r - 1, c);
-		if (inBounds(c + 1))
-			tryToCapture(color, r, c + 1);
-		if (inBounds(c - 1))
-			tryToCapture(color, r, c - 1);
-	}
-	
-	private void deepCopy(char[][] src, char[][] des) {
-		for (int i = 0; i < N; i++) {
-			System.arraycopy(src[i], 0, des[i], 0, N);
-		}
-	}
 }
@@ -0,0 +1,303 @@
+package pixelgo.game;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Immutable lookup tables for a single board size. Every board of a given size
+ * shares the same instance, so the tables are only built once.
+ *
+ * <p>
+ * Points are addressed by their "flattened" index <code>r * N + c</code>, where
+ * row 0 is GTP row 1 and column 0 is GTP column A.
+ *
+ * @author jacky
+ *
+ */
+public final class BoardGeometry {
+	/**
+	 * The largest supported board size. GTP has 25 column letters (A-Z without I).
+	 */
+	public static final int MAX_SIZE = 25;
+
+	/**
+	 * The smallest supported board size.
+	 */
+	public static final int MIN_SIZE = 1;
+
+	/**
+	 * The number of rotations and reflections of a square board, including the
+	 * identity.
+	 */
+	public static final int SYMMETRIES = 8;
+
+	/**
+	 * The number of points around a point, see {@link #around(int, int)}.
+	 */
+	public static final int DIRECTIONS = 8;
+
+	/**
+	 * The row and column steps of each direction, clockwise from up. Opposite
+	 * directions differ by 4, i.e. <code>d ^ 4</code> is the opposite of
+	 * <code>d</code>, and the even directions are the orthogonal ones.
+	 */
+	private static final int[] ROW_STEPS = { 1, 1, 0, -1, -1, -1, 0, 1 };
+	private static final int[] COLUMN_STEPS = { 0, 1, 1, 1, 0, -1, -1, -1 };
+
+	private static final long ZOBRIST_SEED = 0x70697865_6c676fL;
+
+	private static final String COLUMNS = "ABCDEFGHJKLMNOPQRSTUVWXYZ";
+
+	private static final BoardGeometry[] geometries = new BoardGeometry[MAX_SIZE + 1];
+
+	private final int N;
+	private final int area;
+	private final int[][] neighbours;
+	private final int[] around;
+	private final boolean[] edge;
+	private final boolean[] corner;
+	private final String[] vertices;
+	private final Map<String, Integer> points;
+	private final long[] blackKeys;
+	private final long[] whiteKeys;
+	private final int[][] symmetries;
+	private final int[] inverses;
+
+	private BoardGeometry(int n) {
+		N = n;
+		area = n * n;
+		neighbours = new int[area][];
+		around = new int[area * DIRECTIONS];
+		edge = new boolean[area];
+		corner = new boolean[area];
+		vertices = new String[area];
+		points = new HashMap<>(area * 2);
+		blackKeys = new long[area];
+		whiteKeys = new long[area];
+		symmetries = new int[SYMMETRIES][area];
+		inverses = new int[SYMMETRIES];
+
+		// Seeded so that hashes are the same in every process and can be stored, e.g. in an opening book.
+		Random random = new Random(ZOBRIST_SEED + n);
+		int[] buffer = new int[4];
+
+		for (int r = 0; r < n; r++) {
+			for (int c = 0; c < n; c++) {
+				int i = r * n + c;
+
+				int count = 0;
+				if (r + 1 < n)
+					buffer[count++] = i + n;
+				if (r - 1 >= 0)
+					buffer[count++] = i - n;
+				if (c + 1 < n)
+					buffer[count++] = i + 1;
+				if (c - 1 >= 0)
+					buffer[count++] = i - 1;
+
+				neighbours[i] = new int[count];
+				System.arraycopy(buffer, 0, neighbours[i], 0, count);
+
+				for (int d = 0; d < DIRECTIONS; d++) {
+					int ar = r + ROW_STEPS[d];
+					int ac = c + COLUMN_STEPS[d];
+					around[i * DIRECTIONS + d] = ar < 0 || ar >= n || ac < 0 || ac >= n ? -1 : ar * n + ac;
+				}
+
+				boolean rowEdge = r == 0 || r == n - 1;
+				boolean columnEdge = c == 0 || c == n - 1;
+				edge[i] = rowEdge || columnEdge;
+				corner[i] = rowEdge && columnEdge;
+
+				vertices[i] = COLUMNS.charAt(c) + String.valueOf(r + 1);
+				points.put(vertices[i], i);
+
+				blackKeys[i] = random.nextLong();
+				whiteKeys[i] = random.nextLong();
+
+				// Bit 0 flips the rows, bit 1 flips the columns, and bit 2 swaps rows and
+				// columns afterwards.
+				for (int s = 0; s < SYMMETRIES; s++) {
+					int tr = (s & 1) != 0 ? n - 1 - r : r;
+					int tc = (s & 2) != 0 ? n - 1 - c : c;
+					symmetries[s][i] = (s & 4) != 0 ? tc * n + tr : tr * n + tc;
+				}
+			}
+		}
+
+		for (int s = 0; s < SYMMETRIES; s++) {
+			for (int t = 0; t < SYMMETRIES; t++) {
+				if (Arrays.equals(compose(s, t), symmetries[0]))
+					inverses[s] = t;
+			}
+		}
+	}
+
+	private int[] compose(int first, int second) {
+		int[] composed = new int[area];
+		for (int i = 0; i < area; i++) {
+			composed[i] = symmetries[second][symmetries[first][i]];
+		}
+		return composed;
+	}
+
+	/**
+	 * Get the shared geometry for a board size.
+	 *
+	 * @param n the board size
+	 * @return the geometry for an <code>n</code> x <code>n</code> board
+	 */
+	public static BoardGeometry of(int n) {
+		if (!isSupportedSize(n))
+			throw new IllegalArgumentException(
+					"Board size must be between " + MIN_SIZE + " and " + MAX_SIZE + ": " + n);
+
+		BoardGeometry geometry = geometries[n];
+		if (geometry == null) {
+			synchronized (geometries) {
+				geometry = geometries[n];
+				if (geometry == null) {
+					geometry = new BoardGeometry(n);
+					geometries[n] = geometry;
+				}
+			}
+		}
+		return geometry;
+	}
+
+	/**
+	 * Find if a board size is supported.
+	 *
+	 * @param n the board size
+	 * @return true if boards of size <code>n</code> can be created
+	 */
+	public static boolean isSupportedSize(int n) {
+		return n >= MIN_SIZE && n <= MAX_SIZE;
+	}
+
+	/**
+	 * Get the number of points on the board.
+	 *
+	 * @return <code>N * N</code>
+	 */
+	public int area() {
+		return area;
+	}
+
+	/**
+	 * Get the Zobrist key for a black stone.
+	 *
+	 * @param i the flattened index
+	 * @return the key
+	 */
+	public long blackKey(int i) {
+		return blackKeys[i];
+	}
+
+	/**
+	 * Get the Zobrist key for a white stone.
+	 *
+	 * @param i the flattened index
+	 * @return the key
+	 */
+	public long whiteKey(int i) {
+		return whiteKeys[i];
+	}
+
+	/**
+	 * Find if a point is a corner of the board.
+	 *
+	 * @param i the flattened index
+	 * @return true if the point is a corner
+	 */
+	public boolean isCorner(int i) {
+		return corner[i];
+	}
+
+	/**
+	 * Find if a point is on the edge of the board. Corners are also edges.
+	 *
+	 * @param i the flattened index
+	 * @return true if the point is on the first line
+	 */
+	public boolean isEdge(int i) {
+		return edge[i];
+	}
+
+	/**
+	 * Get the orthogonally adjacent points. The returned array is shared and must
+	 * not be modified.
+	 *
+	 * @param i the flattened index
+	 * @return the flattened indices of the neighbours
+	 */
+	public int[] neighbours(int i) {
+		return neighbours[i];
+	}
+
+	/**
+	 * Get the point one step away in a direction, diagonals included.
+	 *
+	 * @param i         the flattened index
+	 * @param direction the direction, from 0 to {@link #DIRECTIONS} - 1
+	 * @return the flattened index, or -1 if it is off the board
+	 */
+	public int around(int i, int direction) {
+		return around[i * DIRECTIONS + direction];
+	}
+
+	/**
+	 * Look up a GTP vertex string.
+	 *
+	 * @param vertex the GTP vertex string, e.g. <code>D4</code>
+	 * @return the flattened index, or -1 if the vertex is not on the board
+	 */
+	public int point(String vertex) {
+		Integer i = points.get(vertex.toUpperCase());
+		return i == null ? -1 : i;
+	}
+
+	/**
+	 * Get the symmetry that undoes another one.
+	 *
+	 * @param symmetry the symmetry, from 0 (the identity) to {@link #SYMMETRIES}
+	 *                 - 1
+	 * @return the inverse symmetry
+	 */
+	public int inverse(int symmetry) {
+		return inverses[symmetry];
+	}
+
+	/**
+	 * Get the size of the board.
+	 *
+	 * @return the size <code>N</code> of the <code>N</code> x <code>N</code> board
+	 */
+	public int size() {
+		return N;
+	}
+
+	/**
+	 * Map a point through a rotation or reflection of the board.
+	 *
+	 * @param symmetry the symmetry, from 0 (the identity) to {@link #SYMMETRIES}
+	 *                 - 1
+	 * @param i        the flattened index
+	 * @return the flattened index of the image of the point
+	 */
+	public int transform(int symmetry, int i) {
+		return symmetries[symmetry][i];
+	}
+
+	/**
+	 * Get the GTP vertex string of a point.
+	 *
+	 * @param i the flattened index
+	 * @return the GTP vertex string
+	 */
+	public String vertex(int i) {
+		return vertices[i];
+	}
+}
@@ -1,5 +1,7 @@
 package pixelgo.game;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import pixelgo.exceptions.GameNotStartedException;
@@ -14,11 +16,15 @@ import pixelgo.exceptions.PlayerOutOfTurnException;
  */
 public class Game {
 	private Board board;
+	private final GameClock clock;
 	private boolean consecutivePass;
 	private Player currentPlayer;
 	private boolean hasEnded;
 	private boolean running;
 	private AtomicInteger moveNumber;
+	private Player forfeited;
+	private final List<Move> moves;
+	private final GameHistory history;
 
 	/**
 	 * Constructs a new game with size <code>n</code>.
@@ -26,16 +32,40 @@ public class Game {
 	 * @param n the board size
 	 */
 	public Game(int n) {
-		if (n < 1) {
-			throw new IllegalArgumentException("Board size must be positive.");
+		this(n, null);
+	}
+
+	/**
+	 * Constructs a new game with size <code>n</code> and a clock.
+	 * 
+	 * @param n           the board size
+	 * @param timeControl the time settings, or null for an untimed game
+	 */
+	public Game(int n, TimeControl timeControl) {
+		this(n, timeControl, KoRule.POSITIONAL);
+	}
+
+	/**
+	 * Constructs a new game with size <code>n</code>, a clock and a ko rule.
+	 * 
+	 * @param n           the board size
+	 * @param timeControl the time settings, or null for an untimed game
+	 * @param koRule      the rule against repeating positions
+	 */
+	public Game(int n, TimeControl timeControl, KoRule koRule) {
+		if (!BoardGeometry.isSupportedSize(n)) {
+			throw new IllegalArgumentException("Unsupported board size: " + n);
 		}
 
 		running = false;
-		board = new Board(n);
+		board = new Board(n, koRule);
 		currentPlayer = Player.BLACK;
 		consecutivePass = false;
 		hasEnded = false;
 		moveNumber = new AtomicInteger();
+		moves = new ArrayList<>();
+		history = new GameHistory(board.getGeometry(), GameHistory.DEFAULT_INTERVAL);
+		clock = timeControl == null ? null : new GameClock(timeControl);
 	}
 
 	/**
@@ -46,17 +76,78 @@ public class Game {
 	 * @throws GameNotStartedException
 	 * @throws InvalidMoveException
 	 */
-	public synchronized void executeMove(Move move)
+	public void executeMove(Move move)
 			throws PlayerOutOfTurnException, GameNotStartedException, InvalidMoveException {
+		MoveResult result = tryExecuteMove(move);
+		if (!result.isRejected())
+			return;
+
+		switch (result.getViolation()) {
+		case OUT_OF_TURN:
+			throw new PlayerOutOfTurnException(move.player());
+		case GAME_NOT_STARTED:
+			throw new GameNotStartedException("Game has not started.");
+		default:
+			throw new InvalidMoveException(result.getViolation());
+		}
+	}
+
+	/**
+	 * Try to execute the provided move without throwing. The game is left
+	 * unchanged if the move is rejected.
+	 * 
+	 * @param move the move
+	 * @return {@link MoveResult#APPLIED}, {@link MoveResult#IGNORED} if the player
+	 *         to move has just lost on time, or the reason the move was rejected
+	 */
+	public synchronized MoveResult tryExecuteMove(Move move) {
 		Player player = move.player();
-		checkPreconditions(player);
+		if (currentPlayer != player)
+			return MoveResult.rejected(Violation.OUT_OF_TURN);
+		if (!running)
+			return MoveResult.rejected(Violation.GAME_NOT_STARTED);
+
+		if (checkFlag()) {
+			return MoveResult.IGNORED;
+		}
 
 		String vertex = move.vertex();
+		int point = -1;
 		if (vertex.equalsIgnoreCase("PASS")) {
 			passTurn(player);
 		} else {
-			placeStone(player, vertex);
+			point = board.getGeometry().point(vertex);
+			MoveResult result = placeStone(player, point);
+			if (result.isRejected())
+				return result;
+		}
+		moves.add(move);
+		history.record(point, board);
+		return MoveResult.APPLIED;
+	}
+
+	/**
+	 * End the game if the player to move has run out of time.
+	 * 
+	 * @return true if the player to move lost on time
+	 */
+	public synchronized boolean checkFlag() {
+		if (running && clock != null && clock.isFlagged(System.currentTimeMillis())) {
+			forfeit(currentPlayer);
+			return true;
 		}
+
+		return false;
+	}
+
+	/**
+	 * End the game with a loss for a player, e.g. because they ran out of time.
+	 * 
+	 * @param player the losing player
+	 */
+	public synchronized void forfeit(Player player) {
+		forfeited = player;
+		stopGame();
 	}
 
 	/**
@@ -68,6 +159,24 @@ public class Game {
 		return board.getBoard();
 	}
 
+	/**
+	 * Get the clock of the game.
+	 * 
+	 * @return the clock, or null if the game is untimed
+	 */
+	public GameClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Get the player who lost by forfeit.
+	 * 
+	 * @return the losing player, or null if the game did not end by forfeit
+	 */
+	public synchronized Player getForfeited() {
+		return forfeited;
+	}
+
 	/**
 	 * Get the size of the board.
 	 * 
@@ -95,6 +204,39 @@ public class Game {
 		return moveNumber.get();
 	}
 
+	/**
+	 * Get the moves played since a move number, in order. The move at index
+	 * <code>i</code> of the game is the one played when the move number was
+	 * <code>i</code>.
+	 * 
+	 * @param from the first move number to include
+	 * @return a copy of the moves
+	 */
+	public synchronized List<Move> getMovesSince(int from) {
+		return new ArrayList<>(moves.subList(Math.max(0, Math.min(from, moves.size())), moves.size()));
+	}
+
+	/**
+	 * Get the board as it was after a move, e.g. to review the game.
+	 * 
+	 * @param moveNumber the number of moves played, passes included, from 0 for
+	 *                   the empty board
+	 * @return the stones, in the same layout as {@link #getBoard()}
+	 * @throws IndexOutOfBoundsException if the game has fewer moves
+	 */
+	public synchronized char[][] getBoardAt(int moveNumber) {
+		return history.getBoard(moveNumber);
+	}
+
+	/**
+	 * Get the number of moves played, passes included.
+	 * 
+	 * @return the length of the game record
+	 */
+	public synchronized int getHistorySize() {
+		return history.size();
+	}
+
 	/**
 	 * Get the area score of both players.
 	 * 
@@ -105,6 +247,25 @@ public class Game {
 		return board.getAreaScore();
 	}
 
+	/**
+	 * Estimate the area score of both players before the game is over.
+	 * 
+	 * @return an integer array with the black's score as first element, and white's
+	 *         score as the second
+	 */
+	public synchronized int[] getEstimatedPoints() {
+		return board.getEstimatedScore();
+	}
+
+	/**
+	 * Get the expected owner of every point.
+	 * 
+	 * @return the owners, in the same layout as {@link #getBoard()}
+	 */
+	public synchronized char[][] getTerritory() {
+		return board.getTerritory();
+	}
+
 	/**
 	 * Get whether or not a consecutive pass will be made.
 	 * 
@@ -136,6 +297,8 @@ public class Game {
 	 * Pause the game.
 	 */
 	public synchronized void pauseGame() {
+		if (running && clock != null)
+			clock.stop(System.currentTimeMillis());
 		running = false;
 	}
 
@@ -143,6 +306,8 @@ public class Game {
 	 * Start the game.
 	 */
 	public synchronized void startGame() {
+		if (!running && clock != null)
+			clock.start(currentPlayer, System.currentTimeMillis());
 		running = true;
 	}
 
@@ -150,110 +315,56 @@ public class Game {
 	 * End the game.
 	 */
 	public synchronized void stopGame() {
+		if (running && clock != null)
+			clock.stop(System.currentTimeMillis());
 		running = false;
 		hasEnded = true;
 	}
 
-	/**
-	 * Assert that it is the current player's turn and that the game is running.
-	 * 
-	 * @param player the player to check
-	 * @throws PlayerOutOfTurnException
-	 * @throws GameNotStartedException
-	 */
-	private void checkPreconditions(Player player) throws PlayerOutOfTurnException, GameNotStartedException {
-		if (currentPlayer != player)
-			throw new PlayerOutOfTurnException(player);
-		if (!running)
-			throw new GameNotStartedException("Game has not started.");
-	}
-
-	/**
-	 * Parse the GTP command into row and column indices.
-	 * 
-	 * @param vertex the GTP vertex string
-	 * @return an integer array with the row index as the first element and the
-	 *         column index as the second
-	 * @throws InvalidMoveException 
-	 */
-	private int[] parseVertex(String vertex) throws InvalidMoveException {
-
-		try {
-			int c = (int) Character.toUpperCase(vertex.charAt(0)) - 'A';
-			int r = (int) Integer.parseInt(vertex.substring(1)) - 1; // Board is one-indexed
-			if (c >= 9)
-				c--; // There is no I on the board, so shift J and onwards down by one
-			
-			if (c < 0 || r < 0 || c >= board.size() || r >= board.size()) {
-				throw new InvalidMoveException(Violation.ILLEGAL_ARGUMENT);
-			}
-			
-			return new int[] { r, c };
-		} catch (NumberFormatException e) {
-			throw new InvalidMoveException(Violation.ILLEGAL_ARGUMENT);
-		}
-	}
-
 	/**
 	 * Pass the player's turn.
 	 * 
 	 * @param player the player passing
-	 * @throws PlayerOutOfTurnException
-	 * @throws GameNotStartedException
 	 */
-	private void passTurn(Player player) throws PlayerOutOfTurnException, GameNotStartedException {
-		checkPreconditions(player);
-
-		if (currentPlayer == Player.BLACK) {
-			currentPlayer = Player.WHITE;
-		} else {
-			currentPlayer = Player.BLACK;
-		}
+	private void passTurn(Player player) {
+		board.pass(player);
+		currentPlayer = player.opponent;
+		switchClock();
 
+		// The ending pass is counted too, so the move number matches the game record.
+		moveNumber.incrementAndGet();
 		if (consecutivePass) {
 			stopGame();
 		} else {
 			consecutivePass = true;
-			moveNumber.incrementAndGet();
 		}
 	}
 
 	/**
-	 * Place a stone at the specified location.
-	 * 
-	 * @param player the player placing the stone
-	 * @param location the location to place the stone
-	 * @throws InvalidMoveException
-	 * @throws PlayerOutOfTurnException
-	 * @throws GameNotStartedException
+	 * Stop the mover's clock and start the opponent's.
 	 */
-	private void placeStone(Player player, int[] location)
-			throws InvalidMoveException, PlayerOutOfTurnException, GameNotStartedException {
-		if (currentPlayer != player) {
-			throw new PlayerOutOfTurnException(player);
-		}
-		if (!running) {
-			throw new GameNotStartedException("Game has not started.");
-		}
-
-		board.placeStone(player, location);
-		currentPlayer = player.opponent;
-		consecutivePass = false;
-		moveNumber.incrementAndGet();
+	private void switchClock() {
+		if (clock != null)
+			clock.switchTurn(System.currentTimeMillis());
 	}
 
 	/**
 	 * Place a stone at the specified location.
 	 * 
 	 * @param player the player placing the stone
-	 * @param vertex the GTP vertex string
-	 * @throws InvalidMoveException
-	 * @throws PlayerOutOfTurnException
-	 * @throws GameNotStartedException
+	 * @param point  the flattened index of the stone, or -1 if the vertex could
+	 *               not be parsed
+	 * @return {@link MoveResult#APPLIED} or the rule the move violates
 	 */
-	private void placeStone(Player player, String vertex)
-			throws InvalidMoveException, PlayerOutOfTurnException, GameNotStartedException {
-		int[] location = parseVertex(vertex);
-		placeStone(player, location);
+	private MoveResult placeStone(Player player, int point) {
+		MoveResult result = board.tryPlaceStone(player, point);
+		if (result.isRejected())
+			return result;
+
+		currentPlayer = player.opponent;
+		switchClock();
+		consecutivePass = false;
+		moveNumber.incrementAndGet();
+		return result;
 	}
 }
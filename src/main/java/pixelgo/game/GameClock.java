@@ -0,0 +1,168 @@
+package pixelgo.game;
+
+/**
+ * Tracks the remaining time of both players. Only the player to move has a
+ * running clock. Times are passed in by the caller in milliseconds so the clock
+ * itself never reads the system time.
+ *
+ * @author jacky
+ *
+ */
+public class GameClock {
+	private final TimeControl timeControl;
+
+	private final long[] mainTime = new long[2];
+	private final int[] periods = new int[2];
+
+	private Player running;
+	private long turnStart;
+
+	/**
+	 * Constructs a stopped clock with full time for both players.
+	 *
+	 * @param timeControl the time settings
+	 */
+	public GameClock(TimeControl timeControl) {
+		this.timeControl = timeControl;
+		for (Player player : Player.values()) {
+			mainTime[player.ordinal()] = timeControl.mainTimeMillis();
+			periods[player.ordinal()] = timeControl.periods();
+		}
+	}
+
+	/**
+	 * Get the time at which the player to move runs out of time.
+	 *
+	 * @return the deadline in milliseconds, or <code>Long.MAX_VALUE</code> if the
+	 *         clock is stopped
+	 */
+	public long getDeadline() {
+		if (running == null)
+			return Long.MAX_VALUE;
+
+		int i = running.ordinal();
+		return turnStart + mainTime[i] + periods[i] * timeControl.periodMillis();
+	}
+
+	/**
+	 * Get the number of byo-yomi periods a player has left.
+	 *
+	 * @param player the player
+	 * @param now    the current time in milliseconds
+	 * @return the number of periods left
+	 */
+	public int getPeriods(Player player, long now) {
+		int i = player.ordinal();
+		if (player != running)
+			return periods[i];
+
+		long overtime = now - turnStart - mainTime[i];
+		if (overtime <= 0)
+			return periods[i];
+
+		return Math.max(0, periods[i] - (int) (overtime / timeControl.periodMillis()));
+	}
+
+	/**
+	 * Get the time a player has left before their next byo-yomi period is used up,
+	 * or before their main time runs out.
+	 *
+	 * @param player the player
+	 * @param now    the current time in milliseconds
+	 * @return the remaining time in milliseconds
+	 */
+	public long getRemaining(Player player, long now) {
+		int i = player.ordinal();
+		long elapsed = player == running ? now - turnStart : 0;
+
+		if (elapsed < mainTime[i])
+			return mainTime[i] - elapsed;
+		if (periods[i] == 0)
+			return 0;
+
+		long overtime = elapsed - mainTime[i];
+		long period = timeControl.periodMillis();
+		if (overtime >= periods[i] * period)
+			return 0;
+
+		return period - overtime % period;
+	}
+
+	/**
+	 * Get the time settings of the clock.
+	 *
+	 * @return the time control
+	 */
+	public TimeControl getTimeControl() {
+		return timeControl;
+	}
+
+	/**
+	 * Find if the player to move has run out of time.
+	 *
+	 * @param now the current time in milliseconds
+	 * @return true if the running player's flag has fallen
+	 */
+	public boolean isFlagged(long now) {
+		return running != null && now >= getDeadline();
+	}
+
+	/**
+	 * Start the clock of a player.
+	 *
+	 * @param player the player to move
+	 * @param now    the current time in milliseconds
+	 */
+	public void start(Player player, long now) {
+		running = player;
+		turnStart = now;
+	}
+
+	/**
+	 * Stop the running clock, charging the running player for their time.
+	 *
+	 * @param now the current time in milliseconds
+	 */
+	public void stop(long now) {
+		if (running != null) {
+			charge(running, now - turnStart);
+			running = null;
+		}
+	}
+
+	/**
+	 * Stop the mover's clock and start their opponent's.
+	 *
+	 * @param now the current time in milliseconds
+	 */
+	public void switchTurn(long now) {
+		if (running == null)
+			return;
+
+		Player mover = running;
+		charge(mover, now - turnStart);
+		mainTime[mover.ordinal()] += timeControl.incrementMillis();
+		start(mover.opponent, now);
+	}
+
+	/**
+	 * Deduct time used by a player, using up byo-yomi periods once the main time
+	 * is gone. A period that is not used up completely is reset.
+	 *
+	 * @param player  the player
+	 * @param elapsed the time used in milliseconds
+	 */
+	private void charge(Player player, long elapsed) {
+		int i = player.ordinal();
+		if (elapsed <= mainTime[i]) {
+			mainTime[i] -= elapsed;
+			return;
+		}
+
+		long overtime = elapsed - mainTime[i];
+		mainTime[i] = 0;
+		if (timeControl.periodMillis() > 0) {
+			periods[i] = Math.max(0, periods[i] - (int) (overtime / timeControl.periodMillis()));
+		}
+	}
+}
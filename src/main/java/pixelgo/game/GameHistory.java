@@ -0,0 +1,103 @@
+package pixelgo.game;
+
+import java.util.Arrays;
+
+/**
+ * Records a game so that the board after any move can be recovered. The moves
+ * are kept as a log of points, and a {@link PackedPosition packed} checkpoint of
+ * the board is taken every few moves, so a position is rebuilt by restoring
+ * the checkpoint before it and replaying the moves since. A 300 move 19x19
+ * game takes about 2 KB with checkpoints every 16 moves.
+ *
+ * <p>
+ * Black moves first and the players alternate, passes included, so the log
+ * does not store colors.
+ *
+ * @author jacky
+ *
+ */
+public class GameHistory {
+	public static final int DEFAULT_INTERVAL = 16;
+
+	private static final short PASS = -1;
+
+	private final BoardGeometry geometry;
+	private final int interval;
+	private final int checkpointLength;
+	private short[] log = new short[64];
+	private int size;
+
+	/**
+	 * The checkpoint after move <code>(i + 1) * interval</code> is at
+	 * <code>i * checkpointLength</code>. The empty board is not stored.
+	 */
+	private byte[] checkpoints;
+
+	/**
+	 * Create the history of a new game.
+	 *
+	 * @param geometry the geometry of the board
+	 * @param interval the number of moves between checkpoints
+	 */
+	public GameHistory(BoardGeometry geometry, int interval) {
+		if (interval < 1)
+			throw new IllegalArgumentException("Checkpoint interval must be positive.");
+
+		this.geometry = geometry;
+		this.interval = interval;
+		this.checkpointLength = PackedPosition.length(geometry.size());
+		this.checkpoints = new byte[checkpointLength * 4];
+	}
+
+	/**
+	 * Record a move that was played.
+	 *
+	 * @param point the flattened index of the stone, or -1 for a pass
+	 * @param board the board after the move
+	 */
+	public void record(int point, Board board) {
+		if (size == log.length)
+			log = Arrays.copyOf(log, size * 2);
+		log[size++] = point < 0 ? PASS : (short) point;
+
+		if (size % interval == 0) {
+			int offset = (size / interval - 1) * checkpointLength;
+			if (offset + checkpointLength > checkpoints.length)
+				checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+			PackedPosition.pack(board.getBoard(), checkpoints, offset);
+		}
+	}
+
+	/**
+	 * Get the number of moves recorded.
+	 *
+	 * @return the number of moves
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Rebuild the board after a move.
+	 *
+	 * @param moveNumber the number of moves played, from 0 for the empty board to
+	 *                   {@link #size()}
+	 * @return the stones, in the same layout as {@link Board#getBoard()}
+	 * @throws IndexOutOfBoundsException if no such move was recorded
+	 */
+	public char[][] getBoard(int moveNumber) {
+		if (moveNumber < 0 || moveNumber > size)
+			throw new IndexOutOfBoundsException("Move " + moveNumber + " is not in a game of " + size + " moves.");
+
+		PlayoutBoard board = new PlayoutBoard(geometry);
+		int checkpoint = moveNumber / interval;
+		if (checkpoint > 0)
+			board.load(PackedPosition.unpack(checkpoints, (checkpoint - 1) * checkpointLength));
+
+		for (int i = checkpoint * interval; i < moveNumber; i++) {
+			if (log[i] != PASS)
+				board.play(i % 2 == 0 ? Board.BLACK : Board.WHITE, log[i]);
+		}
+		return board.getBoard();
+	}
+}
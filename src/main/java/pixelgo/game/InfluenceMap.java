@@ -0,0 +1,159 @@
+package pixelgo.game;
+
+import java.util.Arrays;
+
+/**
+ * A rough territory estimate that is kept up to date as stones are added and
+ * removed. Every stone radiates influence to the points within a few steps of
+ * it, fading with distance, black positive and white negative. An empty point
+ * belongs to the side with enough influence over it, and the area of each side
+ * is counted as the map changes, so an estimate costs nothing to read.
+ *
+ * <p>
+ * Dead stones are not recognized, so the estimate is only as good as the stones
+ * on the board are alive.
+ *
+ * @author jacky
+ *
+ */
+public class InfluenceMap {
+	/**
+	 * The influence of a stone on the points at each distance from it.
+	 */
+	private static final int[] WEIGHTS = { 8, 4, 2, 1 };
+	private static final int RADIUS = WEIGHTS.length - 1;
+
+	/**
+	 * The influence an empty point needs to count as territory, e.g. a lone stone
+	 * claims the points 2 steps away.
+	 */
+	private static final int THRESHOLD = 2;
+
+	private final BoardGeometry geometry;
+	private final char[] stones;
+	private final int[] influence;
+	private int blackArea;
+	private int whiteArea;
+
+	/**
+	 * Create a map of an empty board.
+	 *
+	 * @param geometry the geometry of the board
+	 */
+	public InfluenceMap(BoardGeometry geometry) {
+		this.geometry = geometry;
+		stones = new char[geometry.area()];
+		influence = new int[geometry.area()];
+		Arrays.fill(stones, Board.EMPTY);
+	}
+
+	/**
+	 * Record a stone being placed.
+	 *
+	 * @param color the color of the stone
+	 * @param point the flattened index
+	 */
+	public void add(char color, int point) {
+		update(point, color, color == Board.BLACK ? 1 : -1);
+	}
+
+	/**
+	 * Record a stone being removed, e.g. captured.
+	 *
+	 * @param point the flattened index
+	 */
+	public void remove(int point) {
+		update(point, Board.EMPTY, stones[point] == Board.BLACK ? -1 : 1);
+	}
+
+	/**
+	 * Get the influence on a point.
+	 *
+	 * @param point the flattened index
+	 * @return the influence, positive for black and negative for white
+	 */
+	public int getInfluence(int point) {
+		return influence[point];
+	}
+
+	/**
+	 * Find who a point is expected to belong to at the end of the game.
+	 *
+	 * @param point the flattened index
+	 * @return {@link Board#BLACK}, {@link Board#WHITE} or {@link Board#EMPTY} if
+	 *         it is neutral or contested
+	 */
+	public char owner(int point) {
+		if (stones[point] != Board.EMPTY)
+			return stones[point];
+		if (influence[point] >= THRESHOLD)
+			return Board.BLACK;
+		if (influence[point] <= -THRESHOLD)
+			return Board.WHITE;
+		return Board.EMPTY;
+	}
+
+	/**
+	 * Get the estimated area score of both players.
+	 *
+	 * @return an integer array with the black's score as first element, and white's
+	 *         score as the second
+	 */
+	public int[] getScore() {
+		return new int[] { blackArea, whiteArea };
+	}
+
+	/**
+	 * Get the expected owner of every point.
+	 *
+	 * @return the owners, in the same layout as {@link Board#getBoard()}
+	 */
+	public char[][] getTerritory() {
+		int n = geometry.size();
+		char[][] territory = new char[n][n];
+		for (int r = 0; r < n; r++) {
+			for (int c = 0; c < n; c++) {
+				territory[r][c] = owner(r * n + c);
+			}
+		}
+		return territory;
+	}
+
+	/**
+	 * Change the stone on a point and spread the change in influence around it,
+	 * recounting only the points whose owner may change.
+	 */
+	private void update(int point, char color, int sign) {
+		int n = geometry.size();
+		int row = point / n;
+		int column = point % n;
+
+		for (int dr = -RADIUS; dr <= RADIUS; dr++) {
+			int r = row + dr;
+			if (r < 0 || r >= n)
+				continue;
+
+			int reach = RADIUS - Math.abs(dr);
+			for (int dc = -reach; dc <= reach; dc++) {
+				int c = column + dc;
+				if (c < 0 || c >= n)
+					continue;
+
+				int q = r * n + c;
+				count(owner(q), -1);
+				if (q == point)
+					stones[q] = color;
+				influence[q] += sign * WEIGHTS[Math.abs(dr) + Math.abs(dc)];
+				count(owner(q), 1);
+			}
+		}
+	}
+
+	private void count(char owner, int delta) {
+		if (owner == Board.BLACK) {
+			blackArea += delta;
+		} else if (owner == Board.WHITE) {
+			whiteArea += delta;
+		}
+	}
+}
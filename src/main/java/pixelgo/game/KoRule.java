@@ -0,0 +1,45 @@
+package pixelgo.game;
+
+import java.util.Locale;
+
+/**
+ * The rule that stops a game from repeating itself.
+ * 
+ * @author jacky
+ *
+ */
+public enum KoRule {
+	/**
+	 * A stone capturing a single stone may not be recaptured at once. Longer cycles
+	 * are allowed.
+	 */
+	SIMPLE,
+
+	/**
+	 * A move may not recreate any earlier arrangement of stones.
+	 */
+	POSITIONAL,
+
+	/**
+	 * A move may not recreate an earlier arrangement of stones with the same player
+	 * to move. Passing does not count as a move, but the position it leaves is
+	 * remembered.
+	 */
+	SITUATIONAL;
+
+	/**
+	 * Parse a ko rule by name, ignoring case.
+	 * 
+	 * @param name <code>simple</code>, <code>positional</code> or
+	 *             <code>situational</code>
+	 * @return the ko rule
+	 * @throws IllegalArgumentException if the name is unknown
+	 */
+	public static KoRule parse(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown ko rule: " + name, e);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package pixelgo.game;
+
+/**
+ * A set of longs with open addressing and linear probing, for position hashes.
+ * Values are stored unboxed in a single array, so adding one allocates nothing
+ * until the table has to grow. Zero marks an empty slot and is kept apart.
+ * 
+ * @author jacky
+ *
+ */
+public class LongHashSet {
+	private long[] table;
+	private int size;
+	private boolean containsZero;
+
+	/**
+	 * Creates an empty set with room for a number of values before it grows.
+	 * 
+	 * @param expected the expected number of values
+	 */
+	public LongHashSet(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+		table = new long[capacity];
+	}
+
+	/**
+	 * Add a value.
+	 * 
+	 * @param value the value
+	 * @return true if the set did not already contain it
+	 */
+	public boolean add(long value) {
+		if (value == 0) {
+			boolean added = !containsZero;
+			containsZero = true;
+			return added;
+		}
+
+		int slot = find(table, value);
+		if (table[slot] == value)
+			return false;
+
+		table[slot] = value;
+		if (++size * 2 > table.length)
+			grow();
+		return true;
+	}
+
+	/**
+	 * Find if the set contains a value.
+	 * 
+	 * @param value the value
+	 * @return true if the value was added before
+	 */
+	public boolean contains(long value) {
+		return value == 0 ? containsZero : table[find(table, value)] == value;
+	}
+
+	/**
+	 * Get the number of values in the set.
+	 * 
+	 * @return the size
+	 */
+	public int size() {
+		return containsZero ? size + 1 : size;
+	}
+
+	/**
+	 * Find the slot holding a value, or the empty slot where it belongs.
+	 */
+	private static int find(long[] table, long value) {
+		int mask = table.length - 1;
+		// Zobrist hashes are already uniform, so the low bits only need the high bits folded in.
+		int slot = (int) (value ^ (value >>> 32)) & mask;
+		while (table[slot] != 0 && table[slot] != value) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		long[] larger = new long[table.length * 2];
+		for (long value : table) {
+			if (value != 0)
+				larger[find(larger, value)] = value;
+		}
+		table = larger;
+	}
+}
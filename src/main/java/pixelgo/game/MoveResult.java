@@ -0,0 +1,81 @@
+package pixelgo.game;
+
+/**
+ * The outcome of attempting a move. Results are shared constants, so checking
+ * a move never allocates, even when it is rejected.
+ * 
+ * @author jacky
+ *
+ */
+public final class MoveResult {
+	/**
+	 * The move was played.
+	 */
+	public static final MoveResult APPLIED = new MoveResult(true, null);
+
+	/**
+	 * The move was neither played nor rejected, e.g. because the game ended
+	 * before it could be played.
+	 */
+	public static final MoveResult IGNORED = new MoveResult(false, null);
+
+	private static final MoveResult[] rejections;
+
+	static {
+		Violation[] violations = Violation.values();
+		rejections = new MoveResult[violations.length];
+		for (Violation violation : violations) {
+			rejections[violation.ordinal()] = new MoveResult(false, violation);
+		}
+	}
+
+	private final boolean applied;
+	private final Violation violation;
+
+	private MoveResult(boolean applied, Violation violation) {
+		this.applied = applied;
+		this.violation = violation;
+	}
+
+	/**
+	 * Get the result for a rejected move.
+	 * 
+	 * @param violation the reason the move was rejected
+	 * @return the shared result for the violation
+	 */
+	public static MoveResult rejected(Violation violation) {
+		return rejections[violation.ordinal()];
+	}
+
+	/**
+	 * Get the reason the move was rejected.
+	 * 
+	 * @return the violation, or null if the move was not rejected
+	 */
+	public Violation getViolation() {
+		return violation;
+	}
+
+	/**
+	 * Get whether or not the move was played.
+	 * 
+	 * @return true if the move was played
+	 */
+	public boolean isApplied() {
+		return applied;
+	}
+
+	/**
+	 * Get whether or not the move was rejected.
+	 * 
+	 * @return true if the move was rejected
+	 */
+	public boolean isRejected() {
+		return violation != null;
+	}
+
+	@Override
+	public String toString() {
+		return applied ? "APPLIED" : violation == null ? "IGNORED" : violation.toString();
+	}
+}
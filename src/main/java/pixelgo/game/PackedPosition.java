@@ -0,0 +1,102 @@
+package pixelgo.game;
+
+/**
+ * A compact binary form of a position for bulk storage: one byte with the
+ * board size, then 2 bits per point in flattened order, 4 points to a byte
+ * starting from the low bits. A point is 0 when empty, 1 for black and 2 for
+ * white. A 19x19 position takes 92 bytes.
+ *
+ * @author jacky
+ *
+ */
+public final class PackedPosition {
+	public static final int EMPTY = 0;
+	public static final int BLACK = 1;
+	public static final int WHITE = 2;
+
+	/**
+	 * The length of the largest packed position.
+	 */
+	public static final int MAX_LENGTH = length(BoardGeometry.MAX_SIZE);
+
+	private PackedPosition() {
+	}
+
+	/**
+	 * Get the length of a packed position.
+	 *
+	 * @param boardSize the board size
+	 * @return the number of bytes, including the size byte
+	 */
+	public static int length(int boardSize) {
+		return 1 + (boardSize * boardSize + 3) / 4;
+	}
+
+	/**
+	 * Pack a position.
+	 *
+	 * @param rows   the stones, as returned by {@link Board#getBoard()}
+	 * @param out    the buffer to write to
+	 * @param offset the index of the size byte in the buffer
+	 * @return the number of bytes written
+	 */
+	public static int pack(char[][] rows, byte[] out, int offset) {
+		int n = rows.length;
+		int length = length(n);
+		out[offset] = (byte) n;
+		for (int i = 1; i < length; i++) {
+			out[offset + i] = 0;
+		}
+
+		for (int r = 0; r < n; r++) {
+			for (int c = 0; c < n; c++) {
+				int point = r * n + c;
+				int value = rows[r][c] == Board.BLACK ? BLACK : rows[r][c] == Board.WHITE ? WHITE : EMPTY;
+				out[offset + 1 + point / 4] |= value << (point % 4 * 2);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Read the board size of a packed position.
+	 *
+	 * @param data   the buffer
+	 * @param offset the index of the size byte in the buffer
+	 * @return the board size
+	 */
+	public static int size(byte[] data, int offset) {
+		return data[offset] & 0xFF;
+	}
+
+	/**
+	 * Read a point of a packed position.
+	 *
+	 * @param data   the buffer
+	 * @param offset the index of the size byte in the buffer
+	 * @param point  the flattened index
+	 * @return {@link #EMPTY}, {@link #BLACK} or {@link #WHITE}
+	 */
+	public static int get(byte[] data, int offset, int point) {
+		return data[offset + 1 + (point >> 2)] >> ((point & 3) << 1) & 3;
+	}
+
+	/**
+	 * Unpack a position.
+	 *
+	 * @param data   the buffer
+	 * @param offset the index of the size byte in the buffer
+	 * @return the stones, in the same layout as {@link Board#getBoard()}
+	 */
+	public static char[][] unpack(byte[] data, int offset) {
+		int n = size(data, offset);
+		char[][] rows = new char[n][n];
+		for (int r = 0; r < n; r++) {
+			for (int c = 0; c < n; c++) {
+				int value = get(data, offset, r * n + c);
+				rows[r][c] = value == BLACK ? Board.BLACK : value == WHITE ? Board.WHITE : Board.EMPTY;
+			}
+		}
+		return rows;
+	}
+}
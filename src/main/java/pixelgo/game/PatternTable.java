@@ -0,0 +1,140 @@
+package pixelgo.game;
+
+/**
+ * Move weights for playouts, looked up by the 3x3 pattern around a point.
+ *
+ * <p>
+ * A pattern code holds 2 bits for each of the 8 points around the centre, in
+ * the order of {@link BoardGeometry#around(int, int)}: {@link #EMPTY},
+ * {@link #OWN}, {@link #OPPONENT} or {@link #EDGE}. Above those are 4 bits, one
+ * for each orthogonal neighbour, set if the neighbour is a stone whose chain is
+ * in atari with the centre as its last liberty. Codes are always seen from the
+ * side of the player to move, so one table serves both colors.
+ *
+ * @author jacky
+ *
+ */
+public final class PatternTable {
+	public static final int EMPTY = 0;
+	public static final int OWN = 1;
+	public static final int OPPONENT = 2;
+	public static final int EDGE = 3;
+
+	/**
+	 * The first atari bit. The bit for direction <code>d</code> is
+	 * <code>ATARI_SHIFT + d / 2</code>.
+	 */
+	public static final int ATARI_SHIFT = 2 * BoardGeometry.DIRECTIONS;
+
+	/**
+	 * The number of distinct pattern codes.
+	 */
+	public static final int CODES = 1 << (ATARI_SHIFT + 4);
+
+	private static final int MAX_WEIGHT = 255;
+
+	private static PatternTable defaults;
+
+	/**
+	 * The weight of every code as an unsigned byte.
+	 */
+	private final byte[] weights;
+
+	/**
+	 * Create a table.
+	 *
+	 * @param weights the weight of every code, from 0 to 255
+	 * @throws IllegalArgumentException if there are not {@link #CODES} weights or
+	 *                                  one is out of range
+	 */
+	public PatternTable(int[] weights) {
+		if (weights.length != CODES)
+			throw new IllegalArgumentException("Pattern table needs " + CODES + " weights.");
+
+		this.weights = new byte[CODES];
+		for (int code = 0; code < CODES; code++) {
+			if (weights[code] < 0 || weights[code] > MAX_WEIGHT)
+				throw new IllegalArgumentException("Pattern weight out of range: " + weights[code]);
+			this.weights[code] = (byte) weights[code];
+		}
+	}
+
+	/**
+	 * Get the shared table of hand-made weights: capturing a chain in atari is
+	 * favoured most, then extending one's own chain out of atari, then answering
+	 * next to the opponent's stones.
+	 *
+	 * @return the default table
+	 */
+	public static synchronized PatternTable defaults() {
+		if (defaults == null) {
+			int[] weights = new int[CODES];
+			for (int code = 0; code < CODES; code++) {
+				weights[code] = defaultWeight(code);
+			}
+			defaults = new PatternTable(weights);
+		}
+		return defaults;
+	}
+
+	/**
+	 * Get the weight of a pattern.
+	 *
+	 * @param code the pattern code
+	 * @return the weight, from 0 to 255
+	 */
+	public int getWeight(int code) {
+		return weights[code] & 0xFF;
+	}
+
+	/**
+	 * Get the point in a direction of a pattern.
+	 *
+	 * @param code      the pattern code
+	 * @param direction the direction
+	 * @return {@link #EMPTY}, {@link #OWN}, {@link #OPPONENT} or {@link #EDGE}
+	 */
+	public static int get(int code, int direction) {
+		return code >>> (2 * direction) & 3;
+	}
+
+	/**
+	 * Find if the chain in an orthogonal direction of a pattern is in atari.
+	 *
+	 * @param code      the pattern code
+	 * @param direction an even direction
+	 * @return true if its atari bit is set
+	 */
+	public static boolean isAtari(int code, int direction) {
+		return (code >>> (ATARI_SHIFT + direction / 2) & 1) != 0;
+	}
+
+	/**
+	 * Swap the own and opposing stones of a pattern.
+	 *
+	 * @param code the pattern code
+	 * @return the pattern as the other player sees it
+	 */
+	public static int swapColors(int code) {
+		int stones = code & ((1 << ATARI_SHIFT) - 1);
+		// Empty (00) and edge (11) points stay as they are.
+		int swapped = (stones & 0x5555) << 1 | (stones & 0xAAAA) >>> 1;
+		return code & ~((1 << ATARI_SHIFT) - 1) | swapped;
+	}
+
+	private static int defaultWeight(int code) {
+		int weight = 8;
+		for (int d = 0; d < BoardGeometry.DIRECTIONS; d++) {
+			int point = get(code, d);
+			if (point == OPPONENT)
+				weight = Math.max(weight, 16);
+			if (d % 2 == 0 && isAtari(code, d)) {
+				if (point == OPPONENT)
+					return MAX_WEIGHT;
+				if (point == OWN)
+					weight = Math.max(weight, 96);
+			}
+		}
+		return weight;
+	}
+}
@@ -0,0 +1,466 @@
+package pixelgo.game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A board for fast random playouts. Unlike {@link Board} it is not thread-safe
+ * and keeps no position history: only simple ko is enforced. Stones are kept in
+ * chains, each a circular list with a pseudo-liberty count (the number of
+ * stone-empty adjacencies), which is enough to detect captures and suicide
+ * without flood fills. The 3x3 pattern around every point is kept up to date as
+ * stones come and go, for {@link #playPattern(char, SplittableRandom, PatternTable)}.
+ *
+ * @author jacky
+ *
+ */
+public class PlayoutBoard {
+	private final BoardGeometry geometry;
+	private final char[] stones;
+
+	/**
+	 * The first stone of the chain of each stone.
+	 */
+	private final int[] head;
+
+	/**
+	 * The next stone of the chain of each stone, in a circle.
+	 */
+	private final int[] next;
+
+	/**
+	 * The stone count and pseudo-liberty count of each chain, stored at its head.
+	 */
+	private final int[] size;
+	private final int[] liberties;
+
+	/**
+	 * The empty points, with the index of each point in the list.
+	 */
+	private final int[] empty;
+	private final int[] emptyIndex;
+	private int emptyCount;
+
+	private int koPoint = -1;
+
+	/**
+	 * The stones around each point as a {@link PatternTable} code seen from
+	 * black's side, without the atari bits.
+	 */
+	private final int[] patterns;
+
+	/**
+	 * Scratch space for the weight of each empty point.
+	 */
+	private final int[] weights;
+
+	/**
+	 * Create an empty board.
+	 *
+	 * @param geometry the geometry of the board
+	 */
+	public PlayoutBoard(BoardGeometry geometry) {
+		int area = geometry.area();
+		this.geometry = geometry;
+		stones = new char[area];
+		head = new int[area];
+		next = new int[area];
+		size = new int[area];
+		liberties = new int[area];
+		empty = new int[area];
+		emptyIndex = new int[area];
+		patterns = new int[area];
+		weights = new int[area];
+		clear();
+	}
+
+	/**
+	 * Remove every stone.
+	 */
+	public void clear() {
+		Arrays.fill(stones, Board.EMPTY);
+		emptyCount = 0;
+		for (int i = 0; i < stones.length; i++) {
+			empty[emptyCount] = i;
+			emptyIndex[i] = emptyCount++;
+
+			patterns[i] = 0;
+			for (int d = 0; d < BoardGeometry.DIRECTIONS; d++) {
+				if (geometry.around(i, d) < 0)
+					patterns[i] |= PatternTable.EDGE << 2 * d;
+			}
+		}
+		koPoint = -1;
+	}
+
+	/**
+	 * Set up a position. Groups without liberties are not removed.
+	 *
+	 * @param rows the stones, row 0 being the first line, as returned by
+	 *             {@link Board#getBoard()}
+	 */
+	public void load(char[][] rows) {
+		clear();
+		int n = geometry.size();
+		for (int r = 0; r < n; r++) {
+			for (int c = 0; c < n; c++) {
+				char color = rows[r][c];
+				if (color == Board.BLACK || color == Board.WHITE)
+					place(color, r * n + c);
+			}
+		}
+		koPoint = -1;
+	}
+
+	/**
+	 * Copy the position of another board of the same size.
+	 *
+	 * @param other the board to copy
+	 */
+	public void copyFrom(PlayoutBoard other) {
+		System.arraycopy(other.stones, 0, stones, 0, stones.length);
+		System.arraycopy(other.head, 0, head, 0, head.length);
+		System.arraycopy(other.next, 0, next, 0, next.length);
+		System.arraycopy(other.size, 0, size, 0, size.length);
+		System.arraycopy(other.liberties, 0, liberties, 0, liberties.length);
+		System.arraycopy(other.empty, 0, empty, 0, other.emptyCount);
+		System.arraycopy(other.emptyIndex, 0, emptyIndex, 0, emptyIndex.length);
+		System.arraycopy(other.patterns, 0, patterns, 0, patterns.length);
+		emptyCount = other.emptyCount;
+		koPoint = other.koPoint;
+	}
+
+	public BoardGeometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * Get the stone on a point.
+	 *
+	 * @param point the flattened index
+	 * @return {@link Board#BLACK}, {@link Board#WHITE} or {@link Board#EMPTY}
+	 */
+	public char get(int point) {
+		return stones[point];
+	}
+
+	/**
+	 * Get the array representation of the board.
+	 *
+	 * @return the stones, in the same layout as {@link Board#getBoard()}
+	 */
+	public char[][] getBoard() {
+		int n = geometry.size();
+		char[][] rows = new char[n][];
+		for (int r = 0; r < n; r++) {
+			rows[r] = Arrays.copyOfRange(stones, r * n, (r + 1) * n);
+		}
+		return rows;
+	}
+
+	/**
+	 * Get the 3x3 pattern around a point, with the atari bits of the chains next
+	 * to it.
+	 *
+	 * @param color the player to move, whose stones are {@link PatternTable#OWN}
+	 * @param point the flattened index of an empty point
+	 * @return the pattern code
+	 */
+	public int getPattern(char color, int point) {
+		int code = patterns[point];
+		for (int d = 0; d < BoardGeometry.DIRECTIONS; d += 2) {
+			int n = geometry.around(point, d);
+			// The point is the last liberty if every pseudo-liberty of the chain is an adjacency to it.
+			if (n >= 0 && stones[n] != Board.EMPTY && liberties[head[n]] == adjacencies(head[n], point))
+				code |= 1 << (PatternTable.ATARI_SHIFT + d / 2);
+		}
+		return color == Board.BLACK ? code : PatternTable.swapColors(code);
+	}
+
+	/**
+	 * Find if a move is legal under simple ko.
+	 *
+	 * @param color the color to play
+	 * @param point the flattened index
+	 * @return true if the point is empty, is not the ko point and the move is not
+	 *         suicide
+	 */
+	public boolean isLegal(char color, int point) {
+		if (stones[point] != Board.EMPTY || point == koPoint)
+			return false;
+
+		for (int n : geometry.neighbours(point)) {
+			char c = stones[n];
+			if (c == Board.EMPTY)
+				return true;
+
+			// Every pseudo-liberty of the chain besides its adjacencies to the point is a liberty elsewhere.
+			boolean lastLiberty = liberties[head[n]] == adjacencies(head[n], point);
+			if (c == color ? !lastLiberty : lastLiberty)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Find if an empty point is an eye of a color: every neighbour is its stone,
+	 * and the opponent holds at most one diagonal, or none on the edge.
+	 *
+	 * @param color the color
+	 * @param point the flattened index
+	 * @return true if filling the point would be pointless
+	 */
+	public boolean isEye(char color, int point) {
+		for (int n : geometry.neighbours(point)) {
+			if (stones[n] != color)
+				return false;
+		}
+
+		int n = geometry.size();
+		int r = point / n;
+		int c = point % n;
+		int opponent = 0;
+		int offBoard = 0;
+		for (int dr = -1; dr <= 1; dr += 2) {
+			for (int dc = -1; dc <= 1; dc += 2) {
+				if (r + dr < 0 || r + dr >= n || c + dc < 0 || c + dc >= n) {
+					offBoard++;
+				} else {
+					char d = stones[(r + dr) * n + c + dc];
+					if (d != color && d != Board.EMPTY)
+						opponent++;
+				}
+			}
+		}
+		return opponent + (offBoard > 0 ? 1 : 0) < 2;
+	}
+
+	/**
+	 * Play a legal move, removing any captured stones.
+	 *
+	 * @param color the color to play
+	 * @param point the flattened index
+	 */
+	public void play(char color, int point) {
+		char opponent = color == Board.BLACK ? Board.WHITE : Board.BLACK;
+		place(color, point);
+
+		int captured = 0;
+		int capturedPoint = -1;
+		for (int n : geometry.neighbours(point)) {
+			if (stones[n] == opponent && liberties[head[n]] == 0) {
+				capturedPoint = n;
+				captured += capture(n);
+			}
+		}
+
+		int h = head[point];
+		koPoint = captured == 1 && size[h] == 1 && liberties[h] == 1 ? capturedPoint : -1;
+	}
+
+	/**
+	 * Play a random legal move that does not fill an eye of the player.
+	 *
+	 * @param color  the color to play
+	 * @param random the source of randomness
+	 * @return the flattened index of the move, or -1 for a pass
+	 */
+	public int playRandom(char color, SplittableRandom random) {
+		if (emptyCount == 0)
+			return -1;
+
+		int start = random.nextInt(emptyCount);
+		for (int i = 0; i < emptyCount; i++) {
+			int point = empty[(start + i) % emptyCount];
+			if (!isEye(color, point) && isLegal(color, point)) {
+				play(color, point);
+				return point;
+			}
+		}
+		koPoint = -1; // A pass lifts the ko.
+		return -1;
+	}
+
+	/**
+	 * Play a legal move that does not fill an eye of the player, picked at random
+	 * with the weight of its pattern.
+	 *
+	 * @param color  the color to play
+	 * @param random the source of randomness
+	 * @param table  the pattern weights
+	 * @return the flattened index of the move, or -1 for a pass
+	 */
+	public int playPattern(char color, SplittableRandom random, PatternTable table) {
+		int total = 0;
+		for (int i = 0; i < emptyCount; i++) {
+			int point = empty[i];
+			weights[i] = isEye(color, point) || !isLegal(color, point) ? 0
+					: table.getWeight(getPattern(color, point));
+			total += weights[i];
+		}
+
+		if (total == 0) {
+			koPoint = -1; // A pass lifts the ko.
+			return -1;
+		}
+
+		int target = random.nextInt(total);
+		int i = 0;
+		while (target >= weights[i]) {
+			target -= weights[i++];
+		}
+		int point = empty[i];
+		play(color, point);
+		return point;
+	}
+
+	/**
+	 * Play random moves until both players pass.
+	 *
+	 * @param color    the color to play first
+	 * @param random   the source of randomness
+	 * @param maxMoves the number of moves after which the playout stops anyway
+	 */
+	public void playout(char color, SplittableRandom random, int maxMoves) {
+		playout(color, random, maxMoves, null);
+	}
+
+	/**
+	 * Play moves until both players pass, weighted by their patterns.
+	 *
+	 * @param color    the color to play first
+	 * @param random   the source of randomness
+	 * @param maxMoves the number of moves after which the playout stops anyway
+	 * @param table    the pattern weights, or null for uniformly random moves
+	 */
+	public void playout(char color, SplittableRandom random, int maxMoves, PatternTable table) {
+		int passes = 0;
+		for (int moves = 0; passes < 2 && moves < maxMoves; moves++) {
+			int point = table == null ? playRandom(color, random) : playPattern(color, random, table);
+			passes = point < 0 ? passes + 1 : 0;
+			color = color == Board.BLACK ? Board.WHITE : Board.BLACK;
+		}
+	}
+
+	/**
+	 * Find the owner of a point at the end of a playout: the color of its stone,
+	 * or of every neighbour if it is empty.
+	 *
+	 * @param point the flattened index
+	 * @return {@link Board#BLACK}, {@link Board#WHITE} or {@link Board#EMPTY} for
+	 *         neither
+	 */
+	public char owner(int point) {
+		char color = stones[point];
+		if (color != Board.EMPTY)
+			return color;
+
+		for (int n : geometry.neighbours(point)) {
+			if (color == Board.EMPTY) {
+				color = stones[n];
+			} else if (stones[n] != color) {
+				return Board.EMPTY;
+			}
+		}
+		return color;
+	}
+
+	/**
+	 * Add a stone and merge it with the chains next to it, without captures.
+	 */
+	private void place(char color, int point) {
+		stones[point] = color;
+		setPattern(point, color == Board.BLACK ? PatternTable.OWN : PatternTable.OPPONENT);
+		int last = empty[--emptyCount];
+		empty[emptyIndex[point]] = last;
+		emptyIndex[last] = emptyIndex[point];
+
+		head[point] = point;
+		next[point] = point;
+		size[point] = 1;
+		liberties[point] = 0;
+		for (int n : geometry.neighbours(point)) {
+			if (stones[n] == Board.EMPTY) {
+				liberties[point]++;
+			} else {
+				liberties[head[n]]--;
+			}
+		}
+
+		for (int n : geometry.neighbours(point)) {
+			if (stones[n] == color && head[n] != head[point])
+				merge(head[point], head[n]);
+		}
+	}
+
+	/**
+	 * Merge two chains, relabelling the smaller one.
+	 */
+	private void merge(int a, int b) {
+		if (size[a] < size[b]) {
+			int t = a;
+			a = b;
+			b = t;
+		}
+
+		int stone = b;
+		do {
+			head[stone] = a;
+			stone = next[stone];
+		} while (stone != b);
+
+		int t = next[a];
+		next[a] = next[b];
+		next[b] = t;
+		size[a] += size[b];
+		liberties[a] += liberties[b];
+	}
+
+	/**
+	 * Remove a chain, giving its points back as liberties to the chains next to
+	 * it.
+	 *
+	 * @return the number of stones removed
+	 */
+	private int capture(int point) {
+		int h = head[point];
+		int count = size[h];
+		int stone = h;
+		do {
+			int following = next[stone];
+			stones[stone] = Board.EMPTY;
+			setPattern(stone, PatternTable.EMPTY);
+			empty[emptyCount] = stone;
+			emptyIndex[stone] = emptyCount++;
+			for (int n : geometry.neighbours(stone)) {
+				if (stones[n] != Board.EMPTY && head[n] != h)
+					liberties[head[n]]++;
+			}
+			stone = following;
+		} while (stone != h);
+		return count;
+	}
+
+	/**
+	 * Change a point in the patterns of the points around it.
+	 */
+	private void setPattern(int point, int value) {
+		for (int d = 0; d < BoardGeometry.DIRECTIONS; d++) {
+			int n = geometry.around(point, d);
+			if (n >= 0) {
+				// The point lies in the opposite direction as seen from its neighbour.
+				int shift = 2 * (d ^ 4);
+				patterns[n] = patterns[n] & ~(3 << shift) | value << shift;
+			}
+		}
+	}
+
+	private int adjacencies(int chain, int point) {
+		int count = 0;
+		for (int n : geometry.neighbours(point)) {
+			if (stones[n] != Board.EMPTY && head[n] == chain)
+				count++;
+		}
+		return count;
+	}
+}
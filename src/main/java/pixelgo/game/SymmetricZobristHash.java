@@ -0,0 +1,88 @@
+package pixelgo.game;
+
+/**
+ * The Zobrist hashes of a position in all 8 orientations of the board, kept up
+ * to date as stones are toggled. The canonical hash is the smallest of the 8,
+ * so the rotations and reflections of a position share it, and the symmetry
+ * that produced it maps moves to and from the canonical orientation. The hash
+ * for symmetry 0 equals the plain {@link ZobristHash}.
+ *
+ * @author jacky
+ *
+ */
+public class SymmetricZobristHash {
+	private final BoardGeometry geometry;
+	private final long[] hashes = new long[BoardGeometry.SYMMETRIES];
+
+	/**
+	 * Creates the hashes of an empty board.
+	 *
+	 * @param geometry the geometry of the board
+	 */
+	public SymmetricZobristHash(BoardGeometry geometry) {
+		this.geometry = geometry;
+	}
+
+	/**
+	 * Toggle the presence of a stone in every orientation.
+	 *
+	 * @param color the color of the stone
+	 * @param i     the "flattened" index
+	 */
+	public void toggleStone(char color, int i) {
+		if (color == Board.BLACK) {
+			for (int s = 0; s < hashes.length; s++) {
+				hashes[s] ^= geometry.blackKey(geometry.transform(s, i));
+			}
+		} else if (color == Board.WHITE) {
+			for (int s = 0; s < hashes.length; s++) {
+				hashes[s] ^= geometry.whiteKey(geometry.transform(s, i));
+			}
+		} else {
+			throw new IllegalArgumentException("Invalid stone color");
+		}
+	}
+
+	/**
+	 * Get the hash of the position after a rotation or reflection.
+	 *
+	 * @param symmetry the symmetry, see {@link BoardGeometry#transform(int, int)}
+	 * @return the hash
+	 */
+	public long getHash(int symmetry) {
+		return hashes[symmetry];
+	}
+
+	/**
+	 * Find the symmetry with the smallest hash, comparing unsigned, or the first of
+	 * them on a tie.
+	 *
+	 * @return the symmetry, see {@link BoardGeometry#transform(int, int)}
+	 */
+	public int getCanonicalSymmetry() {
+		int symmetry = 0;
+		for (int s = 1; s < hashes.length; s++) {
+			if (Long.compareUnsigned(hashes[s], hashes[symmetry]) < 0)
+				symmetry = s;
+		}
+		return symmetry;
+	}
+
+	/**
+	 * Get the hash shared by all orientations of the position.
+	 *
+	 * @return the smallest hash
+	 */
+	public long getCanonicalHash() {
+		return hashes[getCanonicalSymmetry()];
+	}
+
+	/**
+	 * Copy the hashes of another position on the same board size.
+	 *
+	 * @param other the hashes to copy
+	 */
+	public void copyFrom(SymmetricZobristHash other) {
+		System.arraycopy(other.hashes, 0, hashes, 0, hashes.length);
+	}
+}
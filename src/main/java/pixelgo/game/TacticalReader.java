@@ -0,0 +1,436 @@
+package pixelgo.game;
+
+import java.util.Arrays;
+
+/**
+ * Reads short capturing fights: whether a chain in atari can escape, including
+ * ladders, and whether a chain with two liberties can be caught in a ladder or
+ * by taking its liberties. The defender tries to extend and to capture the
+ * stones around it, which also settles simple capturing races, and the attacker
+ * tries each of the two liberties.
+ *
+ * <p>
+ * Moves are played and taken back on an undo stack rather than on copies of
+ * the board, and all scratch space is allocated up front, so reading allocates
+ * nothing. The search gives up after a number of plies or nodes, in which case
+ * the chain is assumed to escape. The node limit is shared by every query made
+ * on a position until the next one is loaded. A reader is not thread-safe.
+ *
+ * @author jacky
+ *
+ */
+public class TacticalReader {
+	public static final int DEFAULT_MAX_DEPTH = 160;
+	public static final int DEFAULT_MAX_NODES = 20000;
+
+	/**
+	 * The most candidate moves kept for a defender's turn: its liberty and the
+	 * liberties of the stones around it that are in atari.
+	 */
+	private static final int CANDIDATES = 8;
+
+	private final BoardGeometry geometry;
+	private final char[] stones;
+	private final int maxDepth;
+	private final int maxNodes;
+
+	/**
+	 * The undo stack: the point played at each ply, where its captures start in
+	 * {@link #captured}, and the ko point before it.
+	 */
+	private final int[] played;
+	private final int[] capturedFrom;
+	private final int[] previousKo;
+	private final int[] captured;
+	private int depth;
+	private int capturedTop;
+	private int koPoint = -1;
+	private int nodes;
+
+	/**
+	 * Scratch space for flood fills, told apart by stamps so nothing needs
+	 * clearing. Walking a chain and counting liberties use separate marks since
+	 * one happens inside the other.
+	 */
+	private final int[] chainMark;
+	private final int[] chainStones;
+	private int chainStamp;
+	private final int[] libertyMark;
+	private final int[] fill;
+	private int libertyStamp;
+	private final int[] liberties = new int[3];
+
+	/**
+	 * The candidate moves of each ply.
+	 */
+	private final int[] candidates;
+
+	/**
+	 * Create a reader with the default limits.
+	 *
+	 * @param geometry the geometry of the board
+	 */
+	public TacticalReader(BoardGeometry geometry) {
+		this(geometry, DEFAULT_MAX_DEPTH, DEFAULT_MAX_NODES);
+	}
+
+	/**
+	 * Create a reader.
+	 *
+	 * @param geometry the geometry of the board
+	 * @param maxDepth the most plies read
+	 * @param maxNodes the most positions visited for one loaded position
+	 */
+	public TacticalReader(BoardGeometry geometry, int maxDepth, int maxNodes) {
+		int area = geometry.area();
+		this.geometry = geometry;
+		this.maxDepth = maxDepth;
+		this.maxNodes = maxNodes;
+		stones = new char[area];
+		played = new int[maxDepth + 1];
+		capturedFrom = new int[maxDepth + 1];
+		previousKo = new int[maxDepth + 1];
+		// A stone is only captured once for every time it is placed.
+		captured = new int[area + maxDepth + 1];
+		chainMark = new int[area];
+		chainStones = new int[area];
+		libertyMark = new int[area];
+		fill = new int[area];
+		candidates = new int[(maxDepth + 2) * CANDIDATES];
+		Arrays.fill(stones, Board.EMPTY);
+	}
+
+	/**
+	 * Set up a position, without a ko.
+	 *
+	 * @param rows the stones, as returned by {@link Board#getBoard()}
+	 */
+	public void load(char[][] rows) {
+		int n = geometry.size();
+		for (int r = 0; r < n; r++) {
+			System.arraycopy(rows[r], 0, stones, r * n, n);
+		}
+		reset();
+	}
+
+	/**
+	 * Set up the position of a playout board, without a ko.
+	 *
+	 * @param board a board of the same size
+	 */
+	public void load(PlayoutBoard board) {
+		for (int i = 0; i < stones.length; i++) {
+			stones[i] = board.get(i);
+		}
+		reset();
+	}
+
+	/**
+	 * Get the stone on a point.
+	 *
+	 * @param point the flattened index
+	 * @return {@link Board#BLACK}, {@link Board#WHITE} or {@link Board#EMPTY}
+	 */
+	public char get(int point) {
+		return stones[point];
+	}
+
+	/**
+	 * Count the liberties of a chain, up to three.
+	 *
+	 * @param point a stone of the chain
+	 * @return the number of liberties, or 3 if there are more
+	 */
+	public int getLiberties(int point) {
+		return countLiberties(point, 3);
+	}
+
+	/**
+	 * Get the stones of a chain.
+	 *
+	 * @param point a stone of the chain
+	 * @param out   receives the flattened indices of the stones, at least as long
+	 *              as the area of the board
+	 * @return the number of stones
+	 */
+	public int getChain(int point, int[] out) {
+		int size = walkChain(point);
+		System.arraycopy(chainStones, 0, out, 0, size);
+		return size;
+	}
+
+	/**
+	 * Find a move that saves a chain in atari, the defender to move.
+	 *
+	 * @param point a stone of the chain
+	 * @return the flattened index of the move, or -1 if the chain is not in atari
+	 *         or cannot be saved
+	 */
+	public int findEscape(int point) {
+		if (stones[point] == Board.EMPTY || countLiberties(point, 2) != 1)
+			return -1;
+
+		return defend(point);
+	}
+
+	/**
+	 * Find if a chain in atari can be saved.
+	 *
+	 * @param point a stone of the chain
+	 * @return true if it can escape
+	 */
+	public boolean canEscape(int point) {
+		return findEscape(point) >= 0;
+	}
+
+	/**
+	 * Find a move that captures a chain with one or two liberties, the attacker to
+	 * move. A chain in atari is simply taken; one with two liberties is read out
+	 * as a ladder or net.
+	 *
+	 * @param point a stone of the chain
+	 * @return the flattened index of the move, or -1 if the chain cannot be
+	 *         captured
+	 */
+	public int findCapture(int point) {
+		if (stones[point] == Board.EMPTY)
+			return -1;
+
+		return attack(point);
+	}
+
+	/**
+	 * Find the defender's move: capture an adjacent chain in atari or extend at
+	 * the last liberty, and check the chain is then out of reach.
+	 */
+	private int defend(int point) {
+		countLiberties(point, 1);
+		int liberty = liberties[0];
+		if (++nodes > maxNodes || depth >= maxDepth)
+			return liberty; // Give up and assume the chain escapes.
+
+		char color = stones[point];
+		int base = depth * CANDIDATES;
+		int count = collectCaptures(point, base);
+		if (count < CANDIDATES && !contains(base, count, liberty))
+			candidates[base + count++] = liberty;
+
+		for (int i = 0; i < count; i++) {
+			int move = candidates[base + i];
+			if (!play(color, move))
+				continue;
+
+			int remaining = countLiberties(point, 3);
+			boolean safe = remaining >= 3 || (remaining == 2 && attack(point) < 0);
+			undo();
+			if (safe)
+				return move;
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the attacker's move against a chain with one or two liberties: play on
+	 * either liberty and check the chain, left in atari, cannot escape.
+	 */
+	private int attack(int point) {
+		int count = countLiberties(point, 3);
+		if (count == 1)
+			return liberties[0];
+		if (count > 2 || ++nodes > maxNodes || depth >= maxDepth)
+			return -1;
+
+		char attacker = stones[point] == Board.BLACK ? Board.WHITE : Board.BLACK;
+		int base = depth * CANDIDATES;
+		candidates[base] = liberties[0];
+		candidates[base + 1] = liberties[1];
+
+		for (int i = 0; i < 2; i++) {
+			int move = candidates[base + i];
+			if (!play(attacker, move))
+				continue;
+
+			boolean caught = countLiberties(point, 2) == 1 && defend(point) < 0;
+			undo();
+			if (caught)
+				return move;
+		}
+		return -1;
+	}
+
+	/**
+	 * Collect the liberties of the opposing chains in atari next to a chain.
+	 *
+	 * @return the number of candidates written from <code>base</code>
+	 */
+	private int collectCaptures(int point, int base) {
+		char color = stones[point];
+		int size = walkChain(point);
+		int count = 0;
+		// One slot is always left for the defender's own liberty.
+		for (int i = 0; i < size && count < CANDIDATES - 1; i++) {
+			for (int n : geometry.neighbours(chainStones[i])) {
+				if (count == CANDIDATES - 1)
+					break;
+				if (stones[n] == Board.EMPTY || stones[n] == color)
+					continue;
+				if (countLiberties(n, 2) == 1 && !contains(base, count, liberties[0]))
+					candidates[base + count++] = liberties[0];
+			}
+		}
+		return count;
+	}
+
+	private boolean contains(int base, int count, int move) {
+		for (int i = 0; i < count; i++) {
+			if (candidates[base + i] == move)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Place a stone and remove the chains it captures, unless it is occupied, the
+	 * ko point or suicide.
+	 *
+	 * @return true if the move was played and pushed on the undo stack
+	 */
+	private boolean play(char color, int point) {
+		if (stones[point] != Board.EMPTY || point == koPoint)
+			return false;
+
+		char opponent = color == Board.BLACK ? Board.WHITE : Board.BLACK;
+		stones[point] = color;
+		played[depth] = point;
+		capturedFrom[depth] = capturedTop;
+		previousKo[depth] = koPoint;
+
+		for (int n : geometry.neighbours(point)) {
+			if (stones[n] == opponent && countLiberties(n, 1) == 0)
+				remove(n);
+		}
+
+		int taken = capturedTop - capturedFrom[depth];
+		if (taken == 0 && countLiberties(point, 1) == 0) {
+			stones[point] = Board.EMPTY;
+			return false;
+		}
+
+		koPoint = -1;
+		if (taken == 1 && countLiberties(point, 2) == 1 && isLone(point))
+			koPoint = captured[capturedTop - 1];
+		depth++;
+		return true;
+	}
+
+	/**
+	 * Take back the last move, putting back the stones it captured.
+	 */
+	private void undo() {
+		depth--;
+		int point = played[depth];
+		char opponent = stones[point] == Board.BLACK ? Board.WHITE : Board.BLACK;
+		for (int i = capturedFrom[depth]; i < capturedTop; i++) {
+			stones[captured[i]] = opponent;
+		}
+		capturedTop = capturedFrom[depth];
+		stones[point] = Board.EMPTY;
+		koPoint = previousKo[depth];
+	}
+
+	private void reset() {
+		nodes = 0;
+		depth = 0;
+		capturedTop = 0;
+		koPoint = -1;
+	}
+
+	private boolean isLone(int point) {
+		for (int n : geometry.neighbours(point)) {
+			if (stones[n] == stones[point])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Remove a chain, pushing its stones on the capture stack.
+	 */
+	private void remove(int point) {
+		char color = stones[point];
+		int top = 0;
+		fill[top++] = point;
+		stones[point] = Board.EMPTY;
+		while (top > 0) {
+			int stone = fill[--top];
+			captured[capturedTop++] = stone;
+			for (int n : geometry.neighbours(stone)) {
+				if (stones[n] == color) {
+					stones[n] = Board.EMPTY;
+					fill[top++] = n;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Put the stones of a chain in {@link #chainStones}.
+	 *
+	 * @return the number of stones
+	 */
+	private int walkChain(int point) {
+		char color = stones[point];
+		if (++chainStamp == 0) {
+			Arrays.fill(chainMark, 0);
+			chainStamp = 1;
+		}
+		int stamp = chainStamp;
+		int size = 0;
+		chainStones[size++] = point;
+		chainMark[point] = stamp;
+		for (int i = 0; i < size; i++) {
+			for (int n : geometry.neighbours(chainStones[i])) {
+				if (stones[n] == color && chainMark[n] != stamp) {
+					chainMark[n] = stamp;
+					chainStones[size++] = n;
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Count the liberties of a chain, stopping at a limit of at most three, and
+	 * keep the ones found in {@link #liberties}.
+	 *
+	 * @return the number of liberties, at most <code>limit</code>
+	 */
+	private int countLiberties(int point, int limit) {
+		char color = stones[point];
+		if (++libertyStamp == 0) {
+			Arrays.fill(libertyMark, 0);
+			libertyStamp = 1;
+		}
+		int stamp = libertyStamp;
+		int top = 0;
+		int count = 0;
+		fill[top++] = point;
+		libertyMark[point] = stamp;
+		while (top > 0) {
+			int stone = fill[--top];
+			for (int n : geometry.neighbours(stone)) {
+				if (libertyMark[n] == stamp)
+					continue;
+				libertyMark[n] = stamp;
+				if (stones[n] == Board.EMPTY) {
+					liberties[count++] = n;
+					if (count == limit)
+						return count;
+				} else if (stones[n] == color) {
+					fill[top++] = n;
+				}
+			}
+		}
+		return count;
+	}
+}
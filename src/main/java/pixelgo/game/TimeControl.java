@@ -0,0 +1,51 @@
+package pixelgo.game;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The time settings of a game. Any combination of main time, byo-yomi and a
+ * Fischer increment can be used.
+ * 
+ * @param mainTimeMillis the main time of each player
+ * @param periodMillis   the length of a byo-yomi period
+ * @param periods        the number of byo-yomi periods
+ * @param incrementMillis the time added after each move
+ * 
+ * @author jacky
+ *
+ */
+public record TimeControl(long mainTimeMillis, long periodMillis, int periods, long incrementMillis) {
+	private static final Pattern FORMAT = Pattern.compile("(\\d+)(?:\\+(\\d+))?(?:/(\\d+)x(\\d+))?");
+
+	public TimeControl {
+		if (mainTimeMillis < 0 || periodMillis < 0 || periods < 0 || incrementMillis < 0)
+			throw new IllegalArgumentException("Time settings must not be negative.");
+		if ((periods == 0) != (periodMillis == 0))
+			throw new IllegalArgumentException("Byo-yomi needs both a period length and a number of periods.");
+		if (mainTimeMillis == 0 && periods == 0)
+			throw new IllegalArgumentException("Time control must have main time or byo-yomi.");
+	}
+
+	/**
+	 * Parse a time control written in seconds as <code>main[+increment][/period x
+	 * periods]</code>, e.g. <code>600</code>, <code>300+5</code> or
+	 * <code>1200/30x5</code>.
+	 * 
+	 * @param spec the time control string
+	 * @return the time control
+	 * @throws IllegalArgumentException if the string is malformed
+	 */
+	public static TimeControl parse(String spec) {
+		Matcher matcher = FORMAT.matcher(spec.replace(" ", ""));
+		if (!matcher.matches())
+			throw new IllegalArgumentException("Malformed time control: " + spec);
+
+		long main = Long.parseLong(matcher.group(1)) * 1000;
+		long increment = matcher.group(2) == null ? 0 : Long.parseLong(matcher.group(2)) * 1000;
+		long period = matcher.group(3) == null ? 0 : Long.parseLong(matcher.group(3)) * 1000;
+		int periods = matcher.group(4) == null ? 0 : Integer.parseInt(matcher.group(4));
+
+		return new TimeControl(main, period, periods, increment);
+	}
+}
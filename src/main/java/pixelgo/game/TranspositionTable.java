@@ -0,0 +1,230 @@
+package pixelgo.game;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size table of search results keyed by position hash, e.g.
+ * {@link Board#getHash()}, that threads can share without locks.
+ *
+ * <p>
+ * Entries are grouped in buckets of four. A result is stored in the bucket
+ * picked by the high bits of its key, over the entry of the same key if there
+ * is one and otherwise over the entry with the lowest priority, e.g. the
+ * shallowest search depth or the fewest visits, depending on what the caller
+ * passes.
+ *
+ * <p>
+ * Each entry is two longs: the key XOR the data, and the data. A probe only
+ * accepts an entry if the two agree with its key, so an entry torn by two
+ * threads writing at once reads as a miss rather than as another position's
+ * result. By default the longs are plain array elements, which is the fastest
+ * but leaves visibility between threads to chance. In atomic mode they are
+ * written with release and read with acquire semantics.
+ *
+ * <p>
+ * The data holds a move, a value and a priority, packed as:
+ * <ul>
+ * <li>bit 63: set in every stored entry</li>
+ * <li>bits 48-62: the priority, from 0 to {@link #MAX_PRIORITY}</li>
+ * <li>bits 32-47: the move plus one, 0 for none</li>
+ * <li>bits 0-31: the value</li>
+ * </ul>
+ *
+ * @author jacky
+ *
+ */
+public class TranspositionTable {
+	/**
+	 * The result of a probe that found nothing.
+	 */
+	public static final long MISS = 0;
+
+	public static final int MAX_PRIORITY = (1 << 15) - 1;
+
+	private static final int BUCKET = 4;
+	private static final long STORED = 1L << 63;
+	private static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	/**
+	 * Two longs per entry: the key XOR the data, then the data.
+	 */
+	private final long[] entries;
+	private final int shift;
+	private final boolean atomic;
+
+	private final LongAdder probes = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder collisions = new LongAdder();
+
+	/**
+	 * Create an empty table.
+	 *
+	 * @param capacity the number of entries, rounded up to a power of two of at
+	 *                 least one bucket
+	 * @param atomic   true to order every read and write so threads see each
+	 *                 other's results
+	 */
+	public TranspositionTable(int capacity, boolean atomic) {
+		if (capacity < 1 || capacity > 1 << 29)
+			throw new IllegalArgumentException("Transposition table capacity out of range: " + capacity);
+
+		int buckets = Integer.highestOneBit(((capacity + BUCKET - 1) / BUCKET) * 2 - 1);
+		entries = new long[buckets * BUCKET * 2];
+		shift = 64 - Integer.numberOfTrailingZeros(buckets);
+		this.atomic = atomic;
+	}
+
+	/**
+	 * Look up a position.
+	 *
+	 * @param key the position hash
+	 * @return the stored data, or {@link #MISS}
+	 */
+	public long probe(long key) {
+		probes.increment();
+		int base = bucket(key);
+		for (int i = base; i < base + BUCKET * 2; i += 2) {
+			long data = read(i + 1);
+			if (data != MISS && (read(i) ^ data) == key) {
+				hits.increment();
+				return data;
+			}
+		}
+		return MISS;
+	}
+
+	/**
+	 * Store the result of searching a position.
+	 *
+	 * @param key      the position hash
+	 * @param move     the best move, or -1 for none
+	 * @param value    the value of the position
+	 * @param priority how much the result is worth keeping, e.g. the search
+	 *                 depth or the number of visits, capped at
+	 *                 {@link #MAX_PRIORITY}
+	 */
+	public void store(long key, int move, int value, int priority) {
+		long data = STORED | (long) Math.min(Math.max(priority, 0), MAX_PRIORITY) << 48
+				| (long) ((move + 1) & 0xFFFF) << 32 | value & 0xFFFFFFFFL;
+
+		int base = bucket(key);
+		int victim = base;
+		int lowest = Integer.MAX_VALUE;
+		for (int i = base; i < base + BUCKET * 2; i += 2) {
+			long old = read(i + 1);
+			if (old == MISS || (read(i) ^ old) == key) {
+				victim = i;
+				lowest = -1;
+				break;
+			}
+			if (getPriority(old) < lowest) {
+				victim = i;
+				lowest = getPriority(old);
+			}
+		}
+
+		if (lowest >= 0)
+			collisions.increment(); // Another position is evicted.
+		write(victim, key ^ data);
+		write(victim + 1, data);
+	}
+
+	/**
+	 * Remove every entry and reset the counters. Must not run alongside other
+	 * calls.
+	 */
+	public void clear() {
+		Arrays.fill(entries, 0);
+		probes.reset();
+		hits.reset();
+		collisions.reset();
+	}
+
+	/**
+	 * Get the move of a result.
+	 *
+	 * @param data the data returned by {@link #probe(long)}
+	 * @return the move, or -1 for none
+	 */
+	public static int getMove(long data) {
+		return (int) (data >>> 32 & 0xFFFF) - 1;
+	}
+
+	/**
+	 * Get the value of a result.
+	 *
+	 * @param data the data returned by {@link #probe(long)}
+	 * @return the value
+	 */
+	public static int getValue(long data) {
+		return (int) data;
+	}
+
+	/**
+	 * Get the priority of a result.
+	 *
+	 * @param data the data returned by {@link #probe(long)}
+	 * @return the priority
+	 */
+	public static int getPriority(long data) {
+		return (int) (data >>> 48 & MAX_PRIORITY);
+	}
+
+	/**
+	 * Get the number of entries.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return entries.length / 2;
+	}
+
+	public long getProbes() {
+		return probes.sum();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of stores that evicted a different position.
+	 *
+	 * @return the number of collisions
+	 */
+	public long getCollisions() {
+		return collisions.sum();
+	}
+
+	/**
+	 * Get the fraction of probes that found their position.
+	 *
+	 * @return the hit rate, 0 if there were no probes
+	 */
+	public double getHitRate() {
+		long count = probes.sum();
+		return count == 0 ? 0 : (double) hits.sum() / count;
+	}
+
+	/**
+	 * Find the first long of the bucket of a key from its high bits.
+	 */
+	private int bucket(long key) {
+		return shift == 64 ? 0 : (int) (key >>> shift) * BUCKET * 2;
+	}
+
+	private long read(int index) {
+		return atomic ? (long) ELEMENTS.getAcquire(entries, index) : entries[index];
+	}
+
+	private void write(int index, long value) {
+		if (atomic) {
+			ELEMENTS.setRelease(entries, index, value);
+		} else {
+			entries[index] = value;
+		}
+	}
+}
@@ -16,9 +16,23 @@ public enum Violation {
 	 */
 	SUICIDE,
 	
-	
 	/**
 	 * The move contains an illegal argument that could not be parsed.
 	 */
-	ILLEGAL_ARGUMENT
+	ILLEGAL_ARGUMENT,
+	
+	/**
+	 * It is not the player's turn.
+	 */
+	OUT_OF_TURN,
+	
+	/**
+	 * The game is not running.
+	 */
+	GAME_NOT_STARTED,
+	
+	/**
+	 * The move was made against a position the server has not reached.
+	 */
+	OUT_OF_SYNC
 }
@@ -1,7 +1,5 @@
 package pixelgo.game;
 
-import java.util.Random;
-
 /**
  * A class for generating and comparing Zobrist hashes.
  * 
@@ -9,23 +7,10 @@ import java.util.Random;
  *
  */
 public class ZobristHash {
-	private static int MAX_SIZE = 19;
-
-	private static long[] blackBitstrings;
-	private static long[] whiteBitstrings;
-
 	/**
-	 * Generate random bit strings for each possible position.
+	 * The shared random bit strings for the board size.
 	 */
-	static {
-		Random random = new Random();
-		blackBitstrings = new long[MAX_SIZE * MAX_SIZE];
-		whiteBitstrings = new long[MAX_SIZE * MAX_SIZE];
-		for (int i = 0; i < MAX_SIZE * MAX_SIZE; i++) {
-			blackBitstrings[i] = random.nextLong();
-			whiteBitstrings[i] = random.nextLong();
-		}
-	}
+	private final BoardGeometry geometry;
 
 	/**
 	 * A 64 bit hash stored in a long.
@@ -35,17 +20,21 @@ public class ZobristHash {
 	/**
 	 * Creates a new Zobrist hash object with a zero hash representing an empty
 	 * board.
+	 * 
+	 * @param geometry the geometry of the board
 	 */
-	public ZobristHash() {
-		this(0);
+	public ZobristHash(BoardGeometry geometry) {
+		this(geometry, 0);
 	}
 
 	/**
 	 * Creates a new Zobrist hash object from the specified hash.
 	 * 
+	 * @param geometry the geometry of the board
 	 * @param hash
 	 */
-	public ZobristHash(long hash) {
+	public ZobristHash(BoardGeometry geometry, long hash) {
+		this.geometry = geometry;
 		this.hash = hash;
 	}
 
@@ -55,7 +44,7 @@ public class ZobristHash {
 	 * @return a copy of the instance
 	 */
 	public ZobristHash copy() {
-		return new ZobristHash(hash);
+		return new ZobristHash(geometry, hash);
 	}
 
 	@Override
@@ -94,9 +83,9 @@ public class ZobristHash {
 	 */
 	public void toggleStone(char color, int i) {
 		if (color == Board.BLACK) {
-			hash ^= blackBitstrings[i];
+			hash ^= geometry.blackKey(i);
 		} else if (color == Board.WHITE) {
-			hash ^= whiteBitstrings[i];
+			hash ^= geometry.whiteKey(i);
 		} else {
 			throw new IllegalArgumentException("Invalid stone color");
 		}
@@ -0,0 +1,199 @@
+package pixelgo.selfplay;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+import pixelgo.game.PackedPosition;
+
+/**
+ * Writes game records to gzip-compressed chunk files on a thread of its own,
+ * so game workers never wait for the disk. Workers fill a {@link Buffer} taken
+ * from a pool and hand it over with {@link #submit(Buffer)}; the writer drains
+ * every buffer waiting, writes them in one batch and returns them to the pool.
+ * A new chunk file, <code>selfplay-00000.bin.gz</code> and so on, is started
+ * every so many records.
+ *
+ * <p>
+ * A chunk file starts with the magic number and the format version as ints,
+ * followed by the records.
+ *
+ * @author jacky
+ *
+ */
+public class RecordWriter implements AutoCloseable {
+	static final int MAGIC = 0x50475350; // "PGSP"
+	static final int VERSION = 1;
+
+	/**
+	 * The number of idle buffers kept for reuse.
+	 */
+	private static final int POOL_SIZE = 64;
+
+	/**
+	 * A reusable record buffer.
+	 */
+	public static final class Buffer {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 15);
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final byte[] position = new byte[PackedPosition.MAX_LENGTH];
+
+		public DataOutputStream out() {
+			return out;
+		}
+
+		/**
+		 * Get scratch space to pack a position into before writing it.
+		 *
+		 * @return an array of {@link PackedPosition#MAX_LENGTH} bytes
+		 */
+		public byte[] position() {
+			return position;
+		}
+	}
+
+	private static final Buffer END = new Buffer();
+
+	private final Path directory;
+	private final int recordsPerChunk;
+	private final BlockingQueue<Buffer> queue = new LinkedBlockingQueue<>();
+	private final ConcurrentLinkedQueue<Buffer> pool = new ConcurrentLinkedQueue<>();
+	private final Thread thread;
+	private volatile IOException failure;
+	private int chunk;
+	private long records;
+
+	/**
+	 * Start the writer thread.
+	 *
+	 * @param directory       the directory to write chunk files to
+	 * @param recordsPerChunk the number of records in each chunk file
+	 * @throws IOException if the directory could not be created
+	 */
+	public RecordWriter(Path directory, int recordsPerChunk) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.recordsPerChunk = recordsPerChunk;
+		thread = new Thread(this::run, "selfplay-writer");
+		thread.start();
+	}
+
+	/**
+	 * Get an empty buffer to write a record into.
+	 *
+	 * @return a buffer from the pool, or a new one if the pool is empty
+	 */
+	public Buffer take() {
+		Buffer buffer = pool.poll();
+		return buffer == null ? new Buffer() : buffer;
+	}
+
+	/**
+	 * Queue a filled buffer to be written. The buffer must not be used afterwards.
+	 *
+	 * @param buffer the record
+	 * @throws IOException if the writer already failed
+	 */
+	public void submit(Buffer buffer) throws IOException {
+		if (failure != null)
+			throw new IOException("Record writer failed.", failure);
+		queue.add(buffer);
+	}
+
+	/**
+	 * Give back a buffer that will not be submitted, e.g. because its game
+	 * failed. The buffer must not be used afterwards.
+	 *
+	 * @param buffer the buffer
+	 */
+	public void release(Buffer buffer) {
+		buffer.bytes.reset();
+		if (pool.size() < POOL_SIZE)
+			pool.add(buffer);
+	}
+
+	/**
+	 * Get the number of records written so far.
+	 *
+	 * @return the number of records
+	 */
+	public synchronized long getRecords() {
+		return records;
+	}
+
+	/**
+	 * Write the records still queued and close the last chunk file.
+	 *
+	 * @throws IOException if a record could not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		queue.add(END);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	private void run() {
+		List<Buffer> batch = new ArrayList<>();
+		OutputStream out = null;
+		int inChunk = 0;
+		try {
+			boolean end = false;
+			while (!end) {
+				batch.add(queue.take());
+				queue.drainTo(batch);
+
+				for (Buffer buffer : batch) {
+					if (buffer == END) {
+						end = true;
+						continue;
+					}
+
+					if (out == null || inChunk == recordsPerChunk) {
+						if (out != null)
+							out.close();
+						out = openChunk();
+						inChunk = 0;
+					}
+					buffer.bytes.writeTo(out);
+					inChunk++;
+					synchronized (this) {
+						records++;
+					}
+
+					release(buffer);
+				}
+				batch.clear();
+			}
+			if (out != null)
+				out.close();
+		} catch (IOException e) {
+			failure = e;
+		} catch (InterruptedException e) {
+			failure = new IOException("Record writer was interrupted.", e);
+		}
+	}
+
+	private OutputStream openChunk() throws IOException {
+		Path path = directory.resolve(String.format("selfplay-%05d.bin.gz", chunk++));
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path), 1 << 16), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		return out;
+	}
+}
@@ -0,0 +1,203 @@
+package pixelgo.selfplay;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pixelgo.exceptions.EngineException;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.Game;
+import pixelgo.game.Move;
+import pixelgo.game.MoveResult;
+import pixelgo.game.PackedPosition;
+import pixelgo.game.Player;
+import pixelgo.services.EnginePool;
+import pixelgo.services.FallbackPolicy;
+import pixelgo.services.HashedWheelTimer;
+
+/**
+ * Plays engine-vs-engine games in parallel and streams them to compressed
+ * chunk files through a {@link RecordWriter}, e.g. for training data or
+ * {@link pixelgo.book.OpeningBookBuilder opening books}. Moves come from a pool
+ * of GTP engines when an engine command is given, and from the in-process
+ * {@link FallbackPolicy} otherwise.
+ *
+ * <pre>
+ * java -cp pixel-go.jar -Dloader.main=pixelgo.selfplay.SelfPlay \
+ *     org.springframework.boot.loader.PropertiesLauncher \
+ *     &lt;output directory&gt; [games=1000] [board size=9] [threads=cores] [games per chunk=1000] [engine command...]
+ * </pre>
+ *
+ * <p>
+ * Each record is the board size as a byte, then for every move the point as a
+ * short (-1 for a pass) followed by the {@link PackedPosition packed} position
+ * the move was played in, then a short of -2, the player who resigned as a byte
+ * ({@link PackedPosition#BLACK}, {@link PackedPosition#WHITE} or 0 for none)
+ * and the area score of black and white as shorts. Scores do not include komi.
+ *
+ * @author jacky
+ *
+ */
+public class SelfPlay {
+	/**
+	 * Where the moves come from.
+	 */
+	@FunctionalInterface
+	public interface MoveSource {
+		Move generateMove(Player player, List<Move> moves, int boardSize) throws IOException, EngineException;
+	}
+
+	static final short PASS = -1;
+	static final short END = -2;
+
+	private static final Logger logger = LoggerFactory.getLogger(SelfPlay.class);
+
+	private final MoveSource source;
+	private final int boardSize;
+	private final RecordWriter writer;
+
+	public SelfPlay(MoveSource source, int boardSize, RecordWriter writer) {
+		if (!BoardGeometry.isSupportedSize(boardSize))
+			throw new IllegalArgumentException("Unsupported board size: " + boardSize);
+
+		this.source = source;
+		this.boardSize = boardSize;
+		this.writer = writer;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.err.println(
+					"Usage: SelfPlay <output directory> [games] [board size] [threads] [games per chunk] [engine command...]");
+			System.exit(2);
+		}
+
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int boardSize = args.length > 2 ? Integer.parseInt(args[2]) : 9;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		int perChunk = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+		HashedWheelTimer timer = null;
+		EnginePool pool = null;
+		MoveSource source;
+		if (args.length > 5) {
+			timer = new HashedWheelTimer(100, 512);
+			pool = new EnginePool(Arrays.asList(args).subList(5, args.length), threads, 60000, timer);
+			EnginePool engines = pool;
+			// Keep each game on the engine that already has its moves.
+			source = (player, moves, size) -> engines.execute(client -> client.getSharedMoves(size, moves), client -> {
+				client.loadPosition(size, moves);
+				return client.generateMove(player);
+			});
+		} else {
+			source = new FallbackPolicy()::chooseMove;
+		}
+
+		long start = System.nanoTime();
+		RecordWriter writer = new RecordWriter(Path.of(args[0]), perChunk);
+		try {
+			new SelfPlay(source, boardSize, writer).run(games, threads);
+		} finally {
+			writer.close();
+			if (pool != null)
+				pool.shutdown();
+			if (timer != null)
+				timer.stop();
+		}
+		System.out.println("Wrote " + writer.getRecords() + " games to " + args[0] + " in "
+				+ TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + " s");
+	}
+
+	/**
+	 * Play games until the given number have been played.
+	 *
+	 * @param games   the number of games
+	 * @param threads the number of games played at once
+	 * @throws InterruptedException if interrupted while waiting for the games
+	 */
+	public void run(int games, int threads) throws InterruptedException {
+		AtomicInteger remaining = new AtomicInteger(games);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			executor.execute(() -> {
+				while (remaining.getAndDecrement() > 0) {
+					try {
+						play();
+					} catch (IOException | EngineException e) {
+						logger.warn("Self-play game failed: {}", e.getMessage());
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+	}
+
+	/**
+	 * Play one game and queue its record.
+	 */
+	private void play() throws IOException, EngineException {
+		Game game = new Game(boardSize);
+		game.startGame();
+		BoardGeometry geometry = BoardGeometry.of(boardSize);
+		RecordWriter.Buffer buffer = writer.take();
+		try {
+			record(game, geometry, buffer);
+		} catch (IOException | EngineException | RuntimeException e) {
+			writer.release(buffer);
+			throw e;
+		}
+		writer.submit(buffer);
+	}
+
+	/**
+	 * Play out a started game, writing its record into a buffer.
+	 */
+	private void record(Game game, BoardGeometry geometry, RecordWriter.Buffer buffer)
+			throws IOException, EngineException {
+		DataOutputStream out = buffer.out();
+		out.writeByte(boardSize);
+
+		Player resigned = null;
+		for (int moves = 0; game.isRunning(); moves++) {
+			Player player = game.getCurrentPlayer();
+			if (moves >= 3 * geometry.area()) {
+				game.stopGame(); // Random players can fight a ko forever.
+				break;
+			}
+
+			byte[] position = buffer.position();
+			int length = PackedPosition.pack(game.getBoard(), position, 0);
+			Move move = source.generateMove(player, game.getMovesSince(0), boardSize);
+			if (move.vertex().equalsIgnoreCase("resign")) {
+				resigned = player;
+				game.forfeit(player);
+				break;
+			}
+
+			MoveResult result = game.tryExecuteMove(move);
+			if (result.isRejected()) {
+				move = new Move(player, "pass");
+				game.tryExecuteMove(move);
+			}
+			out.writeShort(move.vertex().equalsIgnoreCase("pass") ? PASS : geometry.point(move.vertex()));
+			out.write(position, 0, length);
+		}
+
+		int[] points = game.getPoints();
+		out.writeShort(END);
+		out.writeByte(resigned == Player.BLACK ? PackedPosition.BLACK
+				: resigned == Player.WHITE ? PackedPosition.WHITE : 0);
+		out.writeShort(points[0]);
+		out.writeShort(points[1]);
+	}
+}
@@ -0,0 +1,314 @@
+package pixelgo.services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import pixelgo.dtos.AnalysisResult;
+import pixelgo.exceptions.EngineException;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+
+/**
+ * A client for KataGo's JSON analysis engine. A single process serves every
+ * game: queries from all callers are queued, written in batches with one flush,
+ * and searched concurrently by the engine, and each response is routed back to
+ * its caller by query id.
+ *
+ * <p>
+ * The process is started on first use and restarted on the next query if it
+ * exits, in which case the queries it had not answered fail. Cancelling the
+ * future of a query asks the engine to stop searching it.
+ *
+ * @author jacky
+ *
+ */
+@Component
+public class AnalysisEngine {
+	/**
+	 * A query waiting for its response.
+	 */
+	private record Pending(CompletableFuture<AnalysisResult> future, Player player, int boardSize) {
+	}
+
+	/**
+	 * A running engine process with its own queue and reader and writer threads.
+	 */
+	private final class Connection {
+		private final Process process;
+		private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+		private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+		private final Thread writer;
+		private volatile boolean closed;
+
+		private Connection() throws IOException {
+			ProcessBuilder processBuilder = new ProcessBuilder(command);
+			processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+			process = processBuilder.start();
+
+			Thread reader = new Thread(this::read, "analysis-reader");
+			reader.setDaemon(true);
+			writer = new Thread(this::write, "analysis-writer");
+			writer.setDaemon(true);
+			reader.start();
+			writer.start();
+		}
+
+		private void write() {
+			List<String> batch = new ArrayList<>();
+			try (BufferedWriter out = process.outputWriter()) {
+				while (!closed) {
+					batch.add(queue.take());
+					queue.drainTo(batch);
+					for (String line : batch) {
+						out.write(line);
+						out.write('\n');
+					}
+					out.flush();
+					batch.clear();
+				}
+			} catch (IOException | InterruptedException e) {
+				// The reader notices that the process exited and fails the pending queries.
+			}
+		}
+
+		private void read() {
+			try (BufferedReader in = process.inputReader()) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					receive(line);
+				}
+			} catch (IOException e) {
+				logger.warn("Lost connection to the analysis engine", e);
+			}
+
+			closed = true;
+			writer.interrupt();
+			process.destroyForcibly();
+			for (String id : pending.keySet()) {
+				Pending query = pending.remove(id);
+				if (query != null)
+					query.future().completeExceptionally(new EngineException("Analysis engine exited."));
+			}
+		}
+
+		private void receive(String line) {
+			JsonNode response;
+			try {
+				response = mapper.readTree(line);
+			} catch (IOException e) {
+				logger.warn("Ignoring malformed analysis engine output: {}", line);
+				return;
+			}
+
+			if (response.has("warning")) {
+				logger.warn("Analysis engine warning: {}", response.get("warning").asText());
+				return;
+			}
+
+			Pending query = pending.remove(response.path("id").asText());
+			if (query == null) {
+				if (response.has("error"))
+					logger.warn("Analysis engine error: {}", response.get("error").asText());
+				return; // A terminated query or an acknowledgement.
+			}
+
+			if (response.has("error")) {
+				query.future().completeExceptionally(new EngineException(response.get("error").asText()));
+			} else {
+				query.future().complete(parse(response, query));
+			}
+		}
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(AnalysisEngine.class);
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final AtomicLong ids = new AtomicLong();
+	private final List<String> command;
+	private final int maxVisits;
+	private final double komi;
+	private Connection connection;
+
+	@Autowired
+	public AnalysisEngine(
+			@Value("${pixelgo.analysis.command:katago.exe analysis -config analysis.cfg -model model.bin.gz}") String command,
+			@Value("${pixelgo.analysis.max-visits:500}") int maxVisits,
+			@Value("${pixelgo.analysis.komi:7.5}") double komi) {
+		this(Arrays.asList(command.trim().split("\\s+")), maxVisits, komi);
+	}
+
+	public AnalysisEngine(List<String> command, int maxVisits, double komi) {
+		this.command = List.copyOf(command);
+		this.maxVisits = maxVisits;
+		this.komi = komi;
+	}
+
+	/**
+	 * Analyze a position.
+	 *
+	 * @param player    the player to move
+	 * @param moves     the moves played so far
+	 * @param boardSize the board size
+	 * @param ownership true to include the ownership of each point
+	 * @return the analysis, which fails with an {@link EngineException} if the
+	 *         engine rejects the query or exits
+	 */
+	public CompletableFuture<AnalysisResult> analyze(Player player, List<Move> moves, int boardSize,
+			boolean ownership) {
+		return analyze(player, moves, boardSize, ownership, 0, 0);
+	}
+
+	/**
+	 * Analyze a position within a budget.
+	 *
+	 * @param player         the player to move
+	 * @param moves          the moves played so far
+	 * @param boardSize      the board size
+	 * @param ownership      true to include the ownership of each point
+	 * @param moveTimeMillis the search time, or 0 for no limit
+	 * @param maxVisits      the visits, or 0 for the configured number
+	 * @return the analysis, which fails with an {@link EngineException} if the
+	 *         engine rejects the query or exits
+	 */
+	public CompletableFuture<AnalysisResult> analyze(Player player, List<Move> moves, int boardSize,
+			boolean ownership, long moveTimeMillis, int maxVisits) {
+		Connection connection;
+		try {
+			connection = connect();
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(new EngineException("Analysis engine could not be started.", e));
+		}
+
+		String id = Long.toString(ids.incrementAndGet());
+		String query = query(id, player, moves, boardSize, ownership, moveTimeMillis,
+				maxVisits > 0 ? maxVisits : this.maxVisits);
+
+		CompletableFuture<AnalysisResult> future = new CompletableFuture<>();
+		connection.pending.put(id, new Pending(future, player, boardSize));
+		future.whenComplete((result, e) -> {
+			// Still pending means the caller gave up, so the engine can stop searching.
+			if (connection.pending.remove(id) != null) {
+				ObjectNode terminate = mapper.createObjectNode();
+				terminate.put("id", "terminate-" + id);
+				terminate.put("action", "terminate");
+				terminate.put("terminateId", id);
+				connection.queue.add(terminate.toString());
+			}
+		});
+
+		connection.queue.add(query);
+		if (connection.closed && connection.pending.remove(id) != null)
+			future.completeExceptionally(new EngineException("Analysis engine exited."));
+		return future;
+	}
+
+	/**
+	 * Get the command line the engine is started with.
+	 *
+	 * @return the command line
+	 */
+	public List<String> getCommand() {
+		return command;
+	}
+
+	/**
+	 * Kill the engine process.
+	 */
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (connection != null)
+			connection.process.destroyForcibly();
+	}
+
+	private synchronized Connection connect() throws IOException {
+		if (connection == null || connection.closed) {
+			if (connection != null)
+				logger.warn("Analysis engine exited, restarting it");
+			connection = new Connection();
+			logger.info("Analysis engine started: {}", command);
+		}
+		return connection;
+	}
+
+	private String query(String id, Player player, List<Move> moves, int boardSize, boolean ownership,
+			long moveTimeMillis, int maxVisits) {
+		ObjectNode query = mapper.createObjectNode();
+		query.put("id", id);
+		query.put("rules", "tromp-taylor"); // Area scoring and positional superko, like Board.
+		query.put("komi", komi);
+		query.put("boardXSize", boardSize);
+		query.put("boardYSize", boardSize);
+		query.put("maxVisits", maxVisits);
+		query.put("includeOwnership", ownership);
+		if (moveTimeMillis > 0)
+			query.putObject("overrideSettings").put("maxTime", moveTimeMillis / 1000.0);
+
+		ArrayNode array = query.putArray("moves");
+		for (Move move : moves) {
+			array.addArray().add(color(move.player())).add(move.vertex());
+		}
+
+		// The engine assumes the players alternate, so a player moving twice needs an explicit pass in between.
+		Player last = moves.isEmpty() ? null : moves.get(moves.size() - 1).player();
+		if (last == player) {
+			array.addArray().add(color(player == Player.BLACK ? Player.WHITE : Player.BLACK)).add("pass");
+		} else if (last == null) {
+			query.put("initialPlayer", color(player));
+		}
+		query.putArray("analyzeTurns").add(array.size());
+		return query.toString();
+	}
+
+	private AnalysisResult parse(JsonNode response, Pending query) {
+		JsonNode best = null;
+		for (JsonNode info : response.path("moveInfos")) {
+			if (best == null || info.path("order").asInt() < best.path("order").asInt())
+				best = info;
+		}
+		if (best == null)
+			best = mapper.createObjectNode().put("move", "pass");
+
+		double[] ownership = null;
+		JsonNode values = response.get("ownership");
+		if (values != null) {
+			// The engine lists the rows from the top, the board numbers them from the bottom.
+			int n = query.boardSize();
+			ownership = new double[n * n];
+			for (int y = 0; y < n; y++) {
+				for (int x = 0; x < n; x++) {
+					ownership[(n - 1 - y) * n + x] = values.path(y * n + x).asDouble();
+				}
+			}
+		}
+
+		return new AnalysisResult(new Move(query.player(), best.path("move").asText()), best.path("winrate").asDouble(),
+				best.path("scoreLead").asDouble(), best.path("visits").asInt(), ownership);
+	}
+
+	private static String color(Player player) {
+		return player == Player.BLACK ? "B" : "W";
+	}
+}
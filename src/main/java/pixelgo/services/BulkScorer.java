@@ -0,0 +1,182 @@
+package pixelgo.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+import org.springframework.stereotype.Component;
+
+import pixelgo.game.AreaScorer;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.PackedPosition;
+
+/**
+ * Scores large batches of {@link PackedPosition packed positions}. Positions
+ * are read in chunks, and each chunk is scored in parallel with one
+ * {@link AreaScorer} per worker thread while the next chunk is read. The
+ * scores are then written in input order as lines of <code>black white</code>.
+ * The two chunk buffers are used in turn, so nothing is allocated per
+ * position.
+ *
+ * <pre>
+ * java -cp pixel-go.jar -Dloader.main=pixelgo.services.BulkScorer \
+ *     org.springframework.boot.loader.PropertiesLauncher [position files...] &gt; scores.txt
+ * </pre>
+ *
+ * @author jacky
+ *
+ */
+@Component
+public class BulkScorer {
+	private static final int CHUNK = 4096;
+
+	/**
+	 * The scratch space of a worker thread.
+	 */
+	private static final class Worker {
+		private final AreaScorer scorer = new AreaScorer();
+		private final int[] score = new int[2];
+	}
+
+	/**
+	 * A chunk of positions and their scores. Two are used in turn, so one can be
+	 * read while the other is scored.
+	 */
+	private static final class Chunk {
+		private final byte[] positions = new byte[CHUNK * PackedPosition.MAX_LENGTH];
+		private final int[] offsets = new int[CHUNK];
+		private final int[] scores = new int[CHUNK * 2];
+		private int count;
+	}
+
+	private static final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+	public static void main(String[] args) throws IOException {
+		BulkScorer scorer = new BulkScorer();
+		OutputStream out = new BufferedOutputStream(System.out, 1 << 16);
+		long count = 0;
+		if (args.length == 0) {
+			count = scorer.score(System.in, out);
+		}
+		for (String file : args) {
+			try (InputStream in = Files.newInputStream(Path.of(file))) {
+				count += scorer.score(in, out);
+			}
+		}
+		out.flush();
+		System.err.println("Scored " + count + " positions");
+	}
+
+	/**
+	 * Score every position in a stream.
+	 *
+	 * @param in  the packed positions, one after the other
+	 * @param out receives one line per position with black's and white's score
+	 * @return the number of positions scored
+	 * @throws IOException if a stream failed or the input ends in the middle of a
+	 *                     position or has an unsupported board size
+	 */
+	public long score(InputStream in, OutputStream out) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		Chunk current = new Chunk();
+		Chunk next = new Chunk();
+		byte[] line = new byte[16];
+
+		long total = 0;
+		read(data, current);
+		while (current.count > 0) {
+			Chunk scored = current;
+			CompletableFuture<Void> scoring = CompletableFuture.runAsync(() -> score(scored));
+			try {
+				read(data, next);
+			} finally {
+				try {
+					scoring.join();
+				} catch (CompletionException e) {
+					throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+				}
+			}
+
+			for (int i = 0; i < current.count; i++) {
+				int length = format(current.scores[2 * i], line, 0);
+				line[length++] = ' ';
+				length = format(current.scores[2 * i + 1], line, length);
+				line[length++] = '\n';
+				out.write(line, 0, length);
+			}
+			total += current.count;
+
+			current = next;
+			next = scored;
+		}
+		out.flush();
+		return total;
+	}
+
+	/**
+	 * Score a chunk in parallel.
+	 */
+	private static void score(Chunk chunk) {
+		IntStream.range(0, chunk.count).parallel().forEach(i -> {
+			Worker worker = workers.get();
+			worker.scorer.score(chunk.positions, chunk.offsets[i], worker.score);
+			chunk.scores[2 * i] = worker.score[0];
+			chunk.scores[2 * i + 1] = worker.score[1];
+		});
+	}
+
+	/**
+	 * Read up to a chunk of positions, setting the count to 0 at the end of the
+	 * stream.
+	 */
+	private static void read(DataInputStream in, Chunk chunk) throws IOException {
+		byte[] positions = chunk.positions;
+		int[] offsets = chunk.offsets;
+		int count = 0;
+		int offset = 0;
+		while (count < CHUNK) {
+			int size = in.read();
+			if (size < 0)
+				break;
+			if (!BoardGeometry.isSupportedSize(size))
+				throw new IOException("Unsupported board size in packed position: " + size);
+
+			int length = PackedPosition.length(size);
+			positions[offset] = (byte) size;
+			try {
+				in.readFully(positions, offset + 1, length - 1);
+			} catch (EOFException e) {
+				throw new IOException("Packed position is truncated.", e);
+			}
+			offsets[count++] = offset;
+			offset += length;
+		}
+		chunk.count = count;
+	}
+
+	/**
+	 * Write a non-negative number in decimal.
+	 *
+	 * @return the index after the last digit
+	 */
+	private static int format(int value, byte[] out, int offset) {
+		int digits = 1;
+		for (int v = value; v >= 10; v /= 10) {
+			digits++;
+		}
+		for (int i = offset + digits - 1; i >= offset; i--) {
+			out[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return offset + digits;
+	}
+}
@@ -0,0 +1,87 @@
+package pixelgo.services;
+
+/**
+ * Stops sending requests to a failing dependency so it gets a chance to
+ * recover. After a number of consecutive failures the breaker opens and
+ * rejects requests for a while. Then it lets a single trial request through: if
+ * it succeeds the breaker closes, otherwise it opens again.
+ *
+ * @author jacky
+ *
+ */
+public class CircuitBreaker {
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+	private final long openNanos;
+	private State state = State.CLOSED;
+	private int failures;
+	private long openedAt;
+	private boolean trialRunning;
+
+	/**
+	 * Create a closed breaker.
+	 *
+	 * @param failureThreshold the number of consecutive failures that opens the
+	 *                         breaker
+	 * @param openMillis       how long the breaker stays open before a trial
+	 *                         request
+	 */
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		this.failureThreshold = failureThreshold;
+		this.openNanos = openMillis * 1_000_000;
+	}
+
+	/**
+	 * Ask to send a request. Every permitted request must be followed by a call to
+	 * {@link #recordSuccess()} or {@link #recordFailure()}.
+	 *
+	 * @return true if the request may be sent
+	 */
+	public synchronized boolean tryAcquire() {
+		if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos)
+			state = State.HALF_OPEN;
+
+		switch (state) {
+		case CLOSED:
+			return true;
+		case HALF_OPEN:
+			if (trialRunning)
+				return false;
+			trialRunning = true;
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	public synchronized void recordSuccess() {
+		failures = 0;
+		trialRunning = false;
+		state = State.CLOSED;
+	}
+
+	/**
+	 * Give back a permit without judging the dependency, e.g. when the caller
+	 * cancelled the request.
+	 */
+	public synchronized void release() {
+		trialRunning = false;
+	}
+
+	public synchronized void recordFailure() {
+		trialRunning = false;
+		if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+			state = State.OPEN;
+			openedAt = System.nanoTime();
+		}
+	}
+
+	public synchronized State getState() {
+		if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos)
+			return State.HALF_OPEN;
+		return state;
+	}
+}
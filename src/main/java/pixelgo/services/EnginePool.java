@@ -0,0 +1,409 @@
+package pixelgo.services;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import pixelgo.exceptions.EngineException;
+import pixelgo.game.Player;
+import pixelgo.services.HashedWheelTimer.Timeout;
+
+/**
+ * A pool of GTP engine processes. Requests check out a worker in the order they
+ * arrive, and wait in line while every worker is busy. Workers are started on
+ * first use, and a worker whose process dies or times out is restarted for the
+ * next request. A request may say which engines it prefers, e.g. the ones that
+ * already have most of its position loaded, and gets the best idle one.
+ *
+ * <p>
+ * With <code>pixelgo.engine.ponder-millis</code> set, an engine keeps searching
+ * the position after answering, until the next request or the ponder time runs
+ * out. Requests only interrupt such an engine when no other one is free.
+ *
+ * @author jacky
+ *
+ */
+@Component
+public class EnginePool {
+	/**
+	 * A unit of work run against a checked out engine.
+	 *
+	 * @param <T> the result type
+	 */
+	@FunctionalInterface
+	public interface EngineTask<T> {
+		T run(GTPClient client) throws IOException, EngineException;
+	}
+
+	/**
+	 * A slot in the pool holding at most one engine process.
+	 */
+	private static final class Worker {
+		private final int id;
+		private GTPClient client;
+
+		private Worker(int id) {
+			this.id = id;
+		}
+	}
+
+	/**
+	 * Tracks the engine an asynchronous request is running on, so the request can
+	 * be aborted by killing that engine.
+	 */
+	private static final class Abort {
+		private GTPClient client;
+		private boolean aborted;
+
+		/**
+		 * @return false if the request was aborted before it started
+		 */
+		private synchronized boolean start(GTPClient client) {
+			if (aborted)
+				return false;
+			this.client = client;
+			return true;
+		}
+
+		/**
+		 * @return true if the engine was killed while the request ran
+		 */
+		private synchronized boolean finish() {
+			boolean killed = aborted && client != null;
+			client = null;
+			return killed;
+		}
+
+		private synchronized void abort() {
+			aborted = true;
+			if (client != null)
+				client.close();
+		}
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(EnginePool.class);
+
+	private final List<String> command;
+	private final long requestTimeoutMillis;
+	private final long ponderMillis;
+	private final HashedWheelTimer timer;
+	private final Executor executor;
+	private final Semaphore available;
+	private final Deque<Worker> idle = new ArrayDeque<>();
+	private final Worker[] workers;
+
+	@Autowired
+	public EnginePool(@Value("${pixelgo.engine.command:katago.exe gtp}") String command,
+			@Value("${pixelgo.engine.workers:1}") int workers,
+			@Value("${pixelgo.engine.request-timeout-millis:60000}") long requestTimeoutMillis,
+			@Value("${pixelgo.engine.ponder-millis:0}") long ponderMillis, HashedWheelTimer timer,
+			@Qualifier("engineExecutor") Executor executor) {
+		this(Arrays.asList(command.trim().split("\\s+")), workers, requestTimeoutMillis, ponderMillis, timer,
+				executor);
+	}
+
+	public EnginePool(List<String> command, int workers, long requestTimeoutMillis, HashedWheelTimer timer) {
+		this(command, workers, requestTimeoutMillis, 0, timer, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create a pool.
+	 *
+	 * @param command              the engine command line
+	 * @param workers              the number of engine processes
+	 * @param requestTimeoutMillis the time a request may wait and run for
+	 * @param ponderMillis         the longest an engine ponders, 0 to disable
+	 * @param timer                the timer for request and ponder timeouts
+	 * @param executor             stops pondering engines off the timer thread
+	 */
+	public EnginePool(List<String> command, int workers, long requestTimeoutMillis, long ponderMillis,
+			HashedWheelTimer timer, Executor executor) {
+		if (workers < 1)
+			throw new IllegalArgumentException("Engine pool needs at least one worker.");
+
+		this.command = List.copyOf(command);
+		this.requestTimeoutMillis = requestTimeoutMillis;
+		this.ponderMillis = ponderMillis;
+		this.timer = timer;
+		this.executor = executor;
+		this.available = new Semaphore(workers, true);
+		this.workers = new Worker[workers];
+		for (int i = 0; i < workers; i++) {
+			this.workers[i] = new Worker(i);
+			idle.add(this.workers[i]);
+		}
+	}
+
+	/**
+	 * Run a task on the next free engine.
+	 *
+	 * @param <T>  the result type
+	 * @param task the task
+	 * @return the result of the task
+	 * @throws EngineException if no engine became free in time, the task took too
+	 *                         long, or the engine rejected a command
+	 * @throws IOException     if the engine process failed
+	 */
+	public <T> T execute(EngineTask<T> task) throws IOException, EngineException {
+		return execute(client -> 0, task);
+	}
+
+	/**
+	 * Run a task on the free engine with the highest preference. Engines that have
+	 * not been started yet score -1.
+	 *
+	 * @param <T>        the result type
+	 * @param preference scores an idle engine, higher is better
+	 * @param task       the task
+	 * @return the result of the task
+	 * @throws EngineException if no engine became free in time, the task took too
+	 *                         long, or the engine rejected a command
+	 * @throws IOException     if the engine process failed
+	 */
+	public <T> T execute(ToIntFunction<GTPClient> preference, EngineTask<T> task)
+			throws IOException, EngineException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(requestTimeoutMillis);
+
+		try {
+			if (!available.tryAcquire(requestTimeoutMillis, TimeUnit.MILLISECONDS))
+				throw new EngineException("Timed out waiting for a free engine.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new EngineException("Interrupted while waiting for a free engine.", e);
+		}
+
+		Worker worker = checkout(preference);
+
+		boolean healthy = false;
+		Timeout watchdog = null;
+		try {
+			GTPClient client = ensureStarted(worker);
+			long remaining = deadline - System.nanoTime();
+			watchdog = timer.schedule(() -> {
+				logger.warn("Engine worker {} exceeded the request timeout, restarting it", worker.id);
+				client.close();
+			}, remaining, TimeUnit.NANOSECONDS);
+
+			T result = task.run(client);
+			healthy = true;
+			return result;
+		} catch (EngineException e) {
+			healthy = true; // The engine answered, it just refused the command.
+			throw e;
+		} catch (IOException e) {
+			if (System.nanoTime() - deadline >= 0)
+				throw new EngineException("Engine request timed out.", e);
+			throw e;
+		} finally {
+			// If the watchdog already fired, the engine is being killed and must not be reused.
+			if (watchdog != null && !watchdog.cancel())
+				healthy = false;
+			release(worker, healthy);
+		}
+	}
+
+	/**
+	 * Run a task on the free engine with the highest preference without blocking
+	 * the caller. Cancelling the returned future, or completing it in any other way
+	 * before the task is done, kills the engine the task is running on so the
+	 * search stops using engine time. The pool then restarts that engine.
+	 *
+	 * @param <T>        the result type
+	 * @param preference scores an idle engine, higher is better
+	 * @param task       the task
+	 * @param executor   the executor that waits on the engine
+	 * @return the result of the task
+	 */
+	public <T> CompletableFuture<T> submit(ToIntFunction<GTPClient> preference, EngineTask<T> task,
+			Executor executor) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		Abort abort = new Abort();
+		future.whenComplete((result, e) -> abort.abort());
+
+		executor.execute(() -> {
+			try {
+				future.complete(execute(preference, client -> {
+					if (!abort.start(client))
+						throw new EngineException("Engine request was cancelled.");
+					try {
+						T result = task.run(client);
+						if (abort.finish())
+							throw new InterruptedIOException("Engine request was cancelled.");
+						return result;
+					} catch (EngineException e) {
+						// A command refused just before the engine was killed still leaves a dead engine.
+						if (abort.finish())
+							throw (IOException) new InterruptedIOException("Engine request was cancelled.").initCause(e);
+						throw e;
+					} catch (IOException | RuntimeException e) {
+						abort.finish();
+						throw e;
+					}
+				}));
+			} catch (Exception e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Let an engine keep searching after a task, for at most the ponder time. Call
+	 * it at the end of a task; the next request on the engine, or the end of the
+	 * ponder time, stops the search. Does nothing if pondering is disabled.
+	 *
+	 * @param client the engine the task is running on
+	 * @param player the player to move next
+	 * @throws IOException if the engine process failed
+	 */
+	public void ponder(GTPClient client, Player player) throws IOException {
+		if (ponderMillis <= 0)
+			return;
+
+		Worker worker = null;
+		for (Worker w : workers) {
+			synchronized (w) {
+				if (w.client == client)
+					worker = w;
+			}
+		}
+		if (worker == null)
+			return;
+
+		Worker owner = worker;
+		int id = client.startPondering(player);
+		// The timer only hands off, since the engine may be busy with the next request for a long time.
+		timer.schedule(() -> {
+			if (client.isPondering(id))
+				executor.execute(() -> stopPondering(owner, client, id));
+		}, ponderMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Get the command line the engines are started with.
+	 *
+	 * @return the command line
+	 */
+	public List<String> getCommand() {
+		return command;
+	}
+
+	/**
+	 * Get the number of engine processes in the pool.
+	 *
+	 * @return the number of workers
+	 */
+	public int getSize() {
+		return workers.length;
+	}
+
+	/**
+	 * Kill every engine process.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		for (Worker worker : workers) {
+			synchronized (worker) {
+				if (worker.client != null)
+					worker.client.close();
+			}
+		}
+	}
+
+	private Worker checkout(ToIntFunction<GTPClient> preference) {
+		synchronized (idle) {
+			Worker best = null;
+			int bestScore = Integer.MIN_VALUE;
+			for (Worker worker : idle) {
+				int score;
+				synchronized (worker) {
+					score = worker.client == null || !worker.client.isAlive() ? -1
+							: preference.applyAsInt(worker.client);
+				}
+				if (score > bestScore) {
+					best = worker;
+					bestScore = score;
+				}
+			}
+			idle.remove(best);
+			return best;
+		}
+	}
+
+	/**
+	 * Stop a search if its engine is idle. An engine in use is left alone, since
+	 * the request using it has already stopped the search.
+	 */
+	private void stopPondering(Worker worker, GTPClient client, int id) {
+		if (!available.tryAcquire())
+			return;
+		synchronized (idle) {
+			if (!idle.remove(worker)) {
+				available.release();
+				return;
+			}
+		}
+
+		boolean healthy = true;
+		try {
+			synchronized (worker) {
+				if (worker.client != client)
+					return;
+			}
+			if (client.isPondering(id))
+				client.stopPondering(id);
+		} catch (IOException e) {
+			healthy = false;
+		} catch (EngineException e) {
+			// The engine answered, it just refused the command.
+		} finally {
+			release(worker, healthy);
+		}
+	}
+
+	private GTPClient ensureStarted(Worker worker) throws IOException {
+		synchronized (worker) {
+			if (worker.client == null || !worker.client.isAlive()) {
+				if (worker.client != null)
+					logger.warn("Engine worker {} died, restarting it", worker.id);
+				worker.client = new GTPClient(command);
+				logger.info("Engine worker {} started: {}", worker.id, command);
+			}
+			return worker.client;
+		}
+	}
+
+	private void release(Worker worker, boolean healthy) {
+		if (!healthy) {
+			// The engine may be mid-response or dead, so it cannot be trusted with the next request.
+			synchronized (worker) {
+				if (worker.client != null)
+					worker.client.close();
+				worker.client = null;
+			}
+		}
+
+		synchronized (idle) {
+			idle.push(worker);
+		}
+		available.release();
+	}
+}
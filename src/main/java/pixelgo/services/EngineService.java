@@ -2,27 +2,258 @@ package pixelgo.services;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import pixelgo.book.OpeningBook;
+import pixelgo.dtos.AnalysisResult;
+import pixelgo.dtos.CacheStats;
 import pixelgo.exceptions.EngineException;
 import pixelgo.game.Move;
 import pixelgo.game.Player;
 
+/**
+ * Generate moves with the opening book, the move cache and then the configured
+ * engine backend: a pool of GTP engines (<code>gtp</code>) or the KataGo
+ * analysis engine (<code>analysis</code>).
+ * 
+ * <p>
+ * Every search gets a budget: the engine is told how long it may think, from
+ * the configured move time and the deadline of the request, and how many visits
+ * it may use. The deadline itself is enforced here. When a search fails or
+ * misses its deadline, or too many searches failed recently and the circuit
+ * breaker is open, the move comes from the {@link FallbackPolicy} instead.
+ * 
+ * @author jacky
+ *
+ */
 @Service
 public class EngineService {
-	private GTPClient client;
+	private static final Logger logger = LoggerFactory.getLogger(EngineService.class);
 	
-	public EngineService(GTPClient client) {
-		this.client = client;
+	private EnginePool pool;
+	private AnalysisEngine analysisEngine;
+	private boolean useAnalysis;
+	private Executor executor;
+	private long defaultTimeoutMillis;
+	private MoveCache cache;
+	private OpeningBook book;
+	private String settings;
+	private long moveTimeMillis;
+	private int maxVisits;
+	private long deadlineMarginMillis;
+	private FallbackPolicy fallback;
+	private CircuitBreaker breaker;
+	
+	@Autowired
+	public EngineService(EnginePool pool, AnalysisEngine analysisEngine,
+			@Value("${pixelgo.engine.backend:gtp}") String backend, @Qualifier("engineExecutor") Executor executor,
+			@Value("${pixelgo.engine.request-timeout-millis:60000}") long defaultTimeoutMillis,
+			@Value("${pixelgo.engine.move-time-millis:0}") long moveTimeMillis,
+			@Value("${pixelgo.engine.max-visits:0}") int maxVisits,
+			@Value("${pixelgo.engine.deadline-margin-millis:500}") long deadlineMarginMillis,
+			@Value("${pixelgo.engine.fallback:true}") boolean fallback, FallbackPolicy fallbackPolicy,
+			@Value("${pixelgo.engine.breaker-failures:5}") int breakerFailures,
+			@Value("${pixelgo.engine.breaker-open-millis:30000}") long breakerOpenMillis, MoveCache cache,
+			OpeningBook book) {
+		this(pool, analysisEngine, backend, executor, defaultTimeoutMillis, moveTimeMillis, maxVisits,
+				deadlineMarginMillis, fallback ? fallbackPolicy : null, new CircuitBreaker(breakerFailures, breakerOpenMillis),
+				cache, book);
+	}
+	
+	/**
+	 * Create a service.
+	 * 
+	 * @param fallback the move source when the engine fails, or null to fail the
+	 *                 request instead
+	 */
+	public EngineService(EnginePool pool, AnalysisEngine analysisEngine, String backend, Executor executor,
+			long defaultTimeoutMillis, long moveTimeMillis, int maxVisits, long deadlineMarginMillis,
+			FallbackPolicy fallback, CircuitBreaker breaker, MoveCache cache, OpeningBook book) {
+		if (!backend.equals("gtp") && !backend.equals("analysis"))
+			throw new IllegalArgumentException("Unknown engine backend: " + backend);
+		
+		this.pool = pool;
+		this.analysisEngine = analysisEngine;
+		this.useAnalysis = backend.equals("analysis");
+		this.executor = executor;
+		this.defaultTimeoutMillis = defaultTimeoutMillis;
+		this.cache = cache;
+		this.book = book;
+		this.moveTimeMillis = moveTimeMillis;
+		this.maxVisits = maxVisits;
+		this.deadlineMarginMillis = deadlineMarginMillis;
+		this.fallback = fallback;
+		this.breaker = breaker;
+		this.settings = backend + " " + String.join(" ", useAnalysis ? analysisEngine.getCommand() : pool.getCommand());
+	}
+	
+	public Move generateMove(Player player, List<Move> moves, int boardSize) throws IOException, EngineException {
+		try {
+			return generateMoveAsync(player, moves, boardSize, 0).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new EngineException("Interrupted while waiting for the engine.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			if (e.getCause() instanceof EngineException)
+				throw (EngineException) e.getCause();
+			throw new EngineException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Generate a move without blocking the caller. The search is abandoned, and
+	 * its engine restarted, if the future is cancelled or the deadline passes
+	 * first; the future then completes with a fallback move, or fails with an
+	 * {@link EngineException} if there is no fallback.
+	 * 
+	 * @param player        the player to move
+	 * @param moves         the moves played so far
+	 * @param boardSize     the board size
+	 * @param timeoutMillis the deadline, or 0 for the default
+	 * @return the generated move
+	 */
+	public CompletableFuture<Move> generateMoveAsync(Player player, List<Move> moves, int boardSize,
+			long timeoutMillis) {
+		Move bookMove = book.lookup(player, moves, boardSize);
+		if (bookMove != null)
+			return CompletableFuture.completedFuture(bookMove);
+		
+		long timeout = timeout(timeoutMillis);
+		long budget = moveTimeMillis;
+		if (budget > 0 || timeoutMillis > 0) {
+			// Leave the engine enough of the deadline to send its answer.
+			long remaining = Math.max(timeout - deadlineMarginMillis, 1);
+			budget = budget > 0 ? Math.min(budget, remaining) : remaining;
+		}
+		
+		MoveCache.Position position = cache.locate(player, moves, boardSize,
+				settings + " " + budget + " " + maxVisits);
+		Move cached = position == null ? null : cache.get(position);
+		if (cached != null)
+			return CompletableFuture.completedFuture(cached);
+		
+		if (!breaker.tryAcquire())
+			return recover(CompletableFuture.failedFuture(new EngineException("Engine is unavailable.")), player,
+					moves, boardSize);
+		
+		CompletableFuture<Move> result = withDeadline(search(player, moves, boardSize, budget), timeout);
+		result.whenComplete((move, e) -> {
+			if (e == null) {
+				breaker.recordSuccess();
+			} else if (e instanceof CancellationException) {
+				breaker.release();
+			} else {
+				breaker.recordFailure();
+			}
+		});
+		if (position != null)
+			result.thenAccept(move -> cache.put(position, move));
+		return recover(result, player, moves, boardSize);
 	}
 	
-	public Move generateMove(Player player, List<Move> moves) throws IOException, EngineException {
-		client.clearBoard();
-		for (Move move: moves) {
-			client.playMove(move);
+	/**
+	 * Analyze a position with the analysis engine, whichever backend generates
+	 * moves.
+	 * 
+	 * @param player        the player to move
+	 * @param moves         the moves played so far
+	 * @param boardSize     the board size
+	 * @param ownership     true to include the ownership of each point
+	 * @param timeoutMillis the deadline, or 0 for the default
+	 * @return the analysis
+	 */
+	public CompletableFuture<AnalysisResult> analyze(Player player, List<Move> moves, int boardSize,
+			boolean ownership, long timeoutMillis) {
+		return withDeadline(analysisEngine.analyze(player, moves, boardSize, ownership), timeout(timeoutMillis));
+	}
+	
+	public CacheStats getCacheStats() {
+		return cache.getStats();
+	}
+	
+	public CircuitBreaker.State getBreakerState() {
+		return breaker.getState();
+	}
+	
+	private CompletableFuture<Move> search(Player player, List<Move> moves, int boardSize, long budget) {
+		if (useAnalysis) {
+			CompletableFuture<AnalysisResult> analysis = analysisEngine.analyze(player, moves, boardSize, false,
+					budget, maxVisits);
+			CompletableFuture<Move> move = analysis.thenApply(AnalysisResult::move);
+			move.whenComplete((m, e) -> analysis.cancel(true));
+			return move;
 		}
 		
-		return client.generateMove(player);
+		// Prefer the engine that already has the longest part of the game loaded, and leave engines pondering
+		// other games alone unless no other engine is free.
+		return pool.submit(client -> {
+			int shared = client.getSharedMoves(boardSize, moves);
+			return shared < 0 && client.isPondering() ? -2 : shared;
+		}, client -> {
+			client.setBudget(budget, maxVisits);
+			client.loadPosition(boardSize, moves);
+			Move move = client.generateMove(player);
+			pool.ponder(client, player.opponent);
+			return move;
+		}, executor);
+	}
+	
+	private long timeout(long timeoutMillis) {
+		return timeoutMillis > 0 ? Math.min(timeoutMillis, defaultTimeoutMillis) : defaultTimeoutMillis;
+	}
+	
+	/**
+	 * Replace a failed search with a fallback move, keeping cancellation linked.
+	 */
+	private CompletableFuture<Move> recover(CompletableFuture<Move> future, Player player, List<Move> moves,
+			int boardSize) {
+		if (fallback == null)
+			return future;
+		
+		CompletableFuture<Move> result = new CompletableFuture<>();
+		future.whenComplete((move, e) -> {
+			if (e == null) {
+				result.complete(move);
+			} else if (e instanceof CancellationException) {
+				result.completeExceptionally(e);
+			} else {
+				logger.warn("Engine failed, using a fallback move: {}", e.getMessage());
+				result.complete(fallback.chooseMove(player, moves, boardSize));
+			}
+		});
+		result.whenComplete((move, e) -> future.cancel(true));
+		return result;
+	}
+	
+	private <T> CompletableFuture<T> withDeadline(CompletableFuture<T> future, long timeout) {
+		future.orTimeout(timeout, TimeUnit.MILLISECONDS);
+		
+		// Dependent stages do not pass cancellation back, so the result is linked to the search by hand.
+		CompletableFuture<T> result = new CompletableFuture<>();
+		future.whenComplete((value, e) -> {
+			if (e instanceof TimeoutException) {
+				result.completeExceptionally(new EngineException("Engine request timed out.", e));
+			} else if (e != null) {
+				result.completeExceptionally(e);
+			} else {
+				result.complete(value);
+			}
+		});
+		result.whenComplete((value, e) -> future.cancel(true));
+		return result;
 	}
 }
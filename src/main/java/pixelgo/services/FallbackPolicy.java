@@ -0,0 +1,125 @@
+package pixelgo.services;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.stereotype.Component;
+
+import pixelgo.game.Board;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+import pixelgo.game.TacticalReader;
+
+/**
+ * A move source that needs no engine, used when the engine cannot answer in
+ * time. It saves its own stones in atari if they can escape, otherwise captures
+ * stones that cannot escape, as read by a {@link TacticalReader}. Failing that
+ * it plays a random legal move that does not fill one of its own eyes, and
+ * passes when there is none.
+ *
+ * @author jacky
+ *
+ */
+@Component
+public class FallbackPolicy {
+	/**
+	 * The reader and scratch space of a thread for one board size.
+	 */
+	private static final class Scratch {
+		private final TacticalReader reader;
+		private final boolean[] seen;
+		private final int[] chain;
+
+		private Scratch(BoardGeometry geometry) {
+			reader = new TacticalReader(geometry);
+			seen = new boolean[geometry.area()];
+			chain = new int[geometry.area()];
+		}
+	}
+
+	private static final ThreadLocal<Scratch[]> scratches = ThreadLocal
+			.withInitial(() -> new Scratch[BoardGeometry.MAX_SIZE + 1]);
+
+	/**
+	 * Choose a move.
+	 *
+	 * @param player    the player to move
+	 * @param moves     the moves played so far
+	 * @param boardSize the board size
+	 * @return the move
+	 */
+	public Move chooseMove(Player player, List<Move> moves, int boardSize) {
+		Board board = new Board(boardSize);
+		BoardGeometry geometry = board.getGeometry();
+		for (Move move : moves) {
+			if (!move.vertex().equalsIgnoreCase("pass"))
+				board.tryPlaceStone(move.player(), geometry.point(move.vertex()));
+		}
+
+		char color = player == Player.BLACK ? Board.BLACK : Board.WHITE;
+		Scratch[] sizes = scratches.get();
+		if (sizes[boardSize] == null)
+			sizes[boardSize] = new Scratch(geometry);
+		Scratch scratch = sizes[boardSize];
+		scratch.reader.load(board.getBoard());
+		int tactical = findTacticalMove(scratch, geometry.area(), color);
+		if (tactical >= 0 && board.tryPlaceStone(player, tactical).isApplied())
+			return new Move(player, geometry.vertex(tactical));
+
+		// Visit the points in a random order by stepping through them with a stride coprime to the area.
+		int area = geometry.area();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int start = random.nextInt(area);
+		int stride = 1 + random.nextInt(area);
+		while (gcd(stride, area) != 1) {
+			stride++;
+		}
+
+		for (int i = 0, point = start; i < area; i++, point = (point + stride) % area) {
+			if (board.get(point) != Board.EMPTY || board.isEye(color, point))
+				continue;
+			if (board.tryPlaceStone(player, point).isApplied())
+				return new Move(player, geometry.vertex(point));
+		}
+		return new Move(player, "pass");
+	}
+
+	/**
+	 * Find a move that saves a chain of the player in atari, or failing that one
+	 * that captures an opposing chain. Each chain is read once, and the reads
+	 * share the node budget of the reader.
+	 *
+	 * @return the flattened index of the move, or -1 if there is none
+	 */
+	private static int findTacticalMove(Scratch scratch, int area, char color) {
+		TacticalReader reader = scratch.reader;
+		Arrays.fill(scratch.seen, false);
+		int capture = -1;
+		for (int point = 0; point < area; point++) {
+			char stone = reader.get(point);
+			if (stone == Board.EMPTY || scratch.seen[point])
+				continue;
+
+			int size = reader.getChain(point, scratch.chain);
+			for (int i = 0; i < size; i++) {
+				scratch.seen[scratch.chain[i]] = true;
+			}
+
+			int liberties = reader.getLiberties(point);
+			if (stone == color && liberties == 1) {
+				int escape = reader.findEscape(point);
+				if (escape >= 0)
+					return escape;
+			} else if (stone != color && liberties <= 2 && capture < 0) {
+				capture = reader.findCapture(point);
+			}
+		}
+		return capture;
+	}
+
+	private static int gcd(int a, int b) {
+		return b == 0 ? a : gcd(b, a % b);
+	}
+}
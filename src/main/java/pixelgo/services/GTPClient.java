@@ -2,61 +2,324 @@ package pixelgo.services;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.EOFException;
 import java.io.IOException;
-
-import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.List;
 
 import pixelgo.exceptions.EngineException;
 import pixelgo.game.Move;
 import pixelgo.game.Player;
 
 /**
- * A class for interfacing with the KataGo GTP engine.
- * 
+ * A class for interfacing with a single KataGo GTP engine process. Instances
+ * are handed out by {@link EnginePool}, which makes sure only one request uses
+ * a client at a time.
+ *
+ * <p>
+ * The client remembers the board size and the moves the engine has been given
+ * since the board was last cleared, so a request for a position that extends
+ * the loaded one only has to send the new moves.
+ *
+ * <p>
+ * Commands are numbered and can be sent in batches: the whole batch is written
+ * with a single flush, and the replies are read afterwards and matched by id.
+ * Setting up a position therefore costs one round trip however many moves it
+ * has.
+ *
  * @author jacky
  *
  */
-@Component
-public class GTPClient {	
-	private BufferedReader in;
-	private BufferedWriter out;
-	
-	public GTPClient() throws IOException {
-		ProcessBuilder processBuilder = new ProcessBuilder("katago.exe", "gtp");
-		Process process = processBuilder.start();
-		processBuilder.redirectErrorStream(true);
-		
+public class GTPClient implements AutoCloseable {
+	private static final int UNLIMITED_VISITS = 1 << 30;
+
+	private final Process process;
+	private final BufferedReader in;
+	private final BufferedWriter out;
+	private final List<Move> moves = new ArrayList<>();
+	private int boardSize;
+	private int nextId = 1;
+	private volatile int ponderId;
+	private long moveTimeMillis;
+	private int maxVisits;
+
+	/**
+	 * Start an engine process.
+	 *
+	 * @param command the command line of the engine, e.g. <code>katago gtp</code>
+	 * @throws IOException if the process could not be started
+	 */
+	public GTPClient(List<String> command) throws IOException {
+		ProcessBuilder processBuilder = new ProcessBuilder(command);
+		processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT); // Keep engine logs out of the GTP stream.
+		process = processBuilder.start();
+
 		in = process.inputReader();
 		out = process.outputWriter();
 	}
-	
-	public void clearBoard() throws IOException, EngineException {
+
+	public synchronized void setBoardSize(int size) throws IOException, EngineException {
+		// Forget the position first, the engine may have cleared it even if the command fails.
+		boardSize = 0;
+		moves.clear();
+		executeCommand("boardsize " + size);
+		boardSize = size;
+	}
+
+	public synchronized void clearBoard() throws IOException, EngineException {
+		moves.clear();
 		executeCommand("clear_board");
 	}
-	
-	public Move generateMove(Player player) throws IOException, EngineException {
-		String result = executeCommand("genmove " + player);
-		return new Move(player, result);
+
+	/**
+	 * Find how many moves of a position the engine already has.
+	 *
+	 * @param size  the board size of the position
+	 * @param moves the moves of the position
+	 * @return the number of moves that do not have to be sent again, or -1 if the
+	 *         loaded position is not a prefix of the given one
+	 */
+	public synchronized int getSharedMoves(int size, List<Move> moves) {
+		if (size != boardSize || this.moves.size() > moves.size())
+			return -1;
+		for (int i = 0; i < this.moves.size(); i++) {
+			if (!this.moves.get(i).equals(moves.get(i)))
+				return -1;
+		}
+		return this.moves.size();
+	}
+
+	/**
+	 * Bring the engine to a position, sending only the moves it does not already
+	 * have. The board is cleared and the moves replayed if the position diverges
+	 * from the loaded one, e.g. after a takeback.
+	 *
+	 * @param size  the board size
+	 * @param moves the moves of the position
+	 * @throws IOException     if the engine process failed
+	 * @throws EngineException if the engine rejected a move
+	 */
+	public synchronized void loadPosition(int size, List<Move> moves) throws IOException, EngineException {
+		int shared = getSharedMoves(size, moves);
+		List<String> commands = new ArrayList<>(moves.size() - Math.max(shared, 0) + 2);
+		if (shared < 0) {
+			commands.add("boardsize " + size);
+			commands.add("clear_board");
+			shared = 0;
+		}
+		for (Move move : moves.subList(shared, moves.size())) {
+			commands.add(playCommand(move));
+		}
+		if (commands.isEmpty())
+			return;
+
+		// Forget the position until the whole batch succeeded, the engine keeps going after a rejected move.
+		boardSize = 0;
+		this.moves.clear();
+
+		for (GTPResponse response : executeBatch(commands)) {
+			if (!response.success())
+				throw new EngineException(response.text());
+		}
+
+		boardSize = size;
+		this.moves.addAll(moves);
+	}
+
+	/**
+	 * Limit how long the engine searches each move. The time is set with
+	 * <code>time_settings</code> as a byo-yomi period of one move, and the visits
+	 * with KataGo's <code>kata-set-param maxVisits</code>. Nothing is sent for a
+	 * limit that is already in effect.
+	 *
+	 * @param moveTimeMillis the search time per move, or 0 for no limit
+	 * @param maxVisits      the visits per move, or 0 for no limit
+	 * @throws IOException     if the engine process failed
+	 * @throws EngineException if the engine rejected a limit
+	 */
+	public synchronized void setBudget(long moveTimeMillis, int maxVisits) throws IOException, EngineException {
+		List<String> commands = new ArrayList<>(2);
+		if (moveTimeMillis != this.moveTimeMillis) {
+			// Byo-yomi stones of 0 means no time limit.
+			commands.add(moveTimeMillis > 0 ? "time_settings 0 " + moveTimeMillis / 1000.0 + " 1" : "time_settings 0 1 0");
+		}
+		if (maxVisits != this.maxVisits)
+			commands.add("kata-set-param maxVisits " + (maxVisits > 0 ? maxVisits : UNLIMITED_VISITS));
+		if (commands.isEmpty())
+			return;
+
+		// Assume the old limits are gone until the engine accepted the new ones.
+		this.moveTimeMillis = -1;
+		this.maxVisits = -1;
+		for (GTPResponse response : executeBatch(commands)) {
+			if (!response.success())
+				throw new EngineException(response.text());
+		}
+		this.moveTimeMillis = moveTimeMillis;
+		this.maxVisits = maxVisits;
+	}
+
+	/**
+	 * Send commands without waiting for each reply. The engine runs them in order
+	 * and keeps going after a command fails, so every response is returned.
+	 *
+	 * @param commands the commands, without ids
+	 * @return the responses, in the order of the commands
+	 * @throws IOException if the engine process failed or answered out of order
+	 */
+	public synchronized List<GTPResponse> executeBatch(List<String> commands) throws IOException {
+		ponderId = 0; // Any command ends the analysis, whose output is then skipped below.
+		int firstId = nextId;
+		for (String command : commands) {
+			out.append(Integer.toString(nextId++)).append(' ').append(command).append('\n');
+		}
+		out.flush();
+
+		List<GTPResponse> responses = new ArrayList<>(commands.size());
+		while (responses.size() < commands.size()) {
+			GTPResponse response = readResponse();
+			int expected = firstId + responses.size();
+			if (response.id() < expected)
+				continue; // Left over from an earlier, abandoned command.
+			if (response.id() != expected)
+				throw new IOException("Expected a response to command " + expected + " but got " + response.id() + ".");
+			responses.add(response);
+		}
+		return responses;
+	}
+
+	/**
+	 * Get the commands the engine supports.
+	 *
+	 * @return the command names
+	 * @throws IOException     if the engine process failed
+	 * @throws EngineException if the engine rejected the command
+	 */
+	public List<String> listCommands() throws IOException, EngineException {
+		return executeCommand("list_commands").lines();
+	}
+
+	/**
+	 * Kill the engine process. A request blocked on the engine fails with an
+	 * {@link IOException}.
+	 */
+	@Override
+	public void close() {
+		process.destroyForcibly();
 	}
-	
-	public void playMove(Move move) throws IOException, EngineException {
-		String player = move.player() == Player.BLACK ? "B" : "W";
-		executeCommand("play " + player + " " + move.vertex());
+
+	public synchronized Move generateMove(Player player) throws IOException, EngineException {
+		Move move = new Move(player, executeCommand("genmove " + player).text());
+		if (!move.vertex().equalsIgnoreCase("resign"))
+			moves.add(move); // genmove also plays the move on the engine's board.
+		return move;
 	}
-	
-	private synchronized String executeCommand(String command) throws IOException, EngineException {
-		out.append(command + "\n");
+
+	/**
+	 * Find if the engine is searching in the background.
+	 *
+	 * @return true if the engine is pondering
+	 */
+	public boolean isPondering() {
+		return ponderId != 0;
+	}
+
+	/**
+	 * Let the engine search the current position in the background with KataGo's
+	 * <code>kata-analyze</code>, e.g. while the opponent is thinking. The search
+	 * tree is kept when the next move is played, so the following
+	 * <code>genmove</code> starts warm. The next command stops the search.
+	 *
+	 * @param player the player to move
+	 * @return an id for {@link #stopPondering(int)}
+	 * @throws IOException if the engine process failed
+	 */
+	public synchronized int startPondering(Player player) throws IOException {
+		int id = nextId++;
+		out.append(Integer.toString(id)).append(" kata-analyze ").append(player == Player.BLACK ? "B" : "W")
+				.append(" interval 1000\n");
 		out.flush();
-		
-		String res;
-		while ((res = in.readLine().trim()).equals("")); // Discard blank lines.
-		
-		if (res.charAt(0) == '?') {
-			String message = res.substring(1).trim();
-			while ((res = in.readLine().trim()).equals("")); // Discard blank lines.
-			throw new EngineException(message);
+		ponderId = id;
+		return id;
+	}
+
+	/**
+	 * Find if a background search is still running. Does not wait for a command in
+	 * progress, so it is safe to call from a timer.
+	 *
+	 * @param id the id returned when the search was started
+	 * @return true if the engine is still pondering under that id
+	 */
+	public boolean isPondering(int id) {
+		return ponderId == id;
+	}
+
+	/**
+	 * Stop a background search, unless it already ended.
+	 *
+	 * @param id the id returned when the search was started
+	 * @throws IOException     if the engine process failed
+	 * @throws EngineException if the engine rejected the command
+	 */
+	public synchronized void stopPondering(int id) throws IOException, EngineException {
+		if (ponderId == id)
+			executeCommand("protocol_version");
+	}
+
+	/**
+	 * Find if the engine process is still running.
+	 *
+	 * @return true if the process is alive
+	 */
+	public boolean isAlive() {
+		return process.isAlive();
+	}
+
+	public synchronized void playMove(Move move) throws IOException, EngineException {
+		executeCommand(playCommand(move));
+		moves.add(move);
+	}
+
+	private static String playCommand(Move move) {
+		return "play " + (move.player() == Player.BLACK ? "B" : "W") + " " + move.vertex();
+	}
+
+	private GTPResponse executeCommand(String command) throws IOException, EngineException {
+		GTPResponse response = executeBatch(List.of(command)).get(0);
+		if (!response.success())
+			throw new EngineException(response.text());
+		return response;
+	}
+
+	/**
+	 * Read one response: a line starting with <code>=</code> or <code>?</code>
+	 * and the command id, then any further lines up to a blank line.
+	 */
+	private GTPResponse readResponse() throws IOException {
+		String line;
+		while ((line = readLine()).isEmpty()); // Discard blank lines between responses.
+
+		char status = line.charAt(0);
+		if (status != '=' && status != '?')
+			throw new IOException("Malformed engine response: " + line);
+
+		int end = 1;
+		while (end < line.length() && Character.isDigit(line.charAt(end))) {
+			end++;
 		}
+		int id = end > 1 ? Integer.parseInt(line.substring(1, end)) : -1;
+
+		StringBuilder text = new StringBuilder(line.substring(end).trim());
+		while (!(line = readLine()).isEmpty()) {
+			text.append('\n').append(line);
+		}
+		return new GTPResponse(id, status == '=', text.toString());
+	}
 
-		return res.substring(1).trim();
+	private String readLine() throws IOException {
+		String line = in.readLine();
+		if (line == null)
+			throw new EOFException("Engine process closed its output.");
+		return line.trim();
 	}
 }
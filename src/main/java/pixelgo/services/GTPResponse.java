@@ -0,0 +1,21 @@
+package pixelgo.services;
+
+import java.util.List;
+
+/**
+ * A response to a numbered GTP command. Multi-line responses, such as the reply
+ * to <code>list_commands</code>, keep their line breaks in the text.
+ *
+ * @author jacky
+ *
+ */
+public record GTPResponse(int id, boolean success, String text) {
+	/**
+	 * Get the lines of the response.
+	 *
+	 * @return the lines, empty if the response has no text
+	 */
+	public List<String> lines() {
+		return text.isEmpty() ? List.of() : List.of(text.split("\n"));
+	}
+}
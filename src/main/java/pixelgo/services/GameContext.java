@@ -1,24 +1,126 @@
 package pixelgo.services;
 
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import pixelgo.dtos.OwnershipEstimate;
 
 import pixelgo.game.Game;
+import pixelgo.game.KoRule;
 import pixelgo.game.Player;
+import pixelgo.game.TimeControl;
+import pixelgo.services.HashedWheelTimer.Timeout;
 
 public class GameContext {
+	public static final int DEFAULT_BOARD_SIZE = 19;
+
 	private final AtomicReference<String> blackSessionId = new AtomicReference<>();
-	private final Game game = new Game(19);
+	private final Game game;
 
 	private final AtomicReference<String> whiteSessionId = new AtomicReference<>();
 
+	/**
+	 * Reconnect tokens reserve a seat for its player across WebSocket sessions.
+	 */
+	private final AtomicReference<UUID> blackToken = new AtomicReference<>();
+	private final AtomicReference<UUID> whiteToken = new AtomicReference<>();
+
+	private final AtomicReference<Timeout> flagTimeout = new AtomicReference<>();
+	private final AtomicReference<Timeout> blackGraceTimeout = new AtomicReference<>();
+	private final AtomicReference<Timeout> whiteGraceTimeout = new AtomicReference<>();
+	private volatile long lastActivity = System.currentTimeMillis();
+
+	/**
+	 * The seat played by the engine, or null if both seats are for people.
+	 */
+	private final Player bot;
+	private final AtomicReference<Future<?>> botMove = new AtomicReference<>();
+
+	/**
+	 * The latest ownership estimate and the move number it is for.
+	 */
+	private int ownershipMove = -1;
+	private CompletableFuture<OwnershipEstimate> ownership;
+
+	public GameContext() {
+		this(DEFAULT_BOARD_SIZE);
+	}
+
+	public GameContext(int boardSize) {
+		this(boardSize, null);
+	}
+
+	public GameContext(int boardSize, TimeControl timeControl) {
+		this(boardSize, timeControl, null);
+	}
+
+	/**
+	 * Create a game where the server plays one of the seats. The bot's seat is
+	 * taken from the start, so the game starts as soon as a person takes the
+	 * other one.
+	 * 
+	 * @param boardSize   the board size
+	 * @param timeControl the time settings, or null for an untimed game
+	 * @param bot         the seat played by the engine, or null for none
+	 */
+	public GameContext(int boardSize, TimeControl timeControl, Player bot) {
+		this(boardSize, timeControl, bot, KoRule.POSITIONAL);
+	}
+
+	/**
+	 * Create a game with a ko rule.
+	 * 
+	 * @param boardSize   the board size
+	 * @param timeControl the time settings, or null for an untimed game
+	 * @param bot         the seat played by the engine, or null for none
+	 * @param koRule      the rule against repeating positions
+	 */
+	public GameContext(int boardSize, TimeControl timeControl, Player bot, KoRule koRule) {
+		game = new Game(boardSize, timeControl, koRule);
+		this.bot = bot;
+		if (bot != null)
+			(bot == Player.BLACK ? blackToken : whiteToken).set(UUID.randomUUID());
+	}
+
 	public String getBlackSessionId() {
 		return blackSessionId.get();
 	}
 
+	/**
+	 * Get the seat played by the engine.
+	 * 
+	 * @return the bot's player, or null if the game has no bot
+	 */
+	public Player getBot() {
+		return bot;
+	}
+
 	public Game getGame() {
 		return game;
 	}
 
+	/**
+	 * Get the last time a player interacted with the game.
+	 * 
+	 * @return the time in milliseconds
+	 */
+	public long getLastActivity() {
+		return lastActivity;
+	}
+
+	/**
+	 * Get the token a player can use to reclaim their seat.
+	 * 
+	 * @param player the player
+	 * @return the reconnect token, or null if the seat has not been taken
+	 */
+	public UUID getReconnectToken(Player player) {
+		return player == Player.BLACK ? blackToken.get() : whiteToken.get();
+	}
+
 	public Player getPlayer(String sessionId) {
 		if (sessionId.equals(blackSessionId.get())) {
 			return Player.BLACK;
@@ -33,16 +135,124 @@ public class GameContext {
 		return whiteSessionId.get();
 	}
 
-	public void removePlayer(String sessionId) {
-		if (blackSessionId.compareAndSet(sessionId, null) || whiteSessionId.compareAndSet(sessionId, null)) {
-			game.stopGame();
+	/**
+	 * Find if a player's seat currently has a WebSocket session.
+	 * 
+	 * @param player the player
+	 * @return true if the player is connected
+	 */
+	public boolean isConnected(Player player) {
+		if (player == bot)
+			return true;
+		return (player == Player.BLACK ? blackSessionId.get() : whiteSessionId.get()) != null;
+	}
+
+	/**
+	 * Give a seat to a new session of the player holding the reconnect token.
+	 * 
+	 * @param token     the reconnect token
+	 * @param sessionId the new session id
+	 * @return the player whose seat was reclaimed, or null if the token is not
+	 *         valid for this game
+	 */
+	public Player reconnect(UUID token, String sessionId) {
+		if (token.equals(blackToken.get())) {
+			blackSessionId.set(sessionId);
+			return Player.BLACK;
+		} else if (token.equals(whiteToken.get())) {
+			whiteSessionId.set(sessionId);
+			return Player.WHITE;
 		}
+
+		return null;
+	}
+
+	/**
+	 * Replace the pending bot move, cancelling the previous one.
+	 * 
+	 * @param move the new move request, or null to only cancel
+	 */
+	public void replaceBotMove(Future<?> move) {
+		Future<?> previous = botMove.getAndSet(move);
+		if (previous != null)
+			previous.cancel(true);
+	}
+
+	/**
+	 * Get the ownership estimate of a move, starting it unless it is known.
+	 * Requests for an estimate that is still running are folded into it.
+	 * 
+	 * @param moveNumber the move number
+	 * @param estimator  starts the estimate
+	 * @return the estimate, or null if it is already running for an earlier
+	 *         request
+	 */
+	public synchronized CompletableFuture<OwnershipEstimate> getOwnership(int moveNumber,
+			Supplier<CompletableFuture<OwnershipEstimate>> estimator) {
+		if (moveNumber == ownershipMove)
+			return ownership.isDone() ? ownership : null;
+
+		ownershipMove = moveNumber;
+		ownership = estimator.get();
+		return ownership;
+	}
+
+	/**
+	 * Replace the pending flag-fall check, cancelling the previous one.
+	 * 
+	 * @param timeout the new check, or null to only cancel
+	 */
+	public void replaceFlagTimeout(Timeout timeout) {
+		Timeout previous = flagTimeout.getAndSet(timeout);
+		if (previous != null)
+			previous.cancel();
+	}
+
+	/**
+	 * Replace the pending abandonment check of a player, cancelling the previous
+	 * one.
+	 * 
+	 * @param player  the player
+	 * @param timeout the new check, or null to only cancel
+	 */
+	public void replaceGraceTimeout(Player player, Timeout timeout) {
+		AtomicReference<Timeout> ref = player == Player.BLACK ? blackGraceTimeout : whiteGraceTimeout;
+		Timeout previous = ref.getAndSet(timeout);
+		if (previous != null)
+			previous.cancel();
+	}
+
+	/**
+	 * Record that a player interacted with the game.
+	 */
+	public void touch() {
+		lastActivity = System.currentTimeMillis();
+	}
+
+	/**
+	 * Detach a session from its seat. The seat stays reserved for the reconnect
+	 * token.
+	 * 
+	 * @param sessionId the session id
+	 * @return the player who disconnected, or null if the session had no seat
+	 */
+	public Player removePlayer(String sessionId) {
+		if (blackSessionId.compareAndSet(sessionId, null)) {
+			return Player.BLACK;
+		} else if (whiteSessionId.compareAndSet(sessionId, null)) {
+			return Player.WHITE;
+		}
+
+		return null;
 	}
 
 	public int setBlackSessionId(String sessionId) {
-		if (!blackSessionId.compareAndSet(null, sessionId)) {
+		if (!blackToken.compareAndSet(null, UUID.randomUUID())) {
 			return 0;
-		} else if (whiteSessionId.get() != null) {
+		}
+
+		blackSessionId.set(sessionId);
+		if (whiteToken.get() != null) {
 			game.startGame();
 			return 2;
 		}
@@ -50,11 +260,13 @@ public class GameContext {
 		return 1;
 	}
 
-
 	public int setWhiteSessionId(String sessionId) {
-		if (!whiteSessionId.compareAndSet(null, sessionId)) {
+		if (!whiteToken.compareAndSet(null, UUID.randomUUID())) {
 			return 0;
-		} else if (blackSessionId.get() != null) {
+		}
+
+		whiteSessionId.set(sessionId);
+		if (blackToken.get() != null) {
 			game.startGame();
 			return 2;
 		}
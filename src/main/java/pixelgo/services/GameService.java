@@ -1,41 +1,72 @@
 package pixelgo.services;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import pixelgo.dtos.ClockState;
 import pixelgo.dtos.GameCommand;
 import pixelgo.dtos.GameResult;
 import pixelgo.dtos.GameState;
-import pixelgo.exceptions.ClientOutOfSyncException;
+import pixelgo.dtos.OwnershipEstimate;
+import pixelgo.dtos.ResyncResponse;
+import pixelgo.dtos.ReviewResponse;
+import pixelgo.dtos.TerritoryEstimate;
 import pixelgo.exceptions.GameFullException;
 import pixelgo.exceptions.GameNotFoundException;
-import pixelgo.exceptions.GameNotStartedException;
-import pixelgo.exceptions.InvalidMoveException;
-import pixelgo.exceptions.PlayerOutOfTurnException;
+import pixelgo.exceptions.InvalidBoardSizeException;
+import pixelgo.exceptions.InvalidMoveNumberException;
+import pixelgo.exceptions.InvalidReconnectTokenException;
+import pixelgo.game.BoardGeometry;
 import pixelgo.game.Game;
+import pixelgo.game.GameClock;
+import pixelgo.game.KoRule;
 import pixelgo.game.Move;
+import pixelgo.game.MoveResult;
 import pixelgo.game.Player;
+import pixelgo.game.TimeControl;
+import pixelgo.game.Violation;
 
 @Service
 public class GameService {
 	private static final Logger logger = LoggerFactory.getLogger(GameService.class);
 	private final GameRegistry gameRegistry;
 	private final SimpMessagingTemplate messagingTemplate;
+	private final HashedWheelTimer timer;
+	private final long idleTimeoutMillis;
+	private final long reconnectGraceMillis;
+	private final EngineService engineService;
+	private final OwnershipEstimator ownershipEstimator;
 
-	public GameService(GameRegistry gameRegistry, SimpMessagingTemplate messagingTemplate) {
+	public GameService(GameRegistry gameRegistry, SimpMessagingTemplate messagingTemplate, HashedWheelTimer timer,
+			EngineService engineService, OwnershipEstimator ownershipEstimator,
+			@Value("${pixelgo.game.idle-timeout-seconds:1800}") long idleTimeoutSeconds,
+			@Value("${pixelgo.game.reconnect-grace-seconds:60}") long reconnectGraceSeconds) {
 		this.gameRegistry = gameRegistry;
 		this.messagingTemplate = messagingTemplate;
+		this.timer = timer;
+		this.engineService = engineService;
+		this.ownershipEstimator = ownershipEstimator;
+		this.idleTimeoutMillis = TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+		this.reconnectGraceMillis = TimeUnit.SECONDS.toMillis(reconnectGraceSeconds);
 	}
 
 	public Player addToGame(UUID gameId, String sessionId) throws GameFullException, GameNotFoundException {
 		GameContext context = gameRegistry.getContext(gameId);
 		if (context == null)
 			throw new GameNotFoundException("No such game exists with id: " + gameId);
-		logger.info("User [{}] added to game [{}]", sessionId);
+		logger.info("User [{}] added to game [{}]", sessionId, gameId);
+		context.touch();
 
 		int setBlackResult = context.setBlackSessionId(sessionId);
 		int setWhiteResult = context.setWhiteSessionId(sessionId);
@@ -43,6 +74,7 @@ public class GameService {
 		if (setBlackResult == 0 && setWhiteResult == 0) {
 			throw new GameFullException("Game is already full");
 		} else if (setBlackResult == 2 || setWhiteResult == 2) {
+			scheduleFlagCheck(gameId, context);
 			publishCurrentGameState(gameId);
 			logger.info("Game [{}] started", gameId);
 		}
@@ -54,32 +86,127 @@ public class GameService {
 		return Player.WHITE;
 	}
 
-	public UUID createGame(String sessionId) throws GameFullException {
-		GameContext context = new GameContext();
+	public UUID createGame(String sessionId, int boardSize, TimeControl timeControl, KoRule koRule)
+			throws GameFullException, InvalidBoardSizeException {
+		if (!BoardGeometry.isSupportedSize(boardSize))
+			throw new InvalidBoardSizeException("Board size must be between " + BoardGeometry.MIN_SIZE + " and "
+					+ BoardGeometry.MAX_SIZE + ": " + boardSize);
+
+		GameContext context = new GameContext(boardSize, timeControl, null, koRule);
 		context.setBlackSessionId(sessionId);
 		UUID gameId = gameRegistry.newContext(context);
-		logger.info("New game created with id: " + gameId);
+		scheduleIdleCheck(gameId, idleTimeoutMillis);
+		logger.info("New {}x{} game created with id: {}", boardSize, boardSize, gameId);
+		return gameId;
+	}
+
+	/**
+	 * Create a game against the engine. The game starts straight away, and the bot
+	 * moves first if the player chose white.
+	 * 
+	 * @param sessionId   the session id of the player
+	 * @param boardSize   the board size
+	 * @param timeControl the time settings, or null for an untimed game
+	 * @param player      the color the player takes
+	 * @return the game id
+	 * @throws InvalidBoardSizeException
+	 */
+	public UUID createBotGame(String sessionId, int boardSize, TimeControl timeControl, Player player)
+			throws InvalidBoardSizeException {
+		if (!BoardGeometry.isSupportedSize(boardSize))
+			throw new InvalidBoardSizeException("Board size must be between " + BoardGeometry.MIN_SIZE + " and "
+					+ BoardGeometry.MAX_SIZE + ": " + boardSize);
+
+		GameContext context = new GameContext(boardSize, timeControl, player.opponent);
+		if (player == Player.BLACK) {
+			context.setBlackSessionId(sessionId);
+		} else {
+			context.setWhiteSessionId(sessionId);
+		}
+		UUID gameId = gameRegistry.newContext(context);
+		scheduleIdleCheck(gameId, idleTimeoutMillis);
+		scheduleFlagCheck(gameId, context);
+		requestBotMove(gameId, context);
+		logger.info("New {}x{} game against the bot created with id: {}", boardSize, boardSize, gameId);
 		return gameId;
 	}
 
-	public void processMove(GameCommand command, UUID gameId, String sessionId)
-			throws GameNotStartedException, GameNotFoundException, ClientOutOfSyncException, InvalidMoveException, PlayerOutOfTurnException {
+	public int getBoardSize(UUID gameId) throws GameNotFoundException {
+		return gameRegistry.getContext(gameId).getGame().getBoardSize();
+	}
+
+	public Player getPlayer(UUID gameId, String sessionId) throws GameNotFoundException {
+		return gameRegistry.getContext(gameId).getPlayer(sessionId);
+	}
+
+	/**
+	 * Get the token a player can use to resume their seat from a new session.
+	 * 
+	 * @param gameId the game id
+	 * @param player the player
+	 * @return the reconnect token
+	 * @throws GameNotFoundException
+	 */
+	public UUID getReconnectToken(UUID gameId, Player player) throws GameNotFoundException {
+		return gameRegistry.getContext(gameId).getReconnectToken(player);
+	}
+
+	/**
+	 * Detach a dropped session from its game. The player keeps their seat for the
+	 * reconnect grace period, after which they forfeit.
+	 * 
+	 * @param gameId    the game id
+	 * @param sessionId the dropped session id
+	 * @throws GameNotFoundException
+	 */
+	public void handleDisconnect(UUID gameId, String sessionId) throws GameNotFoundException {
+		GameContext context = gameRegistry.getContext(gameId);
+		Player player = context.removePlayer(sessionId);
+		if (player == null || context.getGame().isHasEnded())
+			return;
+
+		logger.info("{} left game [{}], holding seat for {} ms", player, gameId, reconnectGraceMillis);
+		context.replaceGraceTimeout(player,
+				timer.schedule(() -> abandonIfAbsent(gameId, player), reconnectGraceMillis, TimeUnit.MILLISECONDS));
+		publishCurrentGameState(gameId);
+	}
+
+	/**
+	 * Play a move sent by a client. Rejected moves are reported through the
+	 * result so that misbehaving clients are cheap to turn away.
+	 * 
+	 * @param command   the move command
+	 * @param gameId    the game id
+	 * @param sessionId the session id of the client
+	 * @return the result of the move
+	 * @throws GameNotFoundException
+	 */
+	public MoveResult processMove(GameCommand command, UUID gameId, String sessionId) throws GameNotFoundException {
 		GameContext context = gameRegistry.getContext(gameId);
 		Game game = context.getGame();
 		
 		Player player = context.getPlayer(sessionId);
+		if (player == null) {
+			return MoveResult.rejected(Violation.OUT_OF_SYNC);
+		}
 
-		if (!player.equals(game.getCurrentPlayer()) || command.moveNumber() != game.getMoveNumber()) {
-			throw new ClientOutOfSyncException("User [" + sessionId + "] is out of sync with the server.");
+		int moveNumber = game.getMoveNumber();
+		if (command.moveNumber() < moveNumber) {
+			// The client missed some moves, send it what it is missing and drop the command.
+			sendResync(gameId, sessionId, command.moveNumber());
+			return MoveResult.IGNORED;
+		} else if (command.moveNumber() > moveNumber) {
+			return MoveResult.rejected(Violation.OUT_OF_SYNC);
 		}
 
 		Move move = new Move(player, command.vertex());
-		game.executeMove(move);
-		if (game.isHasEnded()) {
-			messagingTemplate.convertAndSend("/topic/result/" + gameId, getGameResults(game));
-		}
+		MoveResult result = game.tryExecuteMove(move);
+		if (result.isRejected())
+			return result;
 
-		publishCurrentGameState(gameId);
+		context.touch();
+		afterMove(gameId, context);
+		return result;
 	}
 
 	public void publishCurrentGameState(UUID gameId) throws GameNotFoundException {
@@ -88,15 +215,309 @@ public class GameService {
 		logger.info("New game state sent to \"/topic/state/{}\"", gameId);
 	}
 
+	/**
+	 * Estimate the territory of the current position and publish it to
+	 * <code>/topic/ownership/{gameId}</code>. The estimate is made once per move,
+	 * however many players and spectators ask for it.
+	 * 
+	 * @param gameId the game id
+	 * @throws GameNotFoundException if there is no such game
+	 */
+	public void publishOwnership(UUID gameId) throws GameNotFoundException {
+		GameContext context = gameRegistry.getContext(gameId);
+		Game game = context.getGame();
+		char[][] board;
+		int moveNumber;
+		Player player;
+		synchronized (game) {
+			board = game.getBoard();
+			moveNumber = game.getMoveNumber();
+			player = game.getCurrentPlayer();
+		}
+
+		CompletableFuture<OwnershipEstimate> estimate = context.getOwnership(moveNumber,
+				() -> ownershipEstimator.estimate(player, board));
+		if (estimate != null)
+			estimate.thenAccept(e -> messagingTemplate.convertAndSend("/topic/ownership/" + gameId, e));
+	}
+
+	/**
+	 * Give a seat back to the player holding its reconnect token.
+	 * 
+	 * @param gameId    the game id
+	 * @param token     the reconnect token
+	 * @param sessionId the new session id
+	 * @return the player who reconnected
+	 * @throws GameNotFoundException
+	 * @throws InvalidReconnectTokenException
+	 */
+	public Player reconnect(UUID gameId, UUID token, String sessionId)
+			throws GameNotFoundException, InvalidReconnectTokenException {
+		GameContext context = gameRegistry.getContext(gameId);
+		Player player = context.reconnect(token, sessionId);
+		if (player == null)
+			throw new InvalidReconnectTokenException("Reconnect token is not valid for game: " + gameId);
+
+		context.replaceGraceTimeout(player, null);
+		context.touch();
+		logger.info("{} reconnected to game [{}] as [{}]", player, gameId, sessionId);
+		publishCurrentGameState(gameId);
+		return player;
+	}
+
+	/**
+	 * Get the board after a move of a live or finished game.
+	 * 
+	 * @param gameId     the game id
+	 * @param moveNumber the number of moves played, passes included
+	 * @return the board and the length of the game so far
+	 * @throws GameNotFoundException      if there is no such game
+	 * @throws InvalidMoveNumberException if the game does not have the move
+	 */
+	public ReviewResponse review(UUID gameId, int moveNumber)
+			throws GameNotFoundException, InvalidMoveNumberException {
+		Game game = gameRegistry.getContext(gameId).getGame();
+		synchronized (game) {
+			int total = game.getHistorySize();
+			if (moveNumber < 0 || moveNumber > total)
+				throw new InvalidMoveNumberException("Game has " + total + " moves, not " + moveNumber);
+			return new ReviewResponse(gameId, moveNumber, total, game.getBoardAt(moveNumber));
+		}
+	}
+
+	/**
+	 * Get the moves a client has missed.
+	 * 
+	 * @param gameId the game id
+	 * @param from   the move number the client has seen moves up to
+	 * @return the moves played since <code>from</code> and the current turn
+	 * @throws GameNotFoundException
+	 */
+	public ResyncResponse resync(UUID gameId, int from) throws GameNotFoundException {
+		Game game = gameRegistry.getContext(gameId).getGame();
+		synchronized (game) {
+			return new ResyncResponse(gameId, from, game.getMovesSince(from), game.getMoveNumber(),
+					game.getCurrentPlayer(), game.isRunning());
+		}
+	}
+
+	/**
+	 * Publish the outcome of a move, and ask the bot for its reply if it is the
+	 * bot's turn.
+	 * 
+	 * @param gameId  the game id
+	 * @param context the game
+	 * @throws GameNotFoundException
+	 */
+	private void afterMove(UUID gameId, GameContext context) throws GameNotFoundException {
+		Game game = context.getGame();
+		if (game.isHasEnded()) {
+			context.replaceFlagTimeout(null);
+			context.replaceBotMove(null);
+			messagingTemplate.convertAndSend("/topic/result/" + gameId, getGameResults(game));
+		} else {
+			scheduleFlagCheck(gameId, context);
+			requestBotMove(gameId, context);
+		}
+
+		publishCurrentGameState(gameId);
+	}
+
+	/**
+	 * Ask the engine for a move if it is the bot's turn. The move is played when
+	 * the engine answers, unless the game has moved on in the meantime.
+	 * 
+	 * @param gameId  the game id
+	 * @param context the game
+	 */
+	private void requestBotMove(UUID gameId, GameContext context) {
+		Game game = context.getGame();
+		Player bot = context.getBot();
+		List<Move> moves;
+		int moveNumber;
+		synchronized (game) {
+			if (bot == null || !game.isRunning() || game.getCurrentPlayer() != bot)
+				return;
+			moves = game.getMovesSince(0);
+			moveNumber = game.getMoveNumber();
+		}
+
+		CompletableFuture<Move> reply = engineService.generateMoveAsync(bot, moves, game.getBoardSize(), 0);
+		context.replaceBotMove(reply);
+		reply.whenComplete((move, e) -> playBotMove(gameId, context, moveNumber, move, e));
+	}
+
+	/**
+	 * Play the engine's move. The move goes through the same rules as a player's,
+	 * and the bot passes if the engine failed or answered with an illegal move.
+	 */
+	private void playBotMove(UUID gameId, GameContext context, int moveNumber, Move move, Throwable error) {
+		if (error instanceof CancellationException)
+			return;
+
+		Game game = context.getGame();
+		Player bot = context.getBot();
+		MoveResult result;
+		synchronized (game) {
+			if (game.getMoveNumber() != moveNumber || game.getCurrentPlayer() != bot)
+				return; // The game moved on, e.g. it ended.
+
+			if (error != null) {
+				logger.error("Bot could not move in game [{}]: {}", gameId, error.getMessage());
+				move = new Move(bot, "pass");
+			}
+
+			if (move.vertex().equalsIgnoreCase("resign")) {
+				logger.info("Bot resigned game [{}]", gameId);
+				game.forfeit(bot);
+				result = MoveResult.APPLIED;
+			} else {
+				result = game.tryExecuteMove(move);
+			}
+			if (result.isRejected()) {
+				logger.warn("Bot played illegal move {} in game [{}]: {}", move.vertex(), gameId, result.getViolation());
+				result = game.tryExecuteMove(new Move(bot, "pass"));
+			}
+		}
+
+		try {
+			if (!result.isRejected())
+				afterMove(gameId, context);
+		} catch (GameNotFoundException e) {
+			// The game was removed meanwhile, so there is no one to tell about the move.
+		}
+	}
+
+	/**
+	 * Forfeit a player who has not reconnected within the grace period.
+	 * 
+	 * @param gameId the game id
+	 * @param player the absent player
+	 */
+	private void abandonIfAbsent(UUID gameId, Player player) {
+		try {
+			GameContext context = gameRegistry.getContext(gameId);
+			Game game = context.getGame();
+			if (context.isConnected(player) || game.isHasEnded())
+				return;
+
+			logger.info("{} abandoned game [{}]", player, gameId);
+			context.replaceFlagTimeout(null);
+			context.replaceBotMove(null);
+			if (game.isRunning()) {
+				game.forfeit(player);
+				messagingTemplate.convertAndSend("/topic/result/" + gameId, getGameResults(game));
+			} else {
+				game.stopGame();
+			}
+			publishCurrentGameState(gameId);
+		} catch (GameNotFoundException e) {
+			// The game was removed meanwhile, so nobody is left to forfeit.
+		}
+	}
+
+	private void sendResync(UUID gameId, String sessionId, int from) throws GameNotFoundException {
+		SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		headerAccessor.setSessionId(sessionId);
+		headerAccessor.setLeaveMutable(true);
+		messagingTemplate.convertAndSendToUser(sessionId, "/queue/resync", resync(gameId, from),
+				headerAccessor.getMessageHeaders());
+		logger.info("Resync from move {} sent to [{}]", from, sessionId);
+	}
+
+	/**
+	 * End a game if the player to move has run out of time, otherwise check again
+	 * at their new deadline.
+	 * 
+	 * @param gameId the game id
+	 */
+	private void checkFlag(UUID gameId) {
+		try {
+			GameContext context = gameRegistry.getContext(gameId);
+			Game game = context.getGame();
+			if (game.checkFlag()) {
+				logger.info("{} ran out of time in game [{}]", game.getForfeited(), gameId);
+				context.replaceBotMove(null);
+				messagingTemplate.convertAndSend("/topic/result/" + gameId, getGameResults(game));
+				publishCurrentGameState(gameId);
+			} else if (game.isRunning()) {
+				scheduleFlagCheck(gameId, context);
+			}
+		} catch (GameNotFoundException e) {
+			// The game was removed meanwhile, so there is no clock left to check.
+		}
+	}
+
+	/**
+	 * End a game that nobody has touched for the idle timeout and forget it,
+	 * otherwise check again when it could next become idle.
+	 * 
+	 * @param gameId the game id
+	 */
+	private void expireIfIdle(UUID gameId) {
+		try {
+			GameContext context = gameRegistry.getContext(gameId);
+			long idle = System.currentTimeMillis() - context.getLastActivity();
+			if (idle < idleTimeoutMillis) {
+				scheduleIdleCheck(gameId, idleTimeoutMillis - idle);
+				return;
+			}
+
+			logger.info("Game [{}] expired after being idle", gameId);
+			context.replaceFlagTimeout(null);
+			context.replaceBotMove(null);
+			context.getGame().stopGame();
+			publishCurrentGameState(gameId);
+			gameRegistry.removeContext(gameId);
+		} catch (GameNotFoundException e) {
+			// The game was removed meanwhile, which is what expiring it would do.
+		}
+	}
+
+	private void scheduleFlagCheck(UUID gameId, GameContext context) {
+		GameClock clock = context.getGame().getClock();
+		if (clock == null)
+			return;
+
+		long delay;
+		synchronized (context.getGame()) {
+			delay = clock.getDeadline() - System.currentTimeMillis();
+		}
+		context.replaceFlagTimeout(timer.schedule(() -> checkFlag(gameId), delay, TimeUnit.MILLISECONDS));
+	}
+
+	private void scheduleIdleCheck(UUID gameId, long delayMillis) {
+		timer.schedule(() -> expireIfIdle(gameId), delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private ClockState getClockState(Game game) {
+		GameClock clock = game.getClock();
+		if (clock == null)
+			return null;
+
+		long now = System.currentTimeMillis();
+		synchronized (game) {
+			return new ClockState(clock.getRemaining(Player.BLACK, now), clock.getPeriods(Player.BLACK, now),
+					clock.getRemaining(Player.WHITE, now), clock.getPeriods(Player.WHITE, now));
+		}
+	}
+
 	private GameState getCurrentGameState(GameContext context) {
 		Game game = context.getGame();
 		int numPlayers = 0;
 
-		if (context.getBlackSessionId() != null)
+		if (context.isConnected(Player.BLACK))
 			numPlayers++;
-		if (context.getWhiteSessionId() != null)
+		if (context.isConnected(Player.WHITE))
 			numPlayers++;
-		return new GameState(game.getBoard(), game.getMoveNumber(), game.getCurrentPlayer(), numPlayers, game.isConsecutivePass(), game.isRunning());
+		return new GameState(game.getBoard(), game.getMoveNumber(), game.getCurrentPlayer(), numPlayers, game.isConsecutivePass(), game.isRunning(), getClockState(game), getTerritoryEstimate(game));
+	}
+
+	private TerritoryEstimate getTerritoryEstimate(Game game) {
+		synchronized (game) {
+			int[] points = game.getEstimatedPoints();
+			return new TerritoryEstimate(game.getTerritory(), points[0], points[1]);
+		}
 	}
 
 	private GameResult getGameResults(Game game) {
@@ -104,6 +525,6 @@ public class GameService {
 		int blackPoints = points[0];
 		int whitePoints = points[1];
 
-		return new GameResult(blackPoints, whitePoints);
+		return new GameResult(blackPoints, whitePoints, game.getForfeited());
 	}
 }
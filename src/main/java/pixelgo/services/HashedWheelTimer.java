@@ -0,0 +1,211 @@
+package pixelgo.services;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * A hashed timing wheel shared by every game. Scheduling and cancelling are
+ * O(1) and a single thread advances the wheel, so a large number of pending
+ * timeouts costs little more than their memory. Timeouts fire up to one tick
+ * late and tasks run on the wheel thread, so they must be short.
+ *
+ * @author jacky
+ *
+ */
+@Component
+public class HashedWheelTimer {
+	/**
+	 * A handle to a scheduled task.
+	 */
+	public static final class Timeout {
+		private static final int PENDING = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+
+		private final Runnable task;
+		private final long deadline;
+		private final AtomicInteger state = new AtomicInteger(PENDING);
+
+		private long remainingRounds;
+		private Timeout prev;
+		private Timeout next;
+
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancel the task if it has not run yet.
+		 *
+		 * @return true if the task will not run
+		 */
+		public boolean cancel() {
+			return state.compareAndSet(PENDING, CANCELLED) || state.get() == CANCELLED;
+		}
+
+		/**
+		 * Find if the task was cancelled.
+		 *
+		 * @return true if the task was cancelled
+		 */
+		public boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+	}
+
+	/**
+	 * A doubly linked list of timeouts, only touched by the wheel thread.
+	 */
+	private static final class Bucket {
+		private Timeout head;
+		private Timeout tail;
+
+		private void add(Timeout timeout) {
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		private void expire(Logger logger) {
+			Timeout timeout = head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.state.get() == Timeout.CANCELLED) {
+					remove(timeout);
+				} else if (timeout.remainingRounds <= 0) {
+					remove(timeout);
+					if (timeout.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) {
+						try {
+							timeout.task.run();
+						} catch (Throwable t) {
+							logger.error("Timer task failed", t);
+						}
+					}
+				} else {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+		}
+
+		private void remove(Timeout timeout) {
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			} else {
+				head = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			} else {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+		}
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+	private final Thread worker;
+	private final long startTime;
+
+	private volatile boolean stopped;
+	private long tick;
+
+	public HashedWheelTimer(@Value("${pixelgo.timer.tick-millis:100}") long tickMillis,
+			@Value("${pixelgo.timer.wheel-size:512}") int wheelSize) {
+		if (tickMillis <= 0)
+			throw new IllegalArgumentException("Tick duration must be positive.");
+		if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1)
+			throw new IllegalArgumentException("Wheel size must be a power of two.");
+
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		this.wheel = new Bucket[wheelSize];
+		for (int i = 0; i < wheelSize; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = wheelSize - 1;
+
+		this.startTime = System.nanoTime();
+		this.worker = new Thread(this::run, "hashed-wheel-timer");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Schedule a task to run once after a delay.
+	 *
+	 * @param task  the task
+	 * @param delay the delay
+	 * @param unit  the unit of the delay
+	 * @return a handle that can be used to cancel the task
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay));
+		Timeout timeout = new Timeout(task, deadline);
+		pending.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Stop the wheel thread. Pending tasks are discarded.
+	 */
+	@PreDestroy
+	public void stop() {
+		stopped = true;
+		worker.interrupt();
+	}
+
+	private void run() {
+		while (!stopped) {
+			long deadline = tickNanos * (tick + 1);
+			long sleepNanos = deadline - (System.nanoTime() - startTime);
+			if (sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException e) {
+					if (stopped)
+						return;
+				}
+				continue;
+			}
+
+			transferPending();
+			wheel[(int) (tick & mask)].expire(logger);
+			tick++;
+		}
+	}
+
+	/**
+	 * Move newly scheduled timeouts into their buckets.
+	 */
+	private void transferPending() {
+		Timeout timeout;
+		while ((timeout = pending.poll()) != null) {
+			if (timeout.isCancelled())
+				continue;
+
+			long ticks = timeout.deadline / tickNanos;
+			timeout.remainingRounds = (ticks - tick) / wheel.length;
+			wheel[(int) (Math.max(ticks, tick) & mask)].add(timeout);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package pixelgo.services;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import pixelgo.dtos.CacheStats;
+import pixelgo.game.Board;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.KoRule;
+import pixelgo.game.Move;
+import pixelgo.game.MoveResult;
+import pixelgo.game.Player;
+
+/**
+ * Remembers the moves the engine generated, keyed by the position they were
+ * generated for, and evicts the least recently used entries once it is full.
+ *
+ * <p>
+ * A position is identified by its Zobrist hash, the player to move, the board
+ * size and the engine settings, not by the moves that led to it. With
+ * symmetries enabled, the 8 rotations and reflections of a position share one
+ * entry: moves are stored in the coordinates of the orientation with the
+ * smallest hash and mapped back on lookup. Because the history is not part of
+ * the key, a cached move is only returned if it is still legal in the
+ * requesting game.
+ *
+ * @author jacky
+ *
+ */
+@Component
+public class MoveCache {
+	/**
+	 * The identity of a position.
+	 */
+	private record Key(long hash, Player player, int boardSize, String settings) {
+	}
+
+	/**
+	 * A position replayed from a move list, ready to be looked up or stored.
+	 */
+	public static final class Position {
+		private final Key key;
+		private final Board board;
+		private final int symmetry;
+
+		private Position(Key key, Board board, int symmetry) {
+			this.key = key;
+			this.board = board;
+			this.symmetry = symmetry;
+		}
+	}
+
+	private static final String PASS = "pass";
+
+	private final int capacity;
+	private final boolean symmetries;
+	private final Map<Key, String> moves;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	@Autowired
+	public MoveCache(@Value("${pixelgo.engine.cache-size:100000}") int capacity,
+			@Value("${pixelgo.engine.cache-symmetries:true}") boolean symmetries) {
+		this.capacity = capacity;
+		this.symmetries = symmetries;
+		this.moves = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+				if (size() <= MoveCache.this.capacity)
+					return false;
+				evictions.increment();
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Replay a move list to find the position it leads to.
+	 *
+	 * @param player    the player to move
+	 * @param moves     the moves played so far
+	 * @param boardSize the board size
+	 * @param settings  the engine settings the move is generated with
+	 * @return the position, or null if the moves are not a legal game and cannot
+	 *         be cached
+	 */
+	public Position locate(Player player, List<Move> moves, int boardSize, String settings) {
+		if (capacity <= 0 || !BoardGeometry.isSupportedSize(boardSize))
+			return null;
+
+		Board board = new Board(boardSize, KoRule.POSITIONAL, symmetries);
+		BoardGeometry geometry = board.getGeometry();
+		for (Move move : moves) {
+			if (move.vertex().equalsIgnoreCase(PASS))
+				continue;
+			if (board.tryPlaceStone(move.player(), geometry.point(move.vertex())).isRejected())
+				return null;
+		}
+
+		int symmetry = symmetries ? board.getCanonicalSymmetry() : 0;
+		long hash = symmetries ? board.getHash(symmetry) : board.getHash();
+		return new Position(new Key(hash, player, boardSize, settings), board, symmetry);
+	}
+
+	/**
+	 * Look up the move for a position.
+	 *
+	 * @param position the position
+	 * @return the cached move, or null if there is none or it is illegal in this
+	 *         game
+	 */
+	public Move get(Position position) {
+		String canonical;
+		synchronized (moves) {
+			canonical = moves.get(position.key);
+		}
+
+		Move move = canonical == null ? null : fromCanonical(position, canonical);
+		if (move == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return move;
+	}
+
+	/**
+	 * Remember the move the engine generated for a position. Resignations are not
+	 * cached.
+	 *
+	 * @param position the position
+	 * @param move     the generated move
+	 */
+	public void put(Position position, Move move) {
+		String canonical;
+		if (move.vertex().equalsIgnoreCase(PASS)) {
+			canonical = PASS;
+		} else {
+			BoardGeometry geometry = position.board.getGeometry();
+			int point = geometry.point(move.vertex());
+			if (point < 0)
+				return;
+			canonical = geometry.vertex(geometry.transform(position.symmetry, point));
+		}
+
+		synchronized (moves) {
+			moves.put(position.key, canonical);
+		}
+	}
+
+	/**
+	 * Get the hit, miss and eviction counts.
+	 *
+	 * @return the statistics
+	 */
+	public CacheStats getStats() {
+		int size;
+		synchronized (moves) {
+			size = moves.size();
+		}
+		return new CacheStats(size, hits.sum(), misses.sum(), evictions.sum());
+	}
+
+	private Move fromCanonical(Position position, String canonical) {
+		Player player = position.key.player();
+		if (canonical.equals(PASS))
+			return new Move(player, PASS);
+
+		// Playing the move on the replayed board checks it against this game's ko history.
+		BoardGeometry geometry = position.board.getGeometry();
+		int point = geometry.transform(geometry.inverse(position.symmetry), geometry.point(canonical));
+		MoveResult result = position.board.tryPlaceStone(player, point);
+		return result.isApplied() ? new Move(player, geometry.vertex(point)) : null;
+	}
+}
@@ -0,0 +1,167 @@
+package pixelgo.services;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import pixelgo.dtos.OwnershipEstimate;
+import pixelgo.exceptions.InvalidMoveException;
+import pixelgo.game.Board;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.Move;
+import pixelgo.game.MoveResult;
+import pixelgo.game.Player;
+import pixelgo.game.PlayoutBoard;
+
+/**
+ * Estimates territory without an engine by playing random games to the end from
+ * a position and counting who owns each point. The playouts are split between
+ * the workers of a fork-join pool and stop at the playout budget or the time
+ * budget, whichever comes first.
+ *
+ * @author jacky
+ *
+ */
+@Component
+public class OwnershipEstimator {
+	/**
+	 * The number of playouts a task runs without splitting.
+	 */
+	private static final int CHUNK = 16;
+
+	/**
+	 * The totals of a range of playouts: the ownership sum of each point, then the
+	 * black area, the white area and the number of playouts.
+	 */
+	private final class Playouts extends RecursiveTask<long[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final PlayoutBoard start;
+		private final char color;
+		private final int count;
+		private final long deadline;
+
+		private Playouts(PlayoutBoard start, char color, int count, long deadline) {
+			this.start = start;
+			this.color = color;
+			this.count = count;
+			this.deadline = deadline;
+		}
+
+		@Override
+		protected long[] compute() {
+			if (count > CHUNK) {
+				Playouts left = new Playouts(start, color, count / 2, deadline);
+				left.fork();
+				long[] totals = new Playouts(start, color, count - count / 2, deadline).compute();
+				long[] other = left.join();
+				for (int i = 0; i < totals.length; i++) {
+					totals[i] += other[i];
+				}
+				return totals;
+			}
+
+			int area = start.getGeometry().area();
+			long[] totals = new long[area + 3];
+			PlayoutBoard board = new PlayoutBoard(start.getGeometry());
+			SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+			for (int i = 0; i < count && System.nanoTime() - deadline < 0; i++) {
+				board.copyFrom(start);
+				board.playout(color, random, 3 * area);
+				for (int point = 0; point < area; point++) {
+					char owner = board.owner(point);
+					if (owner == Board.BLACK) {
+						totals[point]++;
+						totals[area]++;
+					} else if (owner == Board.WHITE) {
+						totals[point]--;
+						totals[area + 1]++;
+					}
+				}
+				totals[area + 2]++;
+			}
+			return totals;
+		}
+	}
+
+	private final ForkJoinPool pool;
+	private final int playouts;
+	private final long timeMillis;
+
+	@Autowired
+	public OwnershipEstimator(@Value("${pixelgo.ownership.playouts:2000}") int playouts,
+			@Value("${pixelgo.ownership.time-millis:250}") long timeMillis,
+			@Value("${pixelgo.ownership.parallelism:0}") int parallelism) {
+		this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+		this.playouts = playouts;
+		this.timeMillis = timeMillis;
+	}
+
+	/**
+	 * Estimate the ownership of a position given by its moves.
+	 *
+	 * @param player    the player to move
+	 * @param moves     the moves played so far
+	 * @param boardSize the board size
+	 * @return the estimate, which fails with an {@link InvalidMoveException} if
+	 *         the moves are not a legal game
+	 */
+	public CompletableFuture<OwnershipEstimate> estimate(Player player, List<Move> moves, int boardSize) {
+		if (!BoardGeometry.isSupportedSize(boardSize))
+			return CompletableFuture.failedFuture(new IllegalArgumentException("Unsupported board size: " + boardSize));
+
+		Board board = new Board(boardSize);
+		BoardGeometry geometry = board.getGeometry();
+		for (Move move : moves) {
+			if (move.vertex().equalsIgnoreCase("pass"))
+				continue;
+			MoveResult result = board.tryPlaceStone(move.player(), geometry.point(move.vertex()));
+			if (result.isRejected())
+				return CompletableFuture.failedFuture(new InvalidMoveException(result.getViolation()));
+		}
+		return estimate(player, board.getBoard());
+	}
+
+	/**
+	 * Estimate the ownership of a position.
+	 *
+	 * @param player the player to move
+	 * @param rows   the stones, as returned by {@link Board#getBoard()}
+	 * @return the estimate
+	 */
+	public CompletableFuture<OwnershipEstimate> estimate(Player player, char[][] rows) {
+		PlayoutBoard start = new PlayoutBoard(BoardGeometry.of(rows.length));
+		start.load(rows);
+		char color = player == Player.BLACK ? Board.BLACK : Board.WHITE;
+
+		return CompletableFuture.supplyAsync(() -> {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeMillis);
+			return summarize(new Playouts(start, color, playouts, deadline).invoke(), start.getGeometry().area());
+		}, pool);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	private static OwnershipEstimate summarize(long[] totals, int area) {
+		long count = Math.max(totals[area + 2], 1);
+		double[] ownership = new double[area];
+		for (int point = 0; point < area; point++) {
+			ownership[point] = (double) totals[point] / count;
+		}
+		return new OwnershipEstimate(ownership, (double) totals[area] / count, (double) totals[area + 1] / count,
+				(int) totals[area + 2]);
+	}
+}
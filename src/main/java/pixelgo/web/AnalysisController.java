@@ -0,0 +1,88 @@
+package pixelgo.web;
+
+import java.io.InputStream;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import pixelgo.dtos.ErrorResponse;
+import pixelgo.dtos.OwnershipEstimate;
+import pixelgo.dtos.OwnershipRequest;
+import pixelgo.exceptions.ClientException;
+import pixelgo.exceptions.InvalidBoardSizeException;
+import pixelgo.exceptions.InvalidRequestException;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.Move;
+import pixelgo.game.PackedPosition;
+import pixelgo.services.BulkScorer;
+import pixelgo.services.OwnershipEstimator;
+
+/**
+ * Handle analysis requests that are answered without the engine.
+ * 
+ * @author jacky
+ *
+ */
+@RestController
+@CrossOrigin("*")
+@RequestMapping("/analysis")
+public class AnalysisController {
+	private final OwnershipEstimator ownershipEstimator;
+	private final BulkScorer bulkScorer;
+
+	public AnalysisController(OwnershipEstimator ownershipEstimator, BulkScorer bulkScorer) {
+		this.ownershipEstimator = ownershipEstimator;
+		this.bulkScorer = bulkScorer;
+	}
+
+	/**
+	 * Estimate the ownership of every point and the area of each player with
+	 * random playouts.
+	 */
+	@PostMapping("/ownership")
+	public DeferredResult<OwnershipEstimate> estimateOwnership(@RequestBody OwnershipRequest request)
+			throws InvalidRequestException, InvalidBoardSizeException {
+		if (request.player() == null)
+			throw new InvalidRequestException("Missing player to move.");
+		if (request.moves() == null)
+			throw new InvalidRequestException("Missing moves.");
+		for (int i = 0; i < request.moves().size(); i++) {
+			Move move = request.moves().get(i);
+			if (move == null || move.player() == null || move.vertex() == null)
+				throw new InvalidRequestException("Move " + i + " is missing a player or vertex.");
+		}
+		if (!BoardGeometry.isSupportedSize(request.boardSize()))
+			throw new InvalidBoardSizeException("Board size must be between " + BoardGeometry.MIN_SIZE + " and "
+					+ BoardGeometry.MAX_SIZE + ": " + request.boardSize());
+
+		return EngineController.defer(ownershipEstimator.estimate(request.player(), request.moves(),
+				request.boardSize()));
+	}
+
+	/**
+	 * Score a body of {@link PackedPosition packed positions}. The scores are
+	 * streamed back as they are computed, one <code>black white</code> line per
+	 * position.
+	 */
+	@PostMapping(path = "/score", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+	public ResponseEntity<StreamingResponseBody> score(InputStream body) {
+		return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN)
+				.body(out -> bulkScorer.score(body, out));
+	}
+
+	@ExceptionHandler
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public ErrorResponse handleClientException(ClientException e) {
+		return new ErrorResponse(e.getClass().getSimpleName(), e.getMessage());
+	}
+}
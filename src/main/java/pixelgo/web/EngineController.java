@@ -1,15 +1,20 @@
 package pixelgo.web;
 
-import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import pixelgo.dtos.AnalysisRequest;
+import pixelgo.dtos.AnalysisResult;
+import pixelgo.dtos.CacheStats;
 import pixelgo.dtos.MoveGenerationRequest;
-import pixelgo.exceptions.EngineException;
 import pixelgo.game.Move;
 import pixelgo.services.EngineService;
 
@@ -29,8 +34,46 @@ public class EngineController {
 		this.engineService = engineService;
 	}
 	
+	/**
+	 * Generate a move. No thread waits for the engine on behalf of the request,
+	 * and the search is cancelled if the client goes away or the deadline passes.
+	 */
 	@PostMapping("/generate")
-	public Move generateMove(@RequestBody MoveGenerationRequest request) throws IOException, EngineException {
-		return engineService.generateMove(request.player(), request.moves());
+	public DeferredResult<Move> generateMove(@RequestBody MoveGenerationRequest request) {
+		return defer(engineService.generateMoveAsync(request.player(), request.moves(), request.boardSize(),
+				request.timeoutMillis()));
+	}
+
+	/**
+	 * Analyze a position with the KataGo analysis engine: the best move, its
+	 * winrate and score lead, and optionally the ownership of every point.
+	 */
+	@PostMapping("/analyze")
+	public DeferredResult<AnalysisResult> analyze(@RequestBody AnalysisRequest request) {
+		return defer(engineService.analyze(request.player(), request.moves(), request.boardSize(), request.ownership(),
+				0));
+	}
+
+	/**
+	 * Get the hit rate of the engine move cache.
+	 */
+	@GetMapping("/cache")
+	public CacheStats getCacheStats() {
+		return engineService.getCacheStats();
+	}
+
+	static <T> DeferredResult<T> defer(CompletableFuture<T> future) {
+		// The engine service enforces the deadline, so the servlet container must not time out first.
+		DeferredResult<T> result = new DeferredResult<>(0L);
+		result.onError(e -> future.cancel(true));
+		result.onCompletion(() -> future.cancel(true));
+		future.whenComplete((value, e) -> {
+			if (e != null) {
+				result.setErrorResult(e instanceof CompletionException ? e.getCause() : e);
+			} else {
+				result.setResult(value);
+			}
+		});
+		return result;
 	}
 }
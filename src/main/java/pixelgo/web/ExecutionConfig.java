@@ -0,0 +1,177 @@
+package pixelgo.web;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Executors for STOMP message handling and engine calls.
+ *
+ * <p>
+ * When <code>pixelgo.execution.virtual-threads</code> is enabled and the JVM
+ * supports them (Java 21+), every task runs on a virtual thread of its own, so a
+ * task blocked on a lock or on the engine does not hold up a platform thread.
+ * The number of tasks running at once is limited, and submitting more blocks
+ * until one finishes. Otherwise bounded platform thread pools are used, and both
+ * STOMP channels have a bounded queue; when it is full the submitting thread
+ * runs the task itself, which slows down reading from the socket instead of
+ * queueing without limit. Virtual threads are off by default.
+ *
+ * @author jacky
+ *
+ */
+@Configuration
+public class ExecutionConfig implements WebMvcConfigurer {
+	private static final Logger logger = LoggerFactory.getLogger(ExecutionConfig.class);
+
+	private final boolean virtualThreads;
+	private final int channelThreads;
+	private final int channelQueueCapacity;
+	private final int engineConcurrency;
+
+	public ExecutionConfig(@Value("${pixelgo.execution.virtual-threads:false}") boolean virtualThreads,
+			@Value("${pixelgo.execution.channel-threads:0}") int channelThreads,
+			@Value("${pixelgo.execution.channel-queue-capacity:10000}") int channelQueueCapacity,
+			@Value("${pixelgo.execution.engine-concurrency:256}") int engineConcurrency) {
+		this.virtualThreads = virtualThreads && virtualThreadFactory("probe-") != null;
+		this.channelThreads = channelThreads > 0 ? channelThreads
+				: this.virtualThreads ? 1024 : Runtime.getRuntime().availableProcessors() * 2;
+		this.channelQueueCapacity = channelQueueCapacity;
+		this.engineConcurrency = engineConcurrency;
+
+		if (virtualThreads && !this.virtualThreads) {
+			logger.warn("Virtual threads are not supported by this JVM, using platform thread pools");
+		}
+	}
+
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(engineExecutor());
+	}
+
+	/**
+	 * Runs engine calls and asynchronous HTTP requests. Engine calls spend almost
+	 * all of their time waiting on the engine process.
+	 */
+	@Bean
+	public AsyncTaskExecutor engineExecutor() {
+		if (virtualThreads) {
+			SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(virtualThreadFactory("engine-"));
+			executor.setConcurrencyLimit(engineConcurrency);
+			return executor;
+		}
+
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setThreadNamePrefix("engine-");
+		executor.setCorePoolSize(Math.min(engineConcurrency, 16));
+		executor.setMaxPoolSize(engineConcurrency);
+		executor.setQueueCapacity(engineConcurrency);
+		executor.initialize();
+		return executor;
+	}
+
+	/**
+	 * Create an executor for a STOMP channel. It is not initialized here because
+	 * the message broker configuration registers and initializes it as a bean.
+	 *
+	 * @param prefix the thread name prefix
+	 * @return the executor
+	 */
+	public ThreadPoolTaskExecutor newChannelExecutor(String prefix) {
+		if (virtualThreads)
+			return new VirtualThreadChannelExecutor(prefix, channelThreads);
+
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setThreadNamePrefix(prefix);
+		executor.setCorePoolSize(channelThreads);
+		executor.setMaxPoolSize(channelThreads);
+		executor.setAllowCoreThreadTimeOut(true);
+		executor.setQueueCapacity(channelQueueCapacity);
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		return executor;
+	}
+
+	/**
+	 * A STOMP channel executor that starts a virtual thread per task, like
+	 * {@link #engineExecutor()}. Channel registration only accepts a
+	 * {@link ThreadPoolTaskExecutor}, so tasks bypass the inherited pool, which
+	 * never starts a thread.
+	 */
+	private static final class VirtualThreadChannelExecutor extends ThreadPoolTaskExecutor {
+		private static final long serialVersionUID = 1L;
+
+		private final SimpleAsyncTaskExecutor delegate;
+
+		private VirtualThreadChannelExecutor(String prefix, int concurrencyLimit) {
+			setThreadNamePrefix(prefix);
+			setCorePoolSize(1);
+			setAllowCoreThreadTimeOut(true);
+			delegate = new SimpleAsyncTaskExecutor(virtualThreadFactory(prefix));
+			delegate.setConcurrencyLimit(concurrencyLimit);
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			delegate.execute(task);
+		}
+
+		@Override
+		@Deprecated
+		public void execute(Runnable task, long startTimeout) {
+			delegate.execute(task);
+		}
+
+		@Override
+		public Future<?> submit(Runnable task) {
+			return delegate.submit(task);
+		}
+
+		@Override
+		public <T> Future<T> submit(Callable<T> task) {
+			return delegate.submit(task);
+		}
+
+		@Override
+		public ListenableFuture<?> submitListenable(Runnable task) {
+			return delegate.submitListenable(task);
+		}
+
+		@Override
+		public <T> ListenableFuture<T> submitListenable(Callable<T> task) {
+			return delegate.submitListenable(task);
+		}
+	}
+
+	/**
+	 * Get a factory for named virtual threads. The build targets Java 17, so the
+	 * Java 21 API is looked up reflectively.
+	 *
+	 * @param prefix the thread name prefix
+	 * @return the factory, or null if virtual threads are not supported
+	 */
+	private static ThreadFactory virtualThreadFactory(String prefix) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+			Method factory = builderClass.getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+}
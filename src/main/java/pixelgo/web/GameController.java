@@ -5,6 +5,7 @@ import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -16,10 +17,25 @@ import org.springframework.stereotype.Controller;
 import pixelgo.dtos.ErrorResponse;
 import pixelgo.dtos.GameCommand;
 import pixelgo.dtos.NewGameResponse;
+import pixelgo.dtos.ResyncResponse;
+import pixelgo.dtos.SyncRequest;
 import pixelgo.exceptions.ClientException;
+import pixelgo.exceptions.ClientOutOfSyncException;
 import pixelgo.exceptions.GameFullException;
 import pixelgo.exceptions.GameNotFoundException;
+import pixelgo.exceptions.GameNotStartedException;
+import pixelgo.exceptions.InvalidBoardSizeException;
+import pixelgo.exceptions.InvalidKoRuleException;
+import pixelgo.exceptions.InvalidMoveException;
+import pixelgo.exceptions.InvalidReconnectTokenException;
+import pixelgo.exceptions.InvalidTimeControlException;
+import pixelgo.exceptions.PlayerOutOfTurnException;
+import pixelgo.game.KoRule;
+import pixelgo.game.MoveResult;
 import pixelgo.game.Player;
+import pixelgo.game.TimeControl;
+import pixelgo.game.Violation;
+import pixelgo.services.GameContext;
 import pixelgo.services.GameService;
 import pixelgo.services.SessionRegistry;
 
@@ -42,13 +58,51 @@ public class GameController {
 	}
 
 	@SubscribeMapping("/create")
-	public NewGameResponse createGame(SimpMessageHeaderAccessor headerAccessor) throws GameFullException {
+	public NewGameResponse createGame(@Header(name = "time-control", required = false) String timeControl,
+			@Header(name = "ko-rule", required = false) String koRule, SimpMessageHeaderAccessor headerAccessor)
+			throws GameFullException, GameNotFoundException, InvalidBoardSizeException, InvalidTimeControlException,
+			InvalidKoRuleException {
+		return createGame(GameContext.DEFAULT_BOARD_SIZE, timeControl, koRule, headerAccessor);
+	}
+
+	/**
+	 * Create a game with the given board size. The optional
+	 * <code>time-control</code> header sets the clock, see
+	 * {@link TimeControl#parse(String)}, and the optional <code>ko-rule</code>
+	 * header picks <code>simple</code>, <code>positional</code> (the default) or
+	 * <code>situational</code> ko.
+	 */
+	@SubscribeMapping("/create/{size}")
+	public NewGameResponse createGame(@DestinationVariable int size,
+			@Header(name = "time-control", required = false) String timeControl,
+			@Header(name = "ko-rule", required = false) String koRule, SimpMessageHeaderAccessor headerAccessor)
+			throws GameFullException, GameNotFoundException, InvalidBoardSizeException, InvalidTimeControlException,
+			InvalidKoRuleException {
 		String sessionId = headerAccessor.getSessionId();
-		logger.info("Subscribe frame recieved at \"app/game/create\" from: {}", sessionId);
-		UUID gameId = gameService.createGame(sessionId);
+		logger.info("Subscribe frame recieved at \"app/game/create/{}\" from: {}", size, sessionId);
+		UUID gameId = gameService.createGame(sessionId, size, parseTimeControl(timeControl), parseKoRule(koRule));
 		registry.setGameId(sessionId, gameId);
 
-		return new NewGameResponse(gameId, Player.BLACK);
+		return new NewGameResponse(gameId, Player.BLACK, size, gameService.getReconnectToken(gameId, Player.BLACK));
+	}
+
+	/**
+	 * Create a game against the engine. The optional <code>color</code> header
+	 * picks the player's color, black by default.
+	 */
+	@SubscribeMapping("/create-bot/{size}")
+	public NewGameResponse createBotGame(@DestinationVariable int size,
+			@Header(name = "color", required = false) String color,
+			@Header(name = "time-control", required = false) String timeControl,
+			SimpMessageHeaderAccessor headerAccessor)
+			throws GameNotFoundException, InvalidBoardSizeException, InvalidTimeControlException {
+		String sessionId = headerAccessor.getSessionId();
+		logger.info("Subscribe frame recieved at \"app/game/create-bot/{}\" from: {}", size, sessionId);
+		Player player = "white".equalsIgnoreCase(color) ? Player.WHITE : Player.BLACK;
+		UUID gameId = gameService.createBotGame(sessionId, size, parseTimeControl(timeControl), player);
+		registry.setGameId(sessionId, gameId);
+
+		return new NewGameResponse(gameId, player, size, gameService.getReconnectToken(gameId, player));
 	}
 
 	@MessageMapping("/ready/{id}")
@@ -60,6 +114,18 @@ public class GameController {
 		gameService.publishCurrentGameState(gameId);
 	}
 
+	/**
+	 * Ask for a territory estimate of the current position, which is published to
+	 * <code>/topic/ownership/{id}</code>.
+	 */
+	@MessageMapping("/ownership/{id}")
+	public void getOwnership(@DestinationVariable String id, SimpMessageHeaderAccessor headerAccessor)
+			throws GameNotFoundException {
+		UUID gameId = convertGameId(id);
+		logger.info("Message recieved at \"/app/ownership/{}\" from: {}", gameId, headerAccessor.getSessionId());
+		gameService.publishOwnership(gameId);
+	}
+
 	@MessageExceptionHandler
 	@SendToUser(destinations = "/queue/errors", broadcast = false)
 	public ErrorResponse handleGameException(ClientException e) throws Exception {
@@ -86,7 +152,38 @@ public class GameController {
 		Player player = gameService.addToGame(gameId, sessionId);
 		registry.setGameId(sessionId, gameId);
 
-		return new NewGameResponse(gameId, player);
+		return new NewGameResponse(gameId, player, gameService.getBoardSize(gameId),
+				gameService.getReconnectToken(gameId, player));
+	}
+
+	/**
+	 * Resume a seat from a new session using the <code>reconnect-token</code>
+	 * header handed out when the game was joined.
+	 */
+	@SubscribeMapping("/rejoin/{id}")
+	public NewGameResponse rejoinGame(@DestinationVariable String id,
+			@Header(name = "reconnect-token", required = false) String token, SimpMessageHeaderAccessor headerAccessor)
+			throws GameNotFoundException, InvalidReconnectTokenException {
+		UUID gameId = convertGameId(id);
+		String sessionId = headerAccessor.getSessionId();
+		logger.info("Subscribe frame recieved at \"/game/rejoin/{}\" from: {}", gameId, sessionId);
+		Player player = gameService.reconnect(gameId, convertReconnectToken(token), sessionId);
+		registry.setGameId(sessionId, gameId);
+
+		return new NewGameResponse(gameId, player, gameService.getBoardSize(gameId), convertReconnectToken(token));
+	}
+
+	@MessageMapping("/sync")
+	@SendToUser(destinations = "/queue/resync", broadcast = false)
+	public ResyncResponse resync(@Payload SyncRequest request, SimpMessageHeaderAccessor headerAccessor)
+			throws GameNotFoundException {
+		String sessionId = headerAccessor.getSessionId();
+		logger.info("Message recieved at \"/sync\" from: {}", sessionId);
+		UUID gameId = registry.getGameId(sessionId);
+		if (gameId == null)
+			throw new GameNotFoundException("Session is not in a game");
+
+		return gameService.resync(gameId, request.moveNumber());
 	}
 
 	@MessageMapping("/move")
@@ -96,8 +193,59 @@ public class GameController {
 		logger.info("Message recieved at \"/move\" from: {}", sessionId);
 
 		UUID gameId = registry.getGameId(sessionId);
+		if (gameId == null)
+			throw new GameNotFoundException("Session is not in a game");
+
+		MoveResult result = gameService.processMove(command, gameId, sessionId);
+		if (result.isRejected())
+			throw toException(result.getViolation(), gameId, sessionId);
+	}
 
-		gameService.processMove(command, gameId, sessionId);
+	/**
+	 * Build the exception reported to the client for a rejected move.
+	 */
+	private ClientException toException(Violation violation, UUID gameId, String sessionId)
+			throws GameNotFoundException {
+		switch (violation) {
+		case OUT_OF_TURN:
+			return new PlayerOutOfTurnException(gameService.getPlayer(gameId, sessionId));
+		case GAME_NOT_STARTED:
+			return new GameNotStartedException("Game has not started.");
+		case OUT_OF_SYNC:
+			return new ClientOutOfSyncException("User [" + sessionId + "] is out of sync with the server.");
+		default:
+			return new InvalidMoveException(violation);
+		}
+	}
+
+	private TimeControl parseTimeControl(String timeControl) throws InvalidTimeControlException {
+		if (timeControl == null || timeControl.isBlank())
+			return null;
+
+		try {
+			return TimeControl.parse(timeControl);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidTimeControlException(e.getMessage());
+		}
+	}
+
+	private KoRule parseKoRule(String koRule) throws InvalidKoRuleException {
+		if (koRule == null || koRule.isBlank())
+			return KoRule.POSITIONAL;
+
+		try {
+			return KoRule.parse(koRule);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidKoRuleException(e.getMessage());
+		}
+	}
+
+	private UUID convertReconnectToken(String token) throws InvalidReconnectTokenException {
+		try {
+			return UUID.fromString(token);
+		} catch (IllegalArgumentException | NullPointerException e) {
+			throw new InvalidReconnectTokenException("Invalid reconnect token");
+		}
 	}
 
 	private UUID convertGameId(String gameId) throws GameNotFoundException {
@@ -0,0 +1,57 @@
+package pixelgo.web;
+
+import java.util.UUID;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import pixelgo.dtos.ErrorResponse;
+import pixelgo.dtos.ReviewResponse;
+import pixelgo.exceptions.ClientException;
+import pixelgo.exceptions.GameNotFoundException;
+import pixelgo.exceptions.InvalidMoveNumberException;
+import pixelgo.services.GameService;
+
+/**
+ * Handle requests to review the moves of live and finished games.
+ * 
+ * @author jacky
+ *
+ */
+@RestController
+@CrossOrigin("*")
+@RequestMapping("/review")
+public class ReviewController {
+	private final GameService gameService;
+
+	public ReviewController(GameService gameService) {
+		this.gameService = gameService;
+	}
+
+	/**
+	 * Get the board after a move, from 0 for the empty board.
+	 */
+	@GetMapping("/{id}/{move}")
+	public ReviewResponse review(@PathVariable UUID id, @PathVariable int move)
+			throws GameNotFoundException, InvalidMoveNumberException {
+		return gameService.review(id, move);
+	}
+
+	@ExceptionHandler
+	@ResponseStatus(HttpStatus.NOT_FOUND)
+	public ErrorResponse handleGameNotFound(GameNotFoundException e) {
+		return new ErrorResponse(e.getClass().getSimpleName(), e.getMessage());
+	}
+
+	@ExceptionHandler
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public ErrorResponse handleClientException(ClientException e) {
+		return new ErrorResponse(e.getClass().getSimpleName(), e.getMessage());
+	}
+}
@@ -9,8 +9,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
 import pixelgo.exceptions.GameNotFoundException;
-import pixelgo.services.GameContext;
-import pixelgo.services.GameRegistry;
 import pixelgo.services.GameService;
 import pixelgo.services.SessionRegistry;
 
@@ -23,13 +21,10 @@ import pixelgo.services.SessionRegistry;
 @Component
 public class SessionDisconnectEventListener {
 	private static final Logger logger = LoggerFactory.getLogger(SessionDisconnectEventListener.class);
-	private final GameRegistry gameRegistry;
 	private final GameService gameService;
 	private final SessionRegistry userRegistry;
 
-	public SessionDisconnectEventListener(GameRegistry gameRegistry, SessionRegistry userRegistry,
-			GameService gameService) {
-		this.gameRegistry = gameRegistry;
+	public SessionDisconnectEventListener(SessionRegistry userRegistry, GameService gameService) {
 		this.userRegistry = userRegistry;
 		this.gameService = gameService;
 	}
@@ -39,11 +34,11 @@ public class SessionDisconnectEventListener {
 		String sessionId = event.getSessionId();
 		logger.info("User {} disconnected", sessionId);
 		UUID gameId = userRegistry.getGameId(sessionId);
-		try {
-			GameContext context = gameRegistry.getContext(gameId);
-			context.removePlayer(sessionId);
-			gameService.publishCurrentGameState(gameId);
-		} catch (GameNotFoundException e) {
+		if (gameId != null) {
+			try {
+				gameService.handleDisconnect(gameId, sessionId);
+			} catch (GameNotFoundException e) {
+			}
 		}
 		userRegistry.removeSession(sessionId);
 	}
@@ -1,6 +1,7 @@
 package pixelgo.web;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -9,6 +10,21 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer  {
+	private final ExecutionConfig executionConfig;
+
+	public WebSocketConfig(ExecutionConfig executionConfig) {
+		this.executionConfig = executionConfig;
+	}
+
+	@Override
+	public void configureClientInboundChannel(ChannelRegistration registration) {
+		registration.taskExecutor(executionConfig.newChannelExecutor("ws-inbound-"));
+	}
+
+	@Override
+	public void configureClientOutboundChannel(ChannelRegistration registration) {
+		registration.taskExecutor(executionConfig.newChannelExecutor("ws-outbound-"));
+	}
 
 	@Override
 	public void configureMessageBroker(MessageBrokerRegistry registry) {
@@ -0,0 +1,77 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import pixelgo.dtos.AnalysisResult;
+import pixelgo.exceptions.EngineException;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+import pixelgo.services.AnalysisEngine;
+
+class AnalysisEngineTest {
+	private AnalysisEngine engine;
+
+	@AfterEach
+	void teardown() {
+		if (engine != null)
+			engine.shutdown();
+	}
+
+	@Test
+	void testConcurrentQueriesShareOneProcess() throws Exception {
+		engine = new AnalysisEngine(EnginePoolTest.fakeProcess(FakeAnalysisEngine.class, "--delay=1000"), 100, 7.5);
+		engine.analyze(Player.BLACK, List.of(), 19, false).get(); // Start the process.
+
+		long start = System.nanoTime();
+		List<CompletableFuture<AnalysisResult>> results = new ArrayList<>();
+		List<Move> moves = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Player player = i % 2 == 0 ? Player.BLACK : Player.WHITE;
+			results.add(engine.analyze(player, List.copyOf(moves), 19, false));
+			moves.add(new Move(player, "pass"));
+		}
+
+		for (int i = 0; i < results.size(); i++) {
+			AnalysisResult result = results.get(i).get();
+			assertEquals(i / 100.0, result.winrate()); // The fake reports the analyzed turn as the winrate.
+			assertEquals("D4", result.move().vertex());
+			assertEquals(i % 2 == 0 ? Player.BLACK : Player.WHITE, result.move().player());
+			assertNull(result.ownership());
+		}
+		assertTrue((System.nanoTime() - start) / 1_000_000 < 3000, "Queries were not searched concurrently");
+	}
+
+	@Test
+	void testOwnership() throws Exception {
+		engine = new AnalysisEngine(EnginePoolTest.fakeProcess(FakeAnalysisEngine.class), 100, 7.5);
+		double[] ownership = engine.analyze(Player.BLACK, List.of(), 9, true).get().ownership();
+
+		assertEquals(81, ownership.length);
+		assertEquals(1.0, ownership[8 * 9]); // A9, on the top row.
+		assertEquals(0.0, ownership[0]); // A1
+	}
+
+	@Test
+	void testRestartAfterCrash() throws Exception {
+		engine = new AnalysisEngine(EnginePoolTest.fakeProcess(FakeAnalysisEngine.class, "--crash-after=1"), 100, 7.5);
+
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> engine.analyze(Player.BLACK, List.of(), 19, false).get());
+		assertInstanceOf(EngineException.class, e.getCause());
+
+		// The restarted process crashes on its first query as well, but is started again.
+		assertThrows(ExecutionException.class, () -> engine.analyze(Player.BLACK, List.of(), 19, false).get());
+	}
+}
@@ -0,0 +1,71 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import pixelgo.dtos.GameCommand;
+import pixelgo.game.Game;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+import pixelgo.services.GameRegistry;
+import pixelgo.services.GameService;
+
+@SpringBootTest
+class BotGameTest {
+	@Autowired
+	private GameService gameService;
+
+	@Autowired
+	private GameRegistry registry;
+
+	@DynamicPropertySource
+	static void engineProperties(DynamicPropertyRegistry registry) throws URISyntaxException {
+		String command = String.join(" ", EnginePoolTest.fakeEngine("--move=Q16"));
+		registry.add("pixelgo.engine.command", () -> command);
+	}
+
+	/**
+	 * Wait for the bot to bring the game to a move number.
+	 */
+	private List<Move> awaitMoves(Game game, int moveNumber) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (game.getMoveNumber() < moveNumber && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		return game.getMovesSince(0);
+	}
+
+	@Test
+	void testBotReplies() throws Exception {
+		UUID gameId = gameService.createBotGame("human-black", 19, null, Player.BLACK);
+		Game game = registry.getContext(gameId).getGame();
+		assertTrue(game.isRunning());
+
+		assertTrue(gameService.processMove(new GameCommand(0, "D4"), gameId, "human-black").isApplied());
+		assertEquals(new Move(Player.WHITE, "Q16"), awaitMoves(game, 2).get(1));
+
+		// The engine answers Q16 again, which is occupied, so the bot passes instead.
+		assertTrue(gameService.processMove(new GameCommand(2, "D5"), gameId, "human-black").isApplied());
+		assertEquals(new Move(Player.WHITE, "pass"), awaitMoves(game, 4).get(3));
+		assertEquals(Player.BLACK, game.getCurrentPlayer());
+	}
+
+	@Test
+	void testBotMovesFirst() throws Exception {
+		UUID gameId = gameService.createBotGame("human-white", 19, null, Player.WHITE);
+		Game game = registry.getContext(gameId).getGame();
+
+		assertEquals(List.of(new Move(Player.BLACK, "Q16")), awaitMoves(game, 1));
+		assertEquals(Player.WHITE, game.getCurrentPlayer());
+	}
+}
@@ -0,0 +1,43 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.game.Board;
+import pixelgo.game.PackedPosition;
+import pixelgo.services.BulkScorer;
+
+class BulkScorerTest {
+	@Test
+	void testScoresMatchBoard() throws IOException {
+		Random random = new Random(1);
+		List<Board> boards = new ArrayList<>();
+		for (int size : new int[] { 1, 5, 9, 13, 19, 25 }) {
+			boards.add(RandomGames.play(size, size * size * 2, random));
+		}
+
+		// Enough positions to fill more than one chunk.
+		ByteArrayOutputStream packed = new ByteArrayOutputStream();
+		StringBuilder expected = new StringBuilder();
+		byte[] buffer = new byte[PackedPosition.MAX_LENGTH];
+		for (int i = 0; i < 5000; i++) {
+			Board board = boards.get(i % boards.size());
+			packed.write(buffer, 0, PackedPosition.pack(board.getBoard(), buffer, 0));
+			int[] score = board.getAreaScore();
+			expected.append(score[0]).append(' ').append(score[1]).append('\n');
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(5000, new BulkScorer().score(new ByteArrayInputStream(packed.toByteArray()), out));
+		assertEquals(expected.toString(), out.toString(StandardCharsets.US_ASCII));
+	}
+}
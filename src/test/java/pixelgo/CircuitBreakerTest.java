@@ -0,0 +1,36 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.services.CircuitBreaker;
+
+class CircuitBreakerTest {
+	@Test
+	void testOpensAndRecovers() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(2, 200);
+
+		assertTrue(breaker.tryAcquire());
+		breaker.recordFailure();
+		assertTrue(breaker.tryAcquire());
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+
+		// After the cooldown a single trial goes through, and its failure opens the breaker again.
+		Thread.sleep(300);
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+		breaker.recordFailure();
+		assertFalse(breaker.tryAcquire());
+
+		Thread.sleep(300);
+		assertTrue(breaker.tryAcquire());
+		breaker.recordSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+	}
+}
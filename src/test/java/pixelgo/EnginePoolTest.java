@@ -0,0 +1,135 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import pixelgo.exceptions.EngineException;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+import pixelgo.services.EnginePool;
+import pixelgo.services.HashedWheelTimer;
+
+class EnginePoolTest {
+	private HashedWheelTimer timer;
+	private EnginePool pool;
+
+	/**
+	 * Get the command line that starts a {@link FakeGTPEngine} process.
+	 */
+	static List<String> fakeEngine(String... args) throws URISyntaxException {
+		return fakeProcess(FakeGTPEngine.class, args);
+	}
+
+	/**
+	 * Get the command line that runs the main method of a test class in its own
+	 * process.
+	 */
+	static List<String> fakeProcess(Class<?> main, String... args) throws URISyntaxException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		String classpath = new File(main.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+
+		List<String> command = new ArrayList<>(List.of(java, "-cp", classpath, main.getName()));
+		command.addAll(List.of(args));
+		return command;
+	}
+
+	@BeforeEach
+	void setup() {
+		timer = new HashedWheelTimer(10, 64);
+	}
+
+	@AfterEach
+	void teardown() {
+		if (pool != null)
+			pool.shutdown();
+		timer.stop();
+	}
+
+	@Test
+	void testGenerateMove() throws Exception {
+		pool = new EnginePool(fakeEngine("--move=Q16"), 1, 10000, timer);
+		Move move = pool.execute(client -> {
+			client.setBoardSize(9);
+			client.clearBoard();
+			return client.generateMove(Player.WHITE);
+		});
+
+		assertEquals(new Move(Player.WHITE, "Q16"), move);
+	}
+
+	@Test
+	void testWorkersRunInParallel() throws Exception {
+		pool = new EnginePool(fakeEngine("--delay=1000"), 2, 10000, timer);
+
+		// Start both processes before timing the requests.
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		List<Future<Move>> warmup = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			warmup.add(executor.submit(() -> pool.execute(client -> {
+				client.clearBoard();
+				return null;
+			})));
+		}
+		for (Future<Move> future : warmup) {
+			future.get();
+		}
+
+		long start = System.nanoTime();
+		List<Future<Move>> moves = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			moves.add(executor.submit(() -> pool.execute(client -> client.generateMove(Player.BLACK))));
+		}
+		for (Future<Move> future : moves) {
+			assertEquals("D4", future.get().vertex());
+		}
+		long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+		executor.shutdown();
+
+		assertTrue(elapsedMillis < 1900, "Requests were not run in parallel: " + elapsedMillis + " ms");
+	}
+
+	@Test
+	void testCrashedWorkerIsRestarted() throws Exception {
+		pool = new EnginePool(fakeEngine("--crash-after=2"), 1, 10000, timer);
+
+		assertThrows(Exception.class, () -> pool.execute(client -> {
+			client.clearBoard();
+			return client.generateMove(Player.BLACK);
+		}));
+
+		Move move = pool.execute(client -> client.generateMove(Player.BLACK));
+		assertEquals("D4", move.vertex());
+	}
+
+	@Test
+	void testTimedOutRequestIsAbandoned() throws Exception {
+		pool = new EnginePool(fakeEngine("--delay=5000"), 1, 1500, timer);
+		pool.execute(client -> {
+			client.clearBoard();
+			return null;
+		});
+
+		long start = System.nanoTime();
+		assertThrows(EngineException.class, () -> pool.execute(client -> client.generateMove(Player.BLACK)));
+		assertTrue((System.nanoTime() - start) / 1_000_000 < 4000);
+
+		// The worker is replaced, so the pool keeps serving requests.
+		pool.execute(client -> {
+			client.clearBoard();
+			return null;
+		});
+	}
+}
@@ -0,0 +1,176 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import pixelgo.book.OpeningBook;
+import pixelgo.exceptions.EngineException;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+import pixelgo.services.AnalysisEngine;
+import pixelgo.services.CircuitBreaker;
+import pixelgo.services.EnginePool;
+import pixelgo.services.EngineService;
+import pixelgo.services.FallbackPolicy;
+import pixelgo.services.HashedWheelTimer;
+import pixelgo.services.MoveCache;
+
+class EngineServiceTest {
+	@TempDir
+	Path dir;
+
+	private HashedWheelTimer timer;
+	private EnginePool pool;
+
+	@BeforeEach
+	void setup() {
+		timer = new HashedWheelTimer(10, 64);
+	}
+
+	@AfterEach
+	void teardown() {
+		if (pool != null)
+			pool.shutdown();
+		timer.stop();
+	}
+
+	private EngineService engineService(Executor executor, MoveCache cache) {
+		return engineService(executor, cache, null, new CircuitBreaker(5, 30000));
+	}
+
+	private EngineService engineService(Executor executor, MoveCache cache, FallbackPolicy fallback,
+			CircuitBreaker breaker) {
+		return new EngineService(pool, new AnalysisEngine(List.of(), 0, 0), "gtp", executor, 10000, 0, 0, 100,
+				fallback, breaker, cache, new OpeningBook());
+	}
+
+	@Test
+	void testOnlyNewMovesAreSent() throws Exception {
+		Path log = dir.resolve("gtp.log");
+		pool = new EnginePool(EnginePoolTest.fakeEngine("--move=Q16", "--log=" + log), 1, 10000, timer);
+		EngineService engineService = engineService(Runnable::run, new MoveCache(0, false));
+
+		Move b1 = new Move(Player.BLACK, "D4");
+		Move w1 = engineService.generateMove(Player.WHITE, List.of(b1), 19);
+		Move b2 = new Move(Player.BLACK, "C3");
+		engineService.generateMove(Player.WHITE, List.of(b1, w1, b2), 19);
+
+		assertEquals(List.of("boardsize 19", "clear_board", "play B D4", "genmove WHITE", "play B C3", "genmove WHITE"),
+				Files.readAllLines(log));
+
+		// A takeback diverges from the loaded game, so it is replayed.
+		engineService.generateMove(Player.BLACK, List.of(b1, w1), 19);
+		assertEquals(List.of("boardsize 19", "clear_board", "play B D4", "play W Q16", "genmove BLACK"),
+				Files.readAllLines(log).subList(6, 11));
+	}
+
+	@Test
+	void testAbandonedSearchFreesEngine() throws Exception {
+		pool = new EnginePool(EnginePoolTest.fakeEngine("--delay=5000"), 1, 10000, timer);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		EngineService engineService = engineService(executor, new MoveCache(0, false));
+		List<Move> moves = List.of(new Move(Player.BLACK, "D4"));
+
+		long start = System.nanoTime();
+		CompletableFuture<Move> timedOut = engineService.generateMoveAsync(Player.WHITE, moves, 19, 500);
+		ExecutionException e = assertThrows(ExecutionException.class, timedOut::get);
+		assertInstanceOf(EngineException.class, e.getCause());
+
+		CompletableFuture<Move> cancelled = engineService.generateMoveAsync(Player.WHITE, moves, 19, 0);
+		Thread.sleep(500);
+		cancelled.cancel(true);
+
+		// The only engine is free again long before either search would have finished.
+		pool.execute(client -> {
+			client.clearBoard();
+			return null;
+		});
+		assertTrue((System.nanoTime() - start) / 1_000_000 < 4000);
+		executor.shutdown();
+	}
+
+	@Test
+	void testCacheMatchesSymmetricPositions() throws Exception {
+		Path log = dir.resolve("gtp.log");
+		pool = new EnginePool(EnginePoolTest.fakeEngine("--move=Q16", "--log=" + log), 1, 10000, timer);
+		EngineService engineService = engineService(Runnable::run, new MoveCache(100, true));
+
+		assertEquals("Q16", engineService.generateMove(Player.WHITE, List.of(new Move(Player.BLACK, "D4")), 19).vertex());
+
+		// The same position mirrored left to right gets the mirrored move without asking the engine.
+		assertEquals("D16", engineService.generateMove(Player.WHITE, List.of(new Move(Player.BLACK, "Q4")), 19).vertex());
+		assertEquals(1, engineService.getCacheStats().hits());
+		assertEquals(1, Files.readAllLines(log).stream().filter(line -> line.startsWith("genmove")).count());
+	}
+
+	@Test
+	void testPonderingEngineIsKeptForItsGame() throws Exception {
+		Path log = dir.resolve("gtp.log");
+		CountDownLatch stopped = new CountDownLatch(1);
+		Executor stopper = task -> {
+			task.run();
+			stopped.countDown();
+		};
+		pool = new EnginePool(EnginePoolTest.fakeEngine("--move=Q16", "--log=" + log), 2, 10000, 500, timer,
+				stopper);
+		EngineService engineService = engineService(Runnable::run, new MoveCache(0, false));
+
+		Move b1 = new Move(Player.BLACK, "D4");
+		Move w1 = engineService.generateMove(Player.WHITE, List.of(b1), 19);
+
+		// Another game goes to the other engine, so the first one keeps pondering.
+		engineService.generateMove(Player.BLACK, List.of(), 9);
+		engineService.generateMove(Player.WHITE, List.of(b1, w1, new Move(Player.BLACK, "C3")), 19);
+
+		List<String> commands = Files.readAllLines(log);
+		assertEquals(2, commands.stream().filter(line -> line.startsWith("boardsize")).count());
+		assertTrue(commands.contains("kata-analyze B interval 1000"));
+
+		// The ponder time runs out.
+		assertTrue(stopped.await(10, TimeUnit.SECONDS));
+		assertTrue(Files.readAllLines(log).contains("protocol_version"));
+	}
+
+	@Test
+	void testSlowEngineFallsBackAndTripsBreaker() throws Exception {
+		Path log = dir.resolve("gtp.log");
+		pool = new EnginePool(EnginePoolTest.fakeEngine("--delay=5000", "--log=" + log), 1, 10000, timer);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		CircuitBreaker breaker = new CircuitBreaker(1, 60000);
+		EngineService engineService = engineService(executor, new MoveCache(0, false), new FallbackPolicy(), breaker);
+		List<Move> moves = List.of(new Move(Player.BLACK, "D4"));
+
+		// The engine is told about the deadline, and a fallback move is played when it misses it anyway.
+		Move move = engineService.generateMoveAsync(Player.WHITE, moves, 19, 500).get();
+		assertEquals(Player.WHITE, move.player());
+		assertNotEquals("D4", move.vertex());
+		assertTrue(Files.readAllLines(log).contains("time_settings 0 0.4 1"));
+		assertEquals(CircuitBreaker.State.OPEN, engineService.getBreakerState());
+
+		// The open breaker answers at once without asking the engine.
+		long start = System.nanoTime();
+		engineService.generateMoveAsync(Player.WHITE, moves, 19, 0).get();
+		assertTrue((System.nanoTime() - start) / 1_000_000 < 1000);
+		assertEquals(1, Files.readAllLines(log).stream().filter(line -> line.startsWith("genmove")).count());
+		executor.shutdown();
+	}
+}
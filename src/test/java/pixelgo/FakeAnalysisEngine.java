@@ -0,0 +1,112 @@
+package pixelgo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A stand-in for KataGo's JSON analysis engine. Queries are searched
+ * concurrently, each on its own thread, like the real engine does with its
+ * analysis threads. Script it through its arguments:
+ *
+ * <pre>
+ * --move=D4        the best move of every response
+ * --delay=500      milliseconds to search each query
+ * --crash-after=3  exit without answering the given query number
+ * </pre>
+ *
+ * The winrate of a response is the analyzed turn number divided by 100, and
+ * the ownership is 1 on the top row and 0 elsewhere, so tests can tell the
+ * responses apart and check their orientation.
+ *
+ * @author jacky
+ *
+ */
+public class FakeAnalysisEngine {
+	private static final Pattern ID = Pattern.compile("\"id\":\"([^\"]*)\"");
+	private static final Pattern TERMINATE_ID = Pattern.compile("\"terminateId\":\"([^\"]*)\"");
+	private static final Pattern SIZE = Pattern.compile("\"boardXSize\":(\\d+)");
+	private static final Pattern TURN = Pattern.compile("\"analyzeTurns\":\\[(\\d+)\\]");
+
+	public static void main(String[] args) throws IOException {
+		String move = "D4";
+		long delay = 0;
+		int crashAfter = Integer.MAX_VALUE;
+
+		for (String arg : args) {
+			String value = arg.substring(arg.indexOf('=') + 1);
+			if (arg.startsWith("--move=")) {
+				move = value;
+			} else if (arg.startsWith("--delay=")) {
+				delay = Long.parseLong(value);
+			} else if (arg.startsWith("--crash-after=")) {
+				crashAfter = Integer.parseInt(value);
+			}
+		}
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		PrintStream out = System.out;
+		Set<String> terminated = ConcurrentHashMap.newKeySet();
+		int count = 0;
+		String line;
+
+		while ((line = in.readLine()) != null) {
+			String id = find(ID, line);
+			if (line.contains("\"action\":\"terminate\"")) {
+				terminated.add(find(TERMINATE_ID, line));
+				respond(out, "{\"id\":\"" + id + "\",\"action\":\"terminate\"}");
+				continue;
+			}
+			if (++count >= crashAfter)
+				System.exit(1);
+
+			int size = Integer.parseInt(find(SIZE, line));
+			int turn = Integer.parseInt(find(TURN, line));
+			boolean ownership = line.contains("\"includeOwnership\":true");
+			String response = response(id, turn, size, move, ownership);
+
+			long searchMillis = delay;
+			Thread search = new Thread(() -> {
+				try {
+					Thread.sleep(searchMillis);
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (!terminated.contains(id))
+					respond(out, response);
+			});
+			search.start();
+		}
+	}
+
+	private static String response(String id, int turn, int size, String move, boolean ownership) {
+		StringBuilder response = new StringBuilder();
+		response.append("{\"id\":\"").append(id).append("\",\"turnNumber\":").append(turn);
+		response.append(",\"moveInfos\":[{\"move\":\"").append(move).append("\",\"order\":0,\"visits\":10");
+		response.append(",\"winrate\":").append(turn / 100.0).append(",\"scoreLead\":1.5}");
+		response.append(",{\"move\":\"pass\",\"order\":1,\"visits\":1,\"winrate\":0.0,\"scoreLead\":-50.0}]");
+		if (ownership) {
+			response.append(",\"ownership\":[");
+			for (int i = 0; i < size * size; i++) {
+				response.append(i == 0 ? "" : ",").append(i < size ? "1.0" : "0.0");
+			}
+			response.append("]");
+		}
+		return response.append("}").toString();
+	}
+
+	private static synchronized void respond(PrintStream out, String response) {
+		out.println(response);
+		out.flush();
+	}
+
+	private static String find(Pattern pattern, String line) {
+		Matcher matcher = pattern.matcher(line);
+		return matcher.find() ? matcher.group(1) : "";
+	}
+}
@@ -0,0 +1,135 @@
+package pixelgo;
+
+import java.io.BufferedReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * A stand-in for a GTP engine, so the engine layer can be tested without
+ * KataGo. Run it as its own process and script it through its arguments:
+ *
+ * <pre>
+ * --move=D4        the vertex returned by genmove
+ * --delay=500      milliseconds to think before answering genmove
+ * --crash-after=3  exit without answering the given command number
+ * --log=path       append every command received to a file, without its id
+ * </pre>
+ *
+ * @author jacky
+ *
+ */
+public class FakeGTPEngine {
+	private static final List<String> COMMANDS = List.of("protocol_version", "name", "version", "known_command",
+			"list_commands", "boardsize", "clear_board", "komi", "play", "genmove", "kata-analyze",
+			"time_settings", "kata-set-param", "quit");
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String move = "D4";
+		long delay = 0;
+		int crashAfter = Integer.MAX_VALUE;
+		Writer log = null;
+
+		for (String arg : args) {
+			String value = arg.substring(arg.indexOf('=') + 1);
+			if (arg.startsWith("--move=")) {
+				move = value;
+			} else if (arg.startsWith("--delay=")) {
+				delay = Long.parseLong(value);
+			} else if (arg.startsWith("--crash-after=")) {
+				crashAfter = Integer.parseInt(value);
+			} else if (arg.startsWith("--log=")) {
+				log = new FileWriter(value, true);
+			}
+		}
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		PrintWriter out = new PrintWriter(System.out);
+		int count = 0;
+		boolean analyzing = false;
+		String line;
+
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			if (analyzing) {
+				// A new command ends the analysis, which ends its response.
+				out.print("\n");
+				out.flush();
+				analyzing = false;
+			}
+
+			String[] parts = line.split("\\s+");
+			String id = "";
+			int i = 0;
+			if (Character.isDigit(parts[0].charAt(0))) {
+				id = parts[0];
+				i = 1;
+			}
+			String command = parts[i];
+
+			if (log != null) {
+				log.write(line.substring(id.length()).trim() + "\n");
+				log.flush();
+			}
+			if (++count >= crashAfter)
+				System.exit(1);
+
+			switch (command) {
+			case "protocol_version":
+				success(out, id, "2");
+				break;
+			case "name":
+				success(out, id, "FakeGTPEngine");
+				break;
+			case "version":
+				success(out, id, "1.0");
+				break;
+			case "known_command":
+				success(out, id, String.valueOf(COMMANDS.contains(parts[i + 1])));
+				break;
+			case "list_commands":
+				success(out, id, String.join("\n", COMMANDS));
+				break;
+			case "genmove":
+				Thread.sleep(delay);
+				success(out, id, move);
+				break;
+			case "kata-analyze":
+				// Stream analysis until the next command.
+				out.print("=" + id + "\ninfo move " + move + " visits 1 winrate 0.5\n");
+				out.flush();
+				analyzing = true;
+				break;
+			case "quit":
+				success(out, id, "");
+				return;
+			case "play":
+				if (parts.length < i + 3 || !parts[i + 2].matches("(?i)[A-HJ-Z][0-9]{1,2}|pass")) {
+					out.print("?" + id + " illegal move\n\n");
+					out.flush();
+				} else {
+					success(out, id, "");
+				}
+				break;
+			default:
+				if (COMMANDS.contains(command)) {
+					success(out, id, "");
+				} else {
+					out.print("?" + id + " unknown command\n\n");
+					out.flush();
+				}
+			}
+		}
+	}
+
+	private static void success(PrintWriter out, String id, String response) {
+		out.print("=" + id + (response.isEmpty() ? "" : " " + response) + "\n\n");
+		out.flush();
+	}
+}
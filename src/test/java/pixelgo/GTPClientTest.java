@@ -0,0 +1,64 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import pixelgo.exceptions.EngineException;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+import pixelgo.services.GTPClient;
+import pixelgo.services.GTPResponse;
+
+class GTPClientTest {
+	private GTPClient client;
+
+	@BeforeEach
+	void setup() throws Exception {
+		client = new GTPClient(EnginePoolTest.fakeEngine());
+	}
+
+	@AfterEach
+	void teardown() {
+		client.close();
+	}
+
+	@Test
+	void testMultiLineResponse() throws Exception {
+		List<String> commands = client.listCommands();
+
+		assertTrue(commands.size() > 1);
+		assertTrue(commands.contains("genmove"));
+		assertEquals("D4", client.generateMove(Player.BLACK).vertex());
+	}
+
+	@Test
+	void testBatch() throws Exception {
+		List<GTPResponse> responses = client.executeBatch(List.of("name", "bogus", "list_commands", "version"));
+
+		assertEquals(4, responses.size());
+		assertEquals("FakeGTPEngine", responses.get(0).text());
+		assertFalse(responses.get(1).success());
+		assertTrue(responses.get(2).lines().contains("quit"));
+		assertEquals("1.0", responses.get(3).text());
+		assertEquals(responses.get(0).id() + 3, responses.get(3).id());
+	}
+
+	@Test
+	void testRejectedMoveForgetsPosition() throws Exception {
+		List<Move> moves = List.of(new Move(Player.BLACK, "D4"), new Move(Player.WHITE, "I5"));
+
+		assertThrows(EngineException.class, () -> client.loadPosition(19, moves));
+		assertEquals(-1, client.getSharedMoves(19, moves));
+
+		client.loadPosition(19, moves.subList(0, 1));
+		assertEquals(1, client.getSharedMoves(19, moves));
+	}
+}
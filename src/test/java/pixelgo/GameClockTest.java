@@ -0,0 +1,81 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.game.Game;
+import pixelgo.game.GameClock;
+import pixelgo.game.Move;
+import pixelgo.game.MoveResult;
+import pixelgo.game.Player;
+import pixelgo.game.TimeControl;
+
+class GameClockTest {
+	@Test
+	void testByoYomiPeriodsAreUsedAndReset() {
+		GameClock clock = new GameClock(new TimeControl(1000, 300, 3, 0));
+		clock.start(Player.BLACK, 0);
+
+		// Main time runs out, then a period is half used and reset by the move.
+		assertEquals(3, clock.getPeriods(Player.BLACK, 1000));
+		assertEquals(150, clock.getRemaining(Player.BLACK, 1150));
+		clock.switchTurn(1150);
+		assertEquals(3, clock.getPeriods(Player.BLACK, 1150));
+		assertEquals(300, clock.getRemaining(Player.BLACK, 1150));
+
+		// Using up a whole period costs it, even if the move is made in the next one.
+		clock.switchTurn(1150);
+		assertEquals(2, clock.getPeriods(Player.BLACK, 1550));
+		assertEquals(200, clock.getRemaining(Player.BLACK, 1550));
+		clock.switchTurn(1550);
+		assertEquals(2, clock.getPeriods(Player.BLACK, 1550));
+		assertEquals(1000, clock.getRemaining(Player.WHITE, 1550));
+
+		clock.switchTurn(1550);
+		assertEquals(1550 + 2 * 300, clock.getDeadline());
+		assertFalse(clock.isFlagged(2149));
+		assertTrue(clock.isFlagged(2150));
+		assertEquals(0, clock.getRemaining(Player.BLACK, 2150));
+	}
+
+	@Test
+	void testFischerIncrementIsAddedAfterEachMove() {
+		GameClock clock = new GameClock(new TimeControl(1000, 0, 0, 500));
+		clock.start(Player.BLACK, 0);
+
+		clock.switchTurn(400);
+		assertEquals(1100, clock.getRemaining(Player.BLACK, 400));
+		assertEquals(1000, clock.getRemaining(Player.WHITE, 400));
+
+		clock.switchTurn(1300);
+		assertEquals(600, clock.getRemaining(Player.WHITE, 1300));
+
+		// Without byo-yomi the flag falls as soon as the main time is gone.
+		assertEquals(1300 + 1100, clock.getDeadline());
+		assertFalse(clock.isFlagged(2399));
+		assertTrue(clock.isFlagged(2400));
+
+		clock.stop(2000);
+		assertEquals(400, clock.getRemaining(Player.BLACK, 3000));
+		assertFalse(clock.isFlagged(3000));
+	}
+
+	@Test
+	void testMoveAfterFlagIsIgnored() throws InterruptedException {
+		Game game = new Game(9, new TimeControl(50, 0, 0, 0));
+		game.startGame();
+		Thread.sleep(100);
+
+		MoveResult result = game.tryExecuteMove(new Move(Player.BLACK, "E5"));
+
+		assertSame(MoveResult.IGNORED, result);
+		assertEquals(Player.BLACK, game.getForfeited());
+		assertFalse(game.isRunning());
+		assertEquals(0, game.getMoveNumber());
+		assertTrue(game.getMovesSince(0).isEmpty());
+	}
+}
@@ -142,6 +142,17 @@ class GameControllerTest {
 		assertTrue(context.getGame() instanceof Game);
 	}
 
+	@Test
+	void testCreateSizedGame() throws InterruptedException, ExecutionException, TimeoutException, GameNotFoundException {
+		StompSession session = getSession();
+		session.subscribe(NEW_GAME_ENDPOINT + "/9", new CreateGameStompFrameHandler());
+		NewGameResponse response = newGameResponses.poll(1, TimeUnit.SECONDS);
+		assertTrue(response.boardSize() == 9);
+
+		GameContext context = registry.getContext(response.gameId());
+		assertTrue(context.getGame().getBoardSize() == 9);
+	}
+
 	@Test
 	void testHandleException() throws InterruptedException, ExecutionException, TimeoutException {
 		StompSession session = getSession();
@@ -177,7 +188,12 @@ class GameControllerTest {
 		sessionB.subscribe(SET_GAME_ENDPOINT + "/" + gameId, new CreateGameStompFrameHandler());
 		sessionB.subscribe(GAME_ENDPOINT + "/" + gameId, new GameStompFrameHandler());
 		sessionB.subscribe(READY_PLAYER_ENDPOINT + "/" + gameId, new SubscriptionHandler());
-		
+
+		// Wait for the state broadcast when the second player starts the game.
+		GameState started = gameStates.poll(1, TimeUnit.SECONDS);
+		assertNotNull(started);
+		assertTrue(started.running());
+
 		GameCommand move = new GameCommand(0, "A1");
 		sessionA.send(MOVE_ENDPOINT, move);
 
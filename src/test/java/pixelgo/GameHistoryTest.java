@@ -0,0 +1,55 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.game.Board;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.Game;
+import pixelgo.game.GameHistory;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+
+class GameHistoryTest {
+	@Test
+	void testEveryMoveCanBeRestored() {
+		Board board = new Board(9);
+		BoardGeometry geometry = board.getGeometry();
+		GameHistory history = new GameHistory(geometry, 5);
+		List<char[][]> expected = new ArrayList<>();
+		expected.add(board.getBoard());
+
+		// Rejected moves become passes, so the players keep alternating.
+		RandomGames.play(board, 200, new Random(1), true, point -> {
+			history.record(point, board);
+			expected.add(board.getBoard());
+		});
+
+		assertEquals(200, history.size());
+		for (int i = 0; i <= 200; i++) {
+			assertArrayEquals(expected.get(i), history.getBoard(i), "move " + i);
+		}
+	}
+
+	@Test
+	void testMoveNumberMatchesRecordAfterTwoPasses() throws Exception {
+		Game game = new Game(9);
+		game.startGame();
+		game.executeMove(new Move(Player.BLACK, "E5"));
+		game.executeMove(new Move(Player.WHITE, "pass"));
+		game.executeMove(new Move(Player.BLACK, "pass"));
+
+		assertTrue(game.isHasEnded());
+		assertEquals(3, game.getMoveNumber());
+		assertEquals(game.getMoveNumber(), game.getHistorySize());
+		assertEquals(game.getMoveNumber(), game.getMovesSince(0).size());
+		assertArrayEquals(game.getBoard(), game.getBoardAt(game.getMoveNumber()));
+	}
+}
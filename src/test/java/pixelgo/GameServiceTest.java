@@ -0,0 +1,111 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import pixelgo.dtos.GameCommand;
+import pixelgo.dtos.ResyncResponse;
+import pixelgo.exceptions.InvalidReconnectTokenException;
+import pixelgo.game.Game;
+import pixelgo.game.KoRule;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+import pixelgo.services.GameRegistry;
+import pixelgo.services.GameService;
+
+@SpringBootTest(properties = "pixelgo.game.reconnect-grace-seconds=1")
+class GameServiceTest {
+	private static final String[] VERTICES = { "D4", "Q16", "D16", "Q4", "K10" };
+
+	@Autowired
+	private GameService gameService;
+
+	@Autowired
+	private GameRegistry registry;
+
+	/**
+	 * Start a game between the sessions "black" and "white".
+	 */
+	private UUID startGame() throws Exception {
+		UUID gameId = gameService.createGame("black", 19, null, KoRule.SIMPLE);
+		gameService.addToGame(gameId, "white");
+		assertTrue(registry.getContext(gameId).getGame().isRunning());
+		return gameId;
+	}
+
+	@Test
+	void testReconnectWithinGraceKeepsSeat() throws Exception {
+		UUID gameId = startGame();
+		Game game = registry.getContext(gameId).getGame();
+		UUID token = gameService.getReconnectToken(gameId, Player.BLACK);
+
+		gameService.handleDisconnect(gameId, "black");
+		assertNull(gameService.getPlayer(gameId, "black"));
+		assertEquals(Player.BLACK, gameService.reconnect(gameId, token, "black-again"));
+
+		// The grace timeout was cancelled, so the seat is kept once it would have fired.
+		Thread.sleep(1500);
+		assertTrue(game.isRunning());
+		assertNull(game.getForfeited());
+		assertTrue(gameService.processMove(new GameCommand(0, "D4"), gameId, "black-again").isApplied());
+	}
+
+	@Test
+	void testSeatIsForfeitedAfterGrace() throws Exception {
+		UUID gameId = startGame();
+		Game game = registry.getContext(gameId).getGame();
+		UUID token = gameService.getReconnectToken(gameId, Player.WHITE);
+
+		gameService.handleDisconnect(gameId, "white");
+		Thread.sleep(1500);
+		assertFalse(game.isRunning());
+		assertEquals(Player.WHITE, game.getForfeited());
+
+		// The token still identifies the seat, but the game stays lost.
+		assertEquals(Player.WHITE, gameService.reconnect(gameId, token, "white-again"));
+		assertFalse(game.isRunning());
+		assertEquals(Player.WHITE, game.getForfeited());
+	}
+
+	@Test
+	void testBadTokenIsRejected() throws Exception {
+		UUID gameId = startGame();
+		UUID otherGame = startGame();
+
+		gameService.handleDisconnect(gameId, "black");
+		assertThrows(InvalidReconnectTokenException.class,
+				() -> gameService.reconnect(gameId, UUID.randomUUID(), "intruder"));
+		assertThrows(InvalidReconnectTokenException.class, () -> gameService.reconnect(gameId,
+				gameService.getReconnectToken(otherGame, Player.BLACK), "intruder"));
+		assertNull(gameService.getPlayer(gameId, "intruder"));
+	}
+
+	@Test
+	void testResyncReturnsMovesSinceClientMoveNumber() throws Exception {
+		UUID gameId = startGame();
+		for (int i = 0; i < VERTICES.length; i++) {
+			String sessionId = i % 2 == 0 ? "black" : "white";
+			assertTrue(gameService.processMove(new GameCommand(i, VERTICES[i]), gameId, sessionId).isApplied());
+		}
+
+		ResyncResponse response = gameService.resync(gameId, 2);
+
+		assertEquals(2, response.fromMoveNumber());
+		assertEquals(List.of(new Move(Player.BLACK, "D16"), new Move(Player.WHITE, "Q4"),
+				new Move(Player.BLACK, "K10")), response.moves());
+		assertEquals(VERTICES.length, response.moveNumber());
+		assertEquals(Player.WHITE, response.currentPlayer());
+		assertTrue(response.running());
+		assertTrue(gameService.resync(gameId, VERTICES.length).moves().isEmpty());
+	}
+}
@@ -0,0 +1,53 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.services.HashedWheelTimer;
+import pixelgo.services.HashedWheelTimer.Timeout;
+
+class HashedWheelTimerTest {
+	@Test
+	void testTimeoutsExpireUnlessCancelled() throws InterruptedException {
+		HashedWheelTimer timer = new HashedWheelTimer(10, 64);
+		try {
+			CountDownLatch expired = new CountDownLatch(1);
+			AtomicBoolean ran = new AtomicBoolean();
+
+			// The cancelled timeout is due first, so it would have run before the latch.
+			Timeout cancelled = timer.schedule(() -> ran.set(true), 50, TimeUnit.MILLISECONDS);
+			Timeout timeout = timer.schedule(expired::countDown, 100, TimeUnit.MILLISECONDS);
+			assertTrue(cancelled.cancel());
+			assertTrue(cancelled.isCancelled());
+
+			assertTrue(expired.await(2, TimeUnit.SECONDS));
+			assertFalse(ran.get());
+			assertFalse(timeout.isCancelled());
+			assertFalse(timeout.cancel());
+		} finally {
+			timer.stop();
+		}
+	}
+
+	@Test
+	void testTimeoutLongerThanOneRotationWaitsForItsRound() throws InterruptedException {
+		// A wheel of 8 ticks of 10 ms turns every 80 ms.
+		HashedWheelTimer timer = new HashedWheelTimer(10, 8);
+		try {
+			CountDownLatch expired = new CountDownLatch(1);
+			long start = System.nanoTime();
+			timer.schedule(expired::countDown, 250, TimeUnit.MILLISECONDS);
+
+			assertTrue(expired.await(2, TimeUnit.SECONDS));
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+		} finally {
+			timer.stop();
+		}
+	}
+}
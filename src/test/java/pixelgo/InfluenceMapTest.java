@@ -0,0 +1,40 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.game.Board;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.InfluenceMap;
+import pixelgo.game.Player;
+
+class InfluenceMapTest {
+	@Test
+	void testLoneStoneClaimsNearbyPoints() {
+		Board board = new Board(9);
+		board.tryPlaceStone(Player.BLACK, board.getGeometry().point("E5"));
+
+		// The stone and the 12 points within 2 steps of it.
+		assertArrayEquals(new int[] { 13, 0 }, board.getEstimatedScore());
+		assertEquals(Board.BLACK, board.getTerritory()[4][6]);
+		assertEquals(Board.EMPTY, board.getTerritory()[4][7]);
+	}
+
+	@Test
+	void testIncrementalUpdatesMatchRecomputation() {
+		Board board = RandomGames.play(9, 300, new Random(1));
+		BoardGeometry geometry = board.getGeometry();
+
+		InfluenceMap expected = new InfluenceMap(geometry);
+		for (int point = 0; point < geometry.area(); point++) {
+			if (board.get(point) != Board.EMPTY)
+				expected.add(board.get(point), point);
+		}
+		assertArrayEquals(expected.getScore(), board.getEstimatedScore());
+		assertArrayEquals(expected.getTerritory(), board.getTerritory());
+	}
+}
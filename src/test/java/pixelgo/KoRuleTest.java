@@ -0,0 +1,82 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.game.Board;
+import pixelgo.game.KoRule;
+import pixelgo.game.MoveResult;
+import pixelgo.game.Player;
+import pixelgo.game.Violation;
+
+class KoRuleTest {
+	private static final int N = 5;
+
+	/**
+	 * Set up a ko where black can capture the white stone at (1, 1) by playing at
+	 * (1, 2), with white to move.
+	 */
+	private static Board ko(KoRule koRule) {
+		Board board = new Board(N, koRule);
+		int[][] moves = { { 1, 0 }, { 0, 2 }, { 0, 1 }, { 2, 2 }, { 2, 1 }, { 1, 3 }, { 4, 0 }, { 1, 1 } };
+		Player player = Player.BLACK;
+		for (int[] move : moves) {
+			assertTrue(play(board, player, move[0], move[1]).isApplied());
+			player = player.opponent;
+		}
+		return board;
+	}
+
+	private static MoveResult play(Board board, Player player, int row, int column) {
+		return board.tryPlaceStone(player, row * N + column);
+	}
+
+	@Test
+	void testImmediateRecaptureIsRejectedUnderEveryRule() {
+		for (KoRule koRule : KoRule.values()) {
+			Board board = ko(koRule);
+			assertTrue(play(board, Player.BLACK, 1, 2).isApplied());
+			assertEquals(Board.EMPTY, board.get(N + 1));
+
+			MoveResult retake = play(board, Player.WHITE, 1, 1);
+			assertEquals(Violation.REPEATED_POSITION, retake.getViolation(), koRule.name());
+			assertEquals(Board.EMPTY, board.get(N + 1));
+
+			// A move elsewhere lifts the ko.
+			assertTrue(play(board, Player.WHITE, 4, 4).isApplied());
+			assertTrue(play(board, Player.BLACK, 4, 3).isApplied());
+			assertTrue(play(board, Player.WHITE, 1, 1).isApplied(), koRule.name());
+			assertEquals(Board.EMPTY, board.get(N + 2));
+		}
+	}
+
+	@Test
+	void testPassLiftsSimpleKo() {
+		Board board = ko(KoRule.SIMPLE);
+		assertTrue(play(board, Player.BLACK, 1, 2).isApplied());
+		board.pass(Player.WHITE);
+		board.pass(Player.BLACK);
+		assertTrue(play(board, Player.WHITE, 1, 1).isApplied());
+	}
+
+	@Test
+	void testSituationalSuperkoConsidersThePlayerToMove() {
+		// Black moves twice in a row so that the position after white's recapture was
+		// only ever reached with white to move.
+		for (KoRule koRule : new KoRule[] { KoRule.POSITIONAL, KoRule.SITUATIONAL }) {
+			Board board = ko(koRule);
+			assertTrue(play(board, Player.BLACK, 4, 4).isApplied());
+			assertTrue(play(board, Player.BLACK, 1, 2).isApplied());
+			board.pass(Player.WHITE);
+
+			MoveResult retake = play(board, Player.WHITE, 1, 1);
+			if (koRule == KoRule.POSITIONAL) {
+				assertEquals(Violation.REPEATED_POSITION, retake.getViolation());
+			} else {
+				assertTrue(retake.isApplied());
+			}
+		}
+	}
+}
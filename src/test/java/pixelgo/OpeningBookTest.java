@@ -0,0 +1,52 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import pixelgo.book.OpeningBook;
+import pixelgo.book.OpeningBookBuilder;
+import pixelgo.book.SGFParser;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+
+class OpeningBookTest {
+	@TempDir
+	Path dir;
+
+	@Test
+	void testBuildAndLookup() throws Exception {
+		List<SGFParser.Game> games = SGFParser.parse("""
+				(;GM[1]SZ[9]PB[Black \\] player];B[cc];W[gg];B[gc](;W[cg])(;W[ee]))
+				(;SZ[9];B[gg]C[comment];W[cc])
+				(;SZ[9]AB[ee];B[cc];W[dd])
+				""");
+		assertEquals(3, games.size());
+		assertEquals(List.of(new Move(Player.BLACK, "C7"), new Move(Player.WHITE, "G3"), new Move(Player.BLACK, "G7"),
+				new Move(Player.WHITE, "C3")), games.get(0).moves());
+		assertTrue(games.get(2).setup());
+
+		Path path = dir.resolve("book.bin");
+		OpeningBookBuilder builder = new OpeningBookBuilder(9, 3);
+		builder.addAll(games);
+		builder.write(path, 1);
+		OpeningBook book = new OpeningBook(path);
+
+		// Both games reach the same position up to a rotation, and answer it the same way.
+		assertEquals("G3", book.lookup(Player.WHITE, List.of(new Move(Player.BLACK, "C7")), 9).vertex());
+		assertEquals("C7", book.lookup(Player.WHITE, List.of(new Move(Player.BLACK, "G3")), 9).vertex());
+		assertEquals("G7", book.lookup(Player.WHITE, List.of(new Move(Player.BLACK, "C3")), 9).vertex());
+		assertTrue(List.of("C7", "G3").contains(book.lookup(Player.BLACK, List.of(), 9).vertex()));
+
+		// Positions outside of the book.
+		assertNull(book.lookup(Player.BLACK, List.of(new Move(Player.BLACK, "E5")), 9));
+		assertNull(book.lookup(Player.BLACK, List.of(new Move(Player.BLACK, "C7")), 9));
+		assertNull(book.lookup(Player.WHITE, List.of(new Move(Player.BLACK, "C7")), 19));
+	}
+}
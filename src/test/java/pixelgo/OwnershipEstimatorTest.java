@@ -0,0 +1,128 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.dtos.OwnershipEstimate;
+import pixelgo.dtos.OwnershipRequest;
+import pixelgo.exceptions.InvalidRequestException;
+import pixelgo.game.Board;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.Move;
+import pixelgo.game.Player;
+import pixelgo.game.PlayoutBoard;
+import pixelgo.services.BulkScorer;
+import pixelgo.services.OwnershipEstimator;
+import pixelgo.web.AnalysisController;
+
+class OwnershipEstimatorTest {
+	@Test
+	void testPlayoutBoardCapturesAndKo() {
+		BoardGeometry geometry = BoardGeometry.of(5);
+		PlayoutBoard board = new PlayoutBoard(geometry);
+		board.load(new char[][] {
+				" W   ".toCharArray(),
+				"WWB  ".toCharArray(),
+				"WB B ".toCharArray(),
+				" WB  ".toCharArray(),
+				"     ".toCharArray() });
+		assertFalse(board.isLegal(Board.BLACK, geometry.point("A1"))); // Suicide.
+
+		// White captures at C3 and black may not take back at once.
+		board.play(Board.WHITE, geometry.point("C3"));
+		assertEquals(Board.EMPTY, board.get(geometry.point("B3")));
+		assertFalse(board.isLegal(Board.BLACK, geometry.point("B3")));
+
+		board.play(Board.BLACK, geometry.point("E1"));
+		assertTrue(board.isLegal(Board.BLACK, geometry.point("B3")));
+		board.play(Board.BLACK, geometry.point("B3"));
+		assertEquals(Board.EMPTY, board.get(geometry.point("C3")));
+	}
+
+	@Test
+	void testBoardAndPlayoutBoardAgreeOnEyes() {
+		// A1 and C4 are eyes of black, C1 and E1 are false eyes because of the white stone at D2.
+		char[][] rows = {
+				" B B ".toCharArray(),
+				"BBBWB".toCharArray(),
+				" WB  ".toCharArray(),
+				" B B ".toCharArray(),
+				"  B  ".toCharArray() };
+		Board board = new Board(5);
+		for (int r = 0; r < rows.length; r++) {
+			for (int c = 0; c < rows[r].length; c++) {
+				if (rows[r][c] != Board.EMPTY)
+					board.tryPlaceStone(rows[r][c] == Board.BLACK ? Player.BLACK : Player.WHITE, r * 5 + c);
+			}
+		}
+		assertTrue(board.isEye(Board.BLACK, board.getGeometry().point("A1")));
+		assertFalse(board.isEye(Board.BLACK, board.getGeometry().point("C1")));
+		assertFalse(board.isEye(Board.BLACK, board.getGeometry().point("E1")));
+		assertTrue(board.isEye(Board.BLACK, board.getGeometry().point("C4")));
+		assertEyesAgree(board);
+
+		assertEyesAgree(RandomGames.play(9, 300, new Random(1)));
+	}
+
+	private static void assertEyesAgree(Board board) {
+		PlayoutBoard playout = new PlayoutBoard(board.getGeometry());
+		playout.load(board.getBoard());
+		for (int point = 0; point < board.getGeometry().area(); point++) {
+			if (board.get(point) != Board.EMPTY)
+				continue;
+			assertEquals(playout.isEye(Board.BLACK, point), board.isEye(Board.BLACK, point), "black at " + point);
+			assertEquals(playout.isEye(Board.WHITE, point), board.isEye(Board.WHITE, point), "white at " + point);
+		}
+	}
+
+	@Test
+	void testLivingGroupsAreOwned() throws Exception {
+		// Black lives on the left with three eyes and white on the right, column C is open.
+		char[][] rows = {
+				" B W ".toCharArray(),
+				"BB WW".toCharArray(),
+				" B W ".toCharArray(),
+				"BB WW".toCharArray(),
+				" B W ".toCharArray() };
+
+		OwnershipEstimator estimator = new OwnershipEstimator(200, 5000, 2);
+		try {
+			OwnershipEstimate estimate = estimator.estimate(Player.BLACK, rows).get();
+			assertEquals(200, estimate.playouts());
+			assertEquals(1.0, estimate.ownership()[0]);
+			assertEquals(-1.0, estimate.ownership()[24]);
+			assertTrue(estimate.blackScore() >= 10 && estimate.whiteScore() >= 10);
+			assertEquals(25, estimate.blackScore() + estimate.whiteScore(), 5);
+		} finally {
+			estimator.shutdown();
+		}
+	}
+
+	@Test
+	void testIncompleteRequestIsRejected() {
+		OwnershipEstimator estimator = new OwnershipEstimator(10, 100, 1);
+		try {
+			AnalysisController controller = new AnalysisController(estimator, new BulkScorer());
+			assertThrows(InvalidRequestException.class,
+					() -> controller.estimateOwnership(new OwnershipRequest(null, List.of(), 9)));
+			assertThrows(InvalidRequestException.class,
+					() -> controller.estimateOwnership(new OwnershipRequest(Player.BLACK, null, 9)));
+			assertThrows(InvalidRequestException.class, () -> controller.estimateOwnership(
+					new OwnershipRequest(Player.BLACK, Arrays.asList(new Move(Player.BLACK, "E5"), null), 9)));
+			assertThrows(InvalidRequestException.class, () -> controller.estimateOwnership(
+					new OwnershipRequest(Player.BLACK, List.of(new Move(null, "E5")), 9)));
+			assertThrows(InvalidRequestException.class, () -> controller.estimateOwnership(
+					new OwnershipRequest(Player.BLACK, List.of(new Move(Player.BLACK, null)), 9)));
+		} finally {
+			estimator.shutdown();
+		}
+	}
+}
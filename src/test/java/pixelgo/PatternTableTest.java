@@ -0,0 +1,70 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.game.Board;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.PatternTable;
+import pixelgo.game.PlayoutBoard;
+import pixelgo.game.TacticalReader;
+
+class PatternTableTest {
+	/**
+	 * Work out the pattern around a point from scratch.
+	 */
+	private static int pattern(TacticalReader reader, BoardGeometry geometry, char color, int point) {
+		int code = 0;
+		for (int d = 0; d < BoardGeometry.DIRECTIONS; d++) {
+			int n = geometry.around(point, d);
+			int value;
+			if (n < 0) {
+				value = PatternTable.EDGE;
+			} else if (reader.get(n) == Board.EMPTY) {
+				value = PatternTable.EMPTY;
+			} else {
+				value = reader.get(n) == color ? PatternTable.OWN : PatternTable.OPPONENT;
+				if (d % 2 == 0 && reader.getLiberties(n) == 1)
+					code |= 1 << (PatternTable.ATARI_SHIFT + d / 2);
+			}
+			code |= value << 2 * d;
+		}
+		return code;
+	}
+
+	@Test
+	void testIncrementalPatternsMatchThePosition() {
+		BoardGeometry geometry = BoardGeometry.of(9);
+		PlayoutBoard board = new PlayoutBoard(geometry);
+		TacticalReader reader = new TacticalReader(geometry);
+		SplittableRandom random = new SplittableRandom(7);
+		PatternTable table = PatternTable.defaults();
+
+		char color = Board.BLACK;
+		for (int move = 0; move < 150; move++) {
+			board.playPattern(color, random, table);
+			color = color == Board.BLACK ? Board.WHITE : Board.BLACK;
+
+			reader.load(board);
+			for (int point = 0; point < geometry.area(); point++) {
+				if (board.get(point) != Board.EMPTY)
+					continue;
+				assertEquals(pattern(reader, geometry, color, point), board.getPattern(color, point));
+			}
+		}
+	}
+
+	@Test
+	void testDefaultWeightsFavourCaptures() {
+		PatternTable table = PatternTable.defaults();
+		int capture = PatternTable.OPPONENT | 1 << PatternTable.ATARI_SHIFT;
+		int escape = PatternTable.OWN | 1 << PatternTable.ATARI_SHIFT;
+		assertTrue(table.getWeight(capture) > table.getWeight(escape));
+		assertTrue(table.getWeight(escape) > table.getWeight(0));
+		assertEquals(table.getWeight(capture), table.getWeight(PatternTable.swapColors(escape)));
+	}
+}
@@ -0,0 +1,60 @@
+package pixelgo;
+
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+import pixelgo.game.Board;
+import pixelgo.game.Player;
+
+/**
+ * Fills boards with random moves for tests that compare incremental state with
+ * a recomputation.
+ *
+ * @author jacky
+ *
+ */
+public final class RandomGames {
+	private RandomGames() {
+	}
+
+	/**
+	 * Create a board with random moves played on it. A rejected move is retried by
+	 * the same player.
+	 *
+	 * @param size     the board size
+	 * @param attempts the number of moves tried
+	 * @param random   the source of the moves
+	 * @return the board
+	 */
+	public static Board play(int size, int attempts, Random random) {
+		Board board = new Board(size);
+		play(board, attempts, random, false, point -> {
+		});
+		return board;
+	}
+
+	/**
+	 * Play random moves on a board, black first.
+	 *
+	 * @param board          the board
+	 * @param attempts       the number of moves tried
+	 * @param random         the source of the moves
+	 * @param rejectedIsPass true to count a rejected move as a pass, so the
+	 *                       players alternate on every attempt
+	 * @param onMove         receives the point of every move, -1 for a pass
+	 */
+	public static void play(Board board, int attempts, Random random, boolean rejectedIsPass, IntConsumer onMove) {
+		int area = board.getGeometry().area();
+		Player player = Player.BLACK;
+		for (int i = 0; i < attempts; i++) {
+			int point = random.nextInt(area);
+			if (board.tryPlaceStone(player, point).isApplied()) {
+				onMove.accept(point);
+				player = player.opponent;
+			} else if (rejectedIsPass) {
+				onMove.accept(-1);
+				player = player.opponent;
+			}
+		}
+	}
+}
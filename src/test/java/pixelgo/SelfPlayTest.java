@@ -0,0 +1,71 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import pixelgo.game.PackedPosition;
+import pixelgo.selfplay.RecordWriter;
+import pixelgo.selfplay.SelfPlay;
+import pixelgo.services.FallbackPolicy;
+
+class SelfPlayTest {
+	@TempDir
+	Path dir;
+
+	@Test
+	void testGamesAreWrittenInChunks() throws Exception {
+		RecordWriter writer = new RecordWriter(dir, 4);
+		new SelfPlay(new FallbackPolicy()::chooseMove, 5, writer).run(10, 3);
+		writer.close();
+		assertEquals(10, writer.getRecords());
+
+		int games = 0;
+		for (int chunk = 0; chunk < 3; chunk++) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new GZIPInputStream(Files.newInputStream(dir.resolve(String.format("selfplay-%05d.bin.gz", chunk))))))) {
+				assertEquals(0x50475350, in.readInt());
+				assertEquals(1, in.readInt());
+				while (readGame(in)) {
+					games++;
+				}
+			}
+		}
+		assertEquals(10, games);
+	}
+
+	/**
+	 * Read a record and check that every position is followed by its move.
+	 */
+	private static boolean readGame(DataInputStream in) throws IOException {
+		int size;
+		try {
+			size = in.readUnsignedByte();
+		} catch (EOFException e) {
+			return false;
+		}
+		assertEquals(5, size);
+
+		byte[] position = new byte[PackedPosition.length(size)];
+		short point;
+		while ((point = in.readShort()) != -2) {
+			in.readFully(position);
+			assertEquals(5, PackedPosition.size(position, 0));
+			if (point >= 0)
+				assertEquals(PackedPosition.EMPTY, PackedPosition.get(position, 0, point));
+		}
+		in.readByte();
+		assertTrue(in.readShort() + in.readShort() <= 25);
+		return true;
+	}
+}
@@ -0,0 +1,48 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.game.Board;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.KoRule;
+
+class SymmetricZobristHashTest {
+	@Test
+	void testIncrementalHashesMatchTransformedPositions() {
+		Board board = new Board(9, KoRule.POSITIONAL, true);
+		RandomGames.play(board, 300, new Random(1), false, point -> {
+		});
+		BoardGeometry geometry = board.getGeometry();
+
+		long min = -1;
+		for (int s = 0; s < BoardGeometry.SYMMETRIES; s++) {
+			long expected = 0;
+			for (int i = 0; i < geometry.area(); i++) {
+				if (board.get(i) == Board.BLACK) {
+					expected ^= geometry.blackKey(geometry.transform(s, i));
+				} else if (board.get(i) == Board.WHITE) {
+					expected ^= geometry.whiteKey(geometry.transform(s, i));
+				}
+			}
+			assertEquals(expected, board.getHash(s));
+			if (Long.compareUnsigned(expected, min) < 0)
+				min = expected;
+		}
+		assertEquals(board.getHash(), board.getHash(0));
+		assertEquals(min, board.getCanonicalHash());
+		assertEquals(min, board.getHash(board.getCanonicalSymmetry()));
+	}
+
+	@Test
+	void testSymmetriesAreOptIn() {
+		Board board = RandomGames.play(9, 300, new Random(1));
+
+		assertThrows(IllegalStateException.class, () -> board.getCanonicalSymmetry());
+		assertThrows(IllegalStateException.class, () -> board.getHash(1));
+	}
+}
@@ -0,0 +1,97 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.game.Board;
+import pixelgo.game.BoardGeometry;
+import pixelgo.game.TacticalReader;
+
+class TacticalReaderTest {
+	private static final int N = 19;
+
+	/**
+	 * A white stone at (3, 3) that black can chase in a ladder towards the upper
+	 * right corner.
+	 */
+	private static char[][] ladder(boolean atari) {
+		char[][] rows = new char[N][N];
+		for (char[] row : rows) {
+			Arrays.fill(row, Board.EMPTY);
+		}
+		rows[3][3] = Board.WHITE;
+		rows[3][2] = Board.BLACK;
+		rows[2][3] = Board.BLACK;
+		rows[4][2] = Board.BLACK;
+		if (atari)
+			rows[3][4] = Board.BLACK;
+		return rows;
+	}
+
+	@Test
+	void testLadderCapturesAcrossTheBoard() {
+		TacticalReader reader = new TacticalReader(BoardGeometry.of(N));
+		char[][] rows = ladder(true);
+		reader.load(rows);
+		assertEquals(1, reader.getLiberties(3 * N + 3));
+		assertFalse(reader.canEscape(3 * N + 3));
+
+		// Reading leaves the position as it was.
+		for (int i = 0; i < N * N; i++) {
+			assertEquals(rows[i / N][i % N], reader.get(i));
+		}
+
+		reader.load(ladder(false));
+		assertEquals(3 * N + 4, reader.findCapture(3 * N + 3));
+	}
+
+	@Test
+	void testLadderBreakerLetsTheStoneEscape() {
+		TacticalReader reader = new TacticalReader(BoardGeometry.of(N));
+		char[][] rows = ladder(true);
+		rows[15][15] = Board.WHITE;
+		reader.load(rows);
+		assertTrue(reader.canEscape(3 * N + 3));
+		assertEquals(4 * N + 3, reader.findEscape(3 * N + 3));
+
+		rows = ladder(false);
+		rows[15][15] = Board.WHITE;
+		reader.load(rows);
+		assertEquals(-1, reader.findCapture(3 * N + 3));
+	}
+
+	@Test
+	void testChainNextToManyStonesInAtari() {
+		// A white chain along the third line, in atari at T4, touching ten black stones in atari on the
+		// second line. Each of them can be taken on the first line.
+		char[][] rows = new char[N][N];
+		for (int c = 0; c < N; c++) {
+			rows[0][c] = c % 2 == 0 ? Board.EMPTY : Board.BLACK;
+			rows[1][c] = c % 2 == 0 ? Board.BLACK : Board.WHITE;
+			rows[2][c] = Board.WHITE;
+			rows[3][c] = c == N - 1 ? Board.EMPTY : Board.BLACK;
+			for (int r = 4; r < N; r++) {
+				rows[r][c] = Board.EMPTY;
+			}
+		}
+
+		TacticalReader reader = new TacticalReader(BoardGeometry.of(N));
+		reader.load(rows);
+		assertEquals(1, reader.getLiberties(2 * N));
+		for (int c = 0; c < N; c += 2) {
+			assertEquals(1, reader.getLiberties(N + c));
+		}
+
+		// Taking a stone on the first line saves the chain.
+		int escape = reader.findEscape(2 * N);
+		assertTrue(escape >= 0 && escape < N && escape % 2 == 0, "escape " + escape);
+		for (int i = 0; i < N * N; i++) {
+			assertEquals(rows[i / N][i % N], reader.get(i));
+		}
+	}
+}
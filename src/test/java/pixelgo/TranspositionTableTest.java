@@ -0,0 +1,87 @@
+package pixelgo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import pixelgo.game.Board;
+import pixelgo.game.Player;
+import pixelgo.game.TranspositionTable;
+
+class TranspositionTableTest {
+	@Test
+	void testStoreAndProbe() {
+		TranspositionTable table = new TranspositionTable(1024, false);
+		Board board = new Board(9);
+		board.tryPlaceStone(Player.BLACK, 40);
+		long key = board.getHash();
+
+		assertEquals(TranspositionTable.MISS, table.probe(key));
+		assertEquals(1024, table.getCapacity());
+		assertEquals(8, new TranspositionTable(5, false).getCapacity());
+		table.store(key, 30, -1234, 12);
+		long data = table.probe(key);
+		assertEquals(30, TranspositionTable.getMove(data));
+		assertEquals(-1234, TranspositionTable.getValue(data));
+		assertEquals(12, TranspositionTable.getPriority(data));
+
+		table.store(key, -1, 5, 3);
+		assertEquals(-1, TranspositionTable.getMove(table.probe(key)));
+		assertEquals(0, table.getCollisions());
+		assertEquals(2, table.getHits());
+		assertEquals(2.0 / 3, table.getHitRate(), 1e-9);
+	}
+
+	@Test
+	void testFullBucketEvictsLowestPriority() {
+		// A single bucket, so every key competes for it.
+		TranspositionTable table = new TranspositionTable(4, false);
+		for (int i = 1; i <= 4; i++) {
+			table.store(i, i, i, 10 * i);
+		}
+		table.store(5, 5, 5, 25);
+		assertEquals(1, table.getCollisions());
+		assertEquals(TranspositionTable.MISS, table.probe(1));
+		for (int i = 2; i <= 5; i++) {
+			assertEquals(i, TranspositionTable.getValue(table.probe(i)));
+		}
+	}
+
+	@Test
+	void testSharedTableNeverReturnsAnotherPositionsResult() throws Exception {
+		TranspositionTable table = new TranspositionTable(256, true);
+		AtomicBoolean mismatch = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<?>[] futures = new Future<?>[4];
+			for (int t = 0; t < futures.length; t++) {
+				long seed = t;
+				futures[t] = executor.submit(() -> {
+					SplittableRandom random = new SplittableRandom(seed);
+					for (int i = 0; i < 200000; i++) {
+						long key = random.nextLong(4096) * 0x9E3779B97F4A7C15L;
+						long data = table.probe(key);
+						if (data != TranspositionTable.MISS && TranspositionTable.getValue(data) != (int) (key >>> 32))
+							mismatch.set(true);
+						table.store(key, 0, (int) (key >>> 32), random.nextInt(100));
+					}
+				});
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertFalse(mismatch.get());
+		assertTrue(table.getHits() > 0 && table.getCollisions() > 0);
+	}
+}